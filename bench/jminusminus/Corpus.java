@@ -0,0 +1,303 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A fixed set of j-- sources for the benchmarks, read from a directory or
+ * given in memory, along with helpers that take them through the phases of
+ * the compiler. Only the sources that compile without error are kept, so that
+ * every invocation of a benchmark does the same work; the classes they produce
+ * serve as the library against which imports are resolved.
+ */
+
+class Corpus {
+
+    /** Source file names. */
+    private ArrayList<String> fileNames;
+
+    /** Sources, parallel to fileNames. */
+    private ArrayList<String> sources;
+
+    /** Maps binary class names to the class files the sources compile to. */
+    private Map<String, byte[]> classes;
+
+    /**
+     * Constructs a Corpus from the .java files in the specified directory, and
+     * installs its classes as the library for the current thread.
+     *
+     * @param dir
+     *            the directory.
+     * @throws IOException
+     *             if the directory or a file in it can't be read.
+     */
+
+    public Corpus(String dir) throws IOException {
+        File[] files = new File(dir).listFiles();
+        if (files == null) {
+            throw new IOException("cannot read directory " + dir);
+        }
+        Arrays.sort(files);
+        Map<String, String> sources = new LinkedHashMap<String, String>();
+        for (File file : files) {
+            if (file.getName().endsWith(".java")) {
+                sources.put(file.getPath(), new String(Files.readAllBytes(file
+                        .toPath()), "UTF-8"));
+            }
+        }
+        addAll(sources);
+        System.out.printf("Corpus %s: %d of %d sources compile\n", dir,
+                size(), sources.size());
+    }
+
+    /**
+     * Constructs a Corpus from the specified sources, and installs its classes
+     * as the library for the current thread.
+     *
+     * @param sources
+     *            maps source file names to sources.
+     */
+
+    public Corpus(Map<String, String> sources) {
+        addAll(sources);
+    }
+
+    /**
+     * Adds the specified sources, in order, leaving out those that don't
+     * compile.
+     *
+     * @param sources
+     *            maps source file names to sources.
+     */
+
+    private void addAll(Map<String, String> sources) {
+        fileNames = new ArrayList<String>();
+        this.sources = new ArrayList<String>();
+        classes = new LinkedHashMap<String, byte[]>();
+        Type.setLibraryLoader(new MemoryClassLoader(classes, Corpus.class
+                .getClassLoader()));
+
+        // Error messages of sources that are left out are of no interest
+        PrintStream err = System.err;
+        System.setErr(new PrintStream(new OutputStream() {
+            public void write(int b) {
+            }
+        }));
+        try {
+            for (Map.Entry<String, String> source : sources.entrySet()) {
+                add(source.getKey(), source.getValue());
+            }
+        } finally {
+            System.setErr(err);
+        }
+    }
+
+    /**
+     * Adds the specified source if it compiles without error.
+     *
+     * @param fileName
+     *            the source file name.
+     * @param source
+     *            the source.
+     */
+
+    private void add(String fileName, String source) {
+        try {
+            LookaheadScanner scanner = new LookaheadScanner(fileName,
+                    new StringReader(source));
+            Parser parser = new Parser(scanner);
+            JCompilationUnit ast = parser.compilationUnit();
+            if (parser.errorHasOccurred()) {
+                return;
+            }
+            preAnalyze(ast);
+            if (ast.errorHasOccurred()) {
+                return;
+            }
+            analyze(ast);
+            if (ast.errorHasOccurred()) {
+                return;
+            }
+            Map<String, byte[]> unitClasses = new LinkedHashMap<String, byte[]>();
+            CLEmitter clEmitter = new CLEmitter(true);
+            clEmitter.destinationMap(unitClasses);
+            ast.codegen(clEmitter);
+            if (clEmitter.errorHasOccurred()) {
+                return;
+            }
+            classes.putAll(unitClasses);
+            fileNames.add(fileName);
+            sources.add(source);
+        } catch (RuntimeException e) {
+            // An internal compiler error; leave the source out
+        }
+    }
+
+    /**
+     * Returns the number of sources.
+     *
+     * @return the number of sources.
+     */
+
+    public int size() {
+        return sources.size();
+    }
+
+    /**
+     * Returns a scanner over the source at the specified index: a
+     * LookaheadScanner, which is what the parser reads its tokens from.
+     *
+     * @param i
+     *            the index.
+     * @return the scanner.
+     */
+
+    public LookaheadScanner scanner(int i) {
+        return new LookaheadScanner(fileNames.get(i), new StringReader(
+                sources.get(i)));
+    }
+
+    /**
+     * Parses the source at the specified index.
+     *
+     * @param i
+     *            the index.
+     * @return the AST.
+     */
+
+    public JCompilationUnit parse(int i) {
+        return new Parser(scanner(i)).compilationUnit();
+    }
+
+    /**
+     * Parses every source.
+     *
+     * @return the ASTs.
+     */
+
+    public ArrayList<JCompilationUnit> parseAll() {
+        ArrayList<JCompilationUnit> asts = new ArrayList<JCompilationUnit>();
+        for (int i = 0; i < size(); i++) {
+            asts.add(parse(i));
+        }
+        return asts;
+    }
+
+    /**
+     * Pre-analyzes the specified AST, as the current compilation unit.
+     *
+     * @param ast
+     *            the AST.
+     */
+
+    public static void preAnalyze(JCompilationUnit ast) {
+        JAST.setCompilationUnit(ast);
+        ast.preAnalyze();
+    }
+
+    /**
+     * Analyzes the specified (pre-analyzed) AST, as the current compilation
+     * unit.
+     *
+     * @param ast
+     *            the AST.
+     */
+
+    public static void analyze(JCompilationUnit ast) {
+        JAST.setCompilationUnit(ast);
+        ast.analyze(null);
+    }
+
+    /**
+     * Generates code for the specified (analyzed) AST into class files held
+     * in memory only.
+     *
+     * @param ast
+     *            the AST.
+     * @return the class files.
+     */
+
+    public static ArrayList<CLFile> codegen(JCompilationUnit ast) {
+        JAST.setCompilationUnit(ast);
+        ast.codegen(new CLEmitter(false));
+        return ast.clFiles();
+    }
+
+    /**
+     * Takes every source through analysis, ready for code generation.
+     *
+     * @return the analyzed ASTs.
+     */
+
+    public ArrayList<JCompilationUnit> analyzeAll() {
+        ArrayList<JCompilationUnit> asts = parseAll();
+        for (JCompilationUnit ast : asts) {
+            preAnalyze(ast);
+            analyze(ast);
+        }
+        return asts;
+    }
+
+    /**
+     * Takes every source through code generation.
+     *
+     * @return the class files.
+     */
+
+    public ArrayList<CLFile> codegenAll() {
+        ArrayList<CLFile> clFiles = new ArrayList<CLFile>();
+        for (JCompilationUnit ast : analyzeAll()) {
+            clFiles.addAll(codegen(ast));
+        }
+        return clFiles;
+    }
+
+    /**
+     * Builds, for every method of the specified class files, the control flow
+     * graph in LIR form, ready for register allocation; this is what
+     * {@link NEmitter} does, without the listings. Methods the SPIM back end
+     * can't translate are left out.
+     *
+     * @param clFiles
+     *            the class files.
+     * @return the control flow graphs.
+     */
+
+    public static ArrayList<NControlFlowGraph> controlFlowGraphs(
+            ArrayList<CLFile> clFiles) {
+        ArrayList<NControlFlowGraph> cfgs = new ArrayList<NControlFlowGraph>();
+        for (CLFile clFile : clFiles) {
+            for (int i = 0; i < clFile.methodsCount; i++) {
+                try {
+                    NControlFlowGraph cfg = new NControlFlowGraph(
+                            clFile.constantPool, clFile.methods.get(i));
+                    cfg.detectLoops(cfg.basicBlocks.get(0), null);
+                    cfg.removeUnreachableBlocks();
+                    cfg.computeDominators(cfg.basicBlocks.get(0), null);
+                    cfg.tuplesToHir();
+                    cfg.eliminateRedundantPhiFunctions();
+                    cfg.optimize();
+                    cfg.hirToLir();
+                    cfg.resolvePhiFunctions();
+                    cfg.orderBlocks();
+                    cfg.renumberLirInstructions();
+                    cfgs.add(cfg);
+                } catch (RuntimeException e) {
+                    // Not translatable to SPIM
+                }
+            }
+        }
+        return cfgs;
+    }
+
+}
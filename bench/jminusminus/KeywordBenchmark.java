@@ -0,0 +1,129 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.util.Hashtable;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH comparison of the ways of telling keywords from identifiers: the
+ * {@code Hashtable<String, TokenKind>} the scanner used to look words up in
+ * (which needs a String made for every word), and the scanner's perfect hash
+ * table over the source characters ({@code Scanner.reserved}). The input is
+ * identifier heavy: a fixed, random sequence of words (the {@code words}
+ * parameter), the given percentage of which (the {@code keywords} parameter)
+ * are keywords, and the rest identifiers of similar shape, many of them
+ * keyword prefixes. One operation is a lookup of every word.
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class KeywordBenchmark {
+
+    /** Number of words. */
+    @Param({ "10000" })
+    public int words;
+
+    /** Percentage of the words that are keywords. */
+    @Param({ "20" })
+    public int keywords;
+
+    /** The words, one after the other. */
+    private char[] source;
+
+    /** Offsets of the words in source. */
+    private int[] starts;
+
+    /** Lengths of the words. */
+    private int[] lengths;
+
+    /** Keywords, as the scanner used to look them up. */
+    private Hashtable<String, TokenKind> reserved;
+
+    /**
+     * Makes the words.
+     */
+
+    @Setup(Level.Trial)
+    public void words() {
+        Random random = new Random(42);
+        StringBuffer b = new StringBuffer();
+        starts = new int[words];
+        lengths = new int[words];
+        TokenKind[] reservedWords = Scanner.RESERVED_WORDS;
+        for (int i = 0; i < words; i++) {
+            String word = reservedWords[random.nextInt(reservedWords.length)]
+                    .image();
+            if (random.nextInt(100) >= keywords) {
+                // An identifier: a keyword's prefix with a suffix, or a
+                // made-up name
+                switch (random.nextInt(3)) {
+                case 0:
+                    word = word.substring(0, 1 + random.nextInt(word.length()))
+                            + (char) ('a' + random.nextInt(26));
+                    break;
+                case 1:
+                    word = word + "Count" + random.nextInt(100);
+                    break;
+                default:
+                    word = "x" + random.nextInt(1000);
+                }
+            }
+            starts[i] = b.length();
+            lengths[i] = word.length();
+            b.append(word);
+        }
+        source = b.toString().toCharArray();
+        reserved = new Hashtable<String, TokenKind>();
+        for (TokenKind kind : reservedWords) {
+            reserved.put(kind.image(), kind);
+        }
+    }
+
+    /**
+     * Benchmarks the Hashtable lookup.
+     *
+     * @param blackhole
+     *            consumes the token kinds.
+     */
+
+    @Benchmark
+    public void hashtable(Blackhole blackhole) {
+        for (int i = 0; i < words; i++) {
+            String identifier = new String(source, starts[i], lengths[i]);
+            if (reserved.containsKey(identifier)) {
+                blackhole.consume(reserved.get(identifier));
+            } else {
+                blackhole.consume(identifier);
+            }
+        }
+    }
+
+    /**
+     * Benchmarks {@code Scanner.reserved}.
+     *
+     * @param blackhole
+     *            consumes the token kinds.
+     */
+
+    @Benchmark
+    public void perfectHash(Blackhole blackhole) {
+        for (int i = 0; i < words; i++) {
+            blackhole.consume(Scanner.reserved(source, starts[i], lengths[i]));
+        }
+    }
+
+}
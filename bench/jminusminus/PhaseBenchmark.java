@@ -0,0 +1,276 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import static jminusminus.TokenKind.EOF;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH benchmarks for the phases of the j-- compiler front end and JVM back
+ * end, each run separately over a fixed corpus (the {@code corpus} parameter,
+ * a directory of j-- sources; {@code tests/pass} by default). One operation is
+ * one pass of the phase over the whole corpus, and the input of a phase is
+ * produced afresh, outside of the measurement, for every operation that needs
+ * it. Run through the {@code bench} Ant target, which also reports the
+ * allocation rate (JMH's gc profiler).
+ *
+ * Note that the parser pulls its tokens from the scanner, so {@code parse}
+ * includes the time of {@code scan}.
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PhaseBenchmark {
+
+    /**
+     * The corpus, read and checked once per trial.
+     */
+
+    @State(Scope.Thread)
+    public static class Sources {
+
+        /** Directory of j-- sources. */
+        @Param({ "tests/pass" })
+        public String corpus;
+
+        /** The corpus. */
+        Corpus sources;
+
+        /**
+         * Reads the corpus.
+         *
+         * @throws IOException
+         *             if the corpus can't be read.
+         */
+
+        @Setup(Level.Trial)
+        public void read() throws IOException {
+            sources = new Corpus(corpus);
+        }
+
+    }
+
+    /**
+     * The corpus, parsed anew for each operation.
+     */
+
+    @State(Scope.Thread)
+    public static class Parsed {
+
+        /** The ASTs. */
+        ArrayList<JCompilationUnit> asts;
+
+        /**
+         * Parses the corpus.
+         *
+         * @param sources
+         *            the corpus.
+         */
+
+        @Setup(Level.Invocation)
+        public void parse(Sources sources) {
+            asts = sources.sources.parseAll();
+        }
+
+    }
+
+    /**
+     * The corpus, parsed and pre-analyzed anew for each operation.
+     */
+
+    @State(Scope.Thread)
+    public static class PreAnalyzed {
+
+        /** The ASTs. */
+        ArrayList<JCompilationUnit> asts;
+
+        /**
+         * Parses and pre-analyzes the corpus.
+         *
+         * @param sources
+         *            the corpus.
+         */
+
+        @Setup(Level.Invocation)
+        public void preAnalyze(Sources sources) {
+            asts = sources.sources.parseAll();
+            for (JCompilationUnit ast : asts) {
+                Corpus.preAnalyze(ast);
+            }
+        }
+
+    }
+
+    /**
+     * The corpus, taken through analysis anew for each operation.
+     */
+
+    @State(Scope.Thread)
+    public static class Analyzed {
+
+        /** The ASTs. */
+        ArrayList<JCompilationUnit> asts;
+
+        /**
+         * Takes the corpus through analysis.
+         *
+         * @param sources
+         *            the corpus.
+         */
+
+        @Setup(Level.Invocation)
+        public void analyze(Sources sources) {
+            asts = sources.sources.analyzeAll();
+        }
+
+    }
+
+    /**
+     * The class files for the corpus, generated once per trial.
+     */
+
+    @State(Scope.Thread)
+    public static class Generated {
+
+        /** The class files. */
+        ArrayList<CLFile> clFiles;
+
+        /** Where the class files are written. */
+        ByteArrayOutputStream bytes;
+
+        /**
+         * Generates the class files.
+         *
+         * @param sources
+         *            the corpus.
+         */
+
+        @Setup(Level.Trial)
+        public void codegen(Sources sources) {
+            clFiles = sources.sources.codegenAll();
+            bytes = new ByteArrayOutputStream();
+        }
+
+    }
+
+    /**
+     * Benchmarks {@code LookaheadScanner.next}: scans the corpus into token
+     * streams, as the parser does, without looking ahead.
+     *
+     * @param sources
+     *            the corpus.
+     * @param blackhole
+     *            consumes the token kinds.
+     */
+
+    @Benchmark
+    public void scan(Sources sources, Blackhole blackhole) {
+        for (int i = 0; i < sources.sources.size(); i++) {
+            LookaheadScanner scanner = sources.sources.scanner(i);
+            do {
+                scanner.next();
+                blackhole.consume(scanner.kind());
+            } while (scanner.kind() != EOF);
+        }
+    }
+
+    /**
+     * Benchmarks {@code Parser.compilationUnit}: parses the corpus.
+     *
+     * @param sources
+     *            the corpus.
+     * @return the ASTs.
+     */
+
+    @Benchmark
+    public ArrayList<JCompilationUnit> parse(Sources sources) {
+        return sources.sources.parseAll();
+    }
+
+    /**
+     * Benchmarks {@code JCompilationUnit.preAnalyze}.
+     *
+     * @param parsed
+     *            the parsed corpus.
+     * @return the ASTs.
+     */
+
+    @Benchmark
+    public ArrayList<JCompilationUnit> preAnalyze(Parsed parsed) {
+        for (JCompilationUnit ast : parsed.asts) {
+            Corpus.preAnalyze(ast);
+        }
+        return parsed.asts;
+    }
+
+    /**
+     * Benchmarks {@code JCompilationUnit.analyze}.
+     *
+     * @param preAnalyzed
+     *            the pre-analyzed corpus.
+     * @return the ASTs.
+     */
+
+    @Benchmark
+    public ArrayList<JCompilationUnit> analyze(PreAnalyzed preAnalyzed) {
+        for (JCompilationUnit ast : preAnalyzed.asts) {
+            Corpus.analyze(ast);
+        }
+        return preAnalyzed.asts;
+    }
+
+    /**
+     * Benchmarks {@code JCompilationUnit.codegen} into a {@code CLEmitter},
+     * which builds the class files in memory.
+     *
+     * @param analyzed
+     *            the analyzed corpus.
+     * @param blackhole
+     *            consumes the class files.
+     */
+
+    @Benchmark
+    public void codegen(Analyzed analyzed, Blackhole blackhole) {
+        for (JCompilationUnit ast : analyzed.asts) {
+            blackhole.consume(Corpus.codegen(ast));
+        }
+    }
+
+    /**
+     * Benchmarks {@code CLFile.write}: serializes the class files for the
+     * corpus to memory.
+     *
+     * @param generated
+     *            the class files.
+     * @return the number of bytes written.
+     * @throws IOException
+     *             never.
+     */
+
+    @Benchmark
+    public int write(Generated generated) throws IOException {
+        generated.bytes.reset();
+        CLOutputStream out = new CLOutputStream(generated.bytes);
+        for (CLFile clFile : generated.clFiles) {
+            clFile.write(out);
+        }
+        out.flush();
+        return generated.bytes.size();
+    }
+
+}
@@ -0,0 +1,498 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ * A generator of synthetic, valid j-- programs of arbitrary size, for scaling
+ * tests (see {@link ScalingReport}). A program is a single compilation unit
+ * holding a main class and a number of classes of static methods; each method
+ * is a mix of assignments, if statements, while loops, switch statements and
+ * string concatenations. The shape of the program is set by the fields below,
+ * and for given values, the same program is generated every time.
+ *
+ * The generator also makes stress programs, whose code is nested to a given
+ * depth (see {@link #generateNested(int)}). The generated programs can be
+ * written to a file, for example
+ *
+ * <pre>
+ *   java jminusminus.ProgramGenerator -classes 50 -statements 40 -d gen
+ *   java jminusminus.ProgramGenerator -nested 100000 -d gen
+ * </pre>
+ */
+
+public class ProgramGenerator {
+
+    /** Name of the main class (and of the source file). */
+    String mainClass = "Program";
+
+    /** Number of classes, besides the main class. */
+    int classes = 4;
+
+    /** Number of methods per class. */
+    int methods = 4;
+
+    /** Number of statements per method (at the top level). */
+    int statements = 8;
+
+    /** Depth of the arithmetic expressions. */
+    int expressionDepth = 3;
+
+    /** Number of arms (cases) in switch statements. */
+    int switchArms = 4;
+
+    /** Number of string literals, in the whole program. */
+    int strings = 16;
+
+    /** Depth of nested statements (if statements and loops). */
+    int nesting = 2;
+
+    /** Seed for the choice of operators and operands. */
+    long seed = 42;
+
+    /** For choosing operators and operands. */
+    private Random random;
+
+    /** The program being generated. */
+    private StringBuffer b;
+
+    /** Number of string literals generated so far. */
+    private int stringCount;
+
+    /** For naming the loop variables of a method. */
+    private int loopCount;
+
+    /** Arithmetic operators safe on any operands. */
+    private static final String[] OPERATORS = { "+", "-", "*", "^", "&", "|" };
+
+    /** Relational operators. */
+    private static final String[] RELATIONS = { "<", ">", "<=", ">=", "==",
+            "!=" };
+
+    /**
+     * Returns the source file name of the program.
+     *
+     * @return the file name.
+     */
+
+    public String fileName() {
+        return mainClass + ".java";
+    }
+
+    /**
+     * Generates the program.
+     *
+     * @return the program source.
+     */
+
+    public String generate() {
+        random = new Random(seed);
+        b = new StringBuffer();
+        stringCount = 0;
+        b.append("import java.lang.System;\n\n");
+        b.append("public class ").append(mainClass).append(" {\n");
+        b.append("    public static void main(String[] args) {\n");
+        b.append("        int r = 0;\n");
+        for (int c = 0; c < classes; c++) {
+            b.append("        r = r + C").append(c).append(".run(").append(c)
+                    .append(");\n");
+        }
+        b.append("        System.out.println(r);\n");
+        b.append("    }\n");
+        b.append("}\n");
+        for (int c = 0; c < classes; c++) {
+            generateClass(c);
+        }
+        return b.toString();
+    }
+
+    /**
+     * Generates a stress program, each method of which nests one construct to
+     * the specified depth: blocks, if statements, an else-if chain,
+     * parenthesized expressions, and a chain of binary operations. The
+     * program is generated by loops, so any depth can be asked for. The
+     * else-if chain compares against a few constants only, so that the size
+     * of the constant pool doesn't grow with the depth.
+     *
+     * @param depth
+     *            the depth.
+     * @return the program source.
+     */
+
+    public String generateNested(int depth) {
+        b = new StringBuffer();
+        b.append("import java.lang.System;\n\n");
+        b.append("public class ").append(mainClass).append(" {\n");
+        b.append("    public static void main(String[] args) {\n");
+        b.append("        System.out.println(blocks(1) + ifs(1) + elseIfs(1)"
+                + " + parentheses(1) + operations(1));\n");
+        b.append("    }\n");
+
+        b.append("\n    public static int blocks(int x) {\n");
+        repeat("{", depth);
+        b.append("\nx = x + 1;\n");
+        repeat("}", depth);
+        b.append("\n        return x;\n    }\n");
+
+        b.append("\n    public static int ifs(int x) {\n");
+        repeat("if (true) {\n", depth);
+        b.append("x = x + 1;\n");
+        repeat("}\n", depth);
+        b.append("        return x;\n    }\n");
+
+        b.append("\n    public static int elseIfs(int x) {\n");
+        b.append("        if (x == 0) {\n            x = 1;\n        }\n");
+        for (int i = 1; i < depth; i++) {
+            b.append("        else if (x == ").append(i % 64).append(") {\n");
+            b.append("            x = ").append(i % 64 + 1).append(";\n");
+            b.append("        }\n");
+        }
+        b.append("        return x;\n    }\n");
+
+        b.append("\n    public static int parentheses(int x) {\n");
+        b.append("        return ");
+        repeat("(", depth);
+        b.append("x + 1");
+        repeat(")", depth);
+        b.append(";\n    }\n");
+
+        b.append("\n    public static int operations(int x) {\n");
+        b.append("        return x");
+        for (int i = 1; i < depth; i++) {
+            b.append(i % 16 == 0 ? "\n            + x" : " + x");
+        }
+        b.append(";\n    }\n");
+        b.append("}\n");
+        return b.toString();
+    }
+
+    /**
+     * Appends the specified text a number of times.
+     *
+     * @param text
+     *            the text.
+     * @param count
+     *            the number of times.
+     */
+
+    private void repeat(String text, int count) {
+        for (int i = 0; i < count; i++) {
+            b.append(text);
+        }
+    }
+
+    /**
+     * Generates the class with the specified index.
+     *
+     * @param c
+     *            the index.
+     */
+
+    private void generateClass(int c) {
+        b.append("\nclass C").append(c).append(" {\n");
+        for (int m = 0; m < methods; m++) {
+            generateMethod(c, m);
+        }
+        b.append("\n    public static int run(int p) {\n");
+        b.append("        int r = 0;\n");
+        for (int m = 0; m < methods; m++) {
+            b.append("        r = r + m").append(m).append("(p);\n");
+        }
+        b.append("        return r;\n");
+        b.append("    }\n");
+        b.append("}\n");
+    }
+
+    /**
+     * Generates the method with the specified index in the class with the
+     * specified index. The string literals are spread evenly over the
+     * methods of the program, and each method but the first calls the one
+     * before it.
+     *
+     * @param c
+     *            index of the class.
+     * @param m
+     *            index of the method.
+     */
+
+    private void generateMethod(int c, int m) {
+        loopCount = 0;
+        int method = c * methods + m + 1;
+        int stringTarget = (int) ((long) strings * method
+                / (classes * methods));
+        b.append("\n    public static int m").append(m).append("(int p) {\n");
+        b.append("        int x = p;\n");
+        b.append("        int y = p + ").append(m).append(";\n");
+        b.append("        String s = \"\";\n");
+        for (int i = 0; i < statements; i++) {
+            int count = (stringTarget - stringCount) / (statements - i);
+            generateStatement(i, nesting, "        ", count);
+        }
+        while (stringCount < stringTarget) {
+            generateString("        ");
+        }
+        if (m > 0) {
+            b.append("        x = x + m").append(m - 1).append("(y & 7);\n");
+        }
+        b.append("        return x + y + s.length();\n");
+        b.append("    }\n");
+    }
+
+    /**
+     * Generates a statement, of a kind chosen from its position in the method:
+     * an assignment, an if statement, a while loop or a switch statement. If
+     * and while statements nest each other to the specified depth.
+     *
+     * @param i
+     *            position of the statement.
+     * @param depth
+     *            depth to which statements may still be nested.
+     * @param indent
+     *            the indentation.
+     * @param count
+     *            number of string literals to include.
+     */
+
+    private void generateStatement(int i, int depth, String indent,
+            int count) {
+        for (int k = 0; k < count; k++) {
+            generateString(indent);
+        }
+
+        // Indentation stops growing at some depth, so that the size of the
+        // source stays proportional to the number of tokens
+        String inner = indent.length() < 32 ? indent + "    " : indent;
+        switch (i % 4) {
+        case 1:
+            if (depth > 0) {
+                b.append(indent).append("if (").append(condition())
+                        .append(") {\n");
+                generateStatement(2, depth - 1, inner, 0);
+                b.append(indent).append("} else {\n");
+                generateAssignment(inner);
+                b.append(indent).append("}\n");
+                return;
+            }
+            break;
+        case 2:
+            if (depth > 0) {
+                String v = "i" + loopCount++;
+                b.append(indent).append("int ").append(v).append(" = 0;\n");
+                b.append(indent).append("while (").append(v)
+                        .append(" < 3) {\n");
+                generateStatement(1, depth - 1, inner, 0);
+                b.append(inner).append(v).append(" = ").append(v)
+                        .append(" + 1;\n");
+                b.append(indent).append("}\n");
+                return;
+            }
+            break;
+        case 3:
+            if (switchArms > 0) {
+                b.append(indent).append("switch (").append(expression(1))
+                        .append(" % ").append(switchArms * 2)
+                        .append(") {\n");
+                for (int k = 0; k < switchArms; k++) {
+                    b.append(indent).append("case ").append(k).append(":\n");
+                    generateAssignment(inner);
+                    b.append(inner).append("break;\n");
+                }
+                b.append(indent).append("default:\n");
+                generateAssignment(inner);
+                b.append(indent).append("}\n");
+                return;
+            }
+            break;
+        }
+        generateAssignment(indent);
+    }
+
+    /**
+     * Generates an assignment of an arithmetic expression.
+     *
+     * @param indent
+     *            the indentation.
+     */
+
+    private void generateAssignment(String indent) {
+        b.append(indent).append(random.nextBoolean() ? "x" : "y").append(" = ")
+                .append(expression(expressionDepth)).append(";\n");
+    }
+
+    /**
+     * Generates a string concatenation, with a new string literal.
+     *
+     * @param indent
+     *            the indentation.
+     */
+
+    private void generateString(String indent) {
+        b.append(indent).append("s = s + \"string literal ")
+                .append(stringCount++).append("\";\n");
+    }
+
+    /**
+     * Returns an arithmetic expression of the specified depth. Only one
+     * operand of each operator is itself an operation, so the size of the
+     * expression is linear in its depth.
+     *
+     * @param depth
+     *            the depth.
+     * @return the expression.
+     */
+
+    private String expression(int depth) {
+        if (depth == 0) {
+            return operand();
+        }
+        String operator = OPERATORS[random.nextInt(OPERATORS.length)];
+        if (depth % 2 == 0) {
+            return "(" + expression(depth - 1) + " " + operator + " "
+                    + operand() + ")";
+        }
+        return "(" + operand() + " " + operator + " " + expression(depth - 1)
+                + ")";
+    }
+
+    /**
+     * Returns a relational expression.
+     *
+     * @return the expression.
+     */
+
+    private String condition() {
+        return expression(expressionDepth) + " "
+                + RELATIONS[random.nextInt(RELATIONS.length)] + " " + operand();
+    }
+
+    /**
+     * Returns a variable or a literal.
+     *
+     * @return the operand.
+     */
+
+    private String operand() {
+        switch (random.nextInt(3)) {
+        case 0:
+            return "x";
+        case 1:
+            return "y";
+        default:
+            return String.valueOf(random.nextInt(100));
+        }
+    }
+
+    /**
+     * Entry point: generates a program and writes it to a file.
+     *
+     * @param args
+     *            the command-line arguments.
+     */
+
+    public static void main(String[] args) {
+        ProgramGenerator generator = new ProgramGenerator();
+        String outputDir = ".";
+        int nested = 0;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("-d") && i + 1 < args.length) {
+                    outputDir = args[++i];
+                } else if (args[i].equals("-nested") && i + 1 < args.length) {
+                    nested = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-main") && i + 1 < args.length) {
+                    generator.mainClass = args[++i];
+                } else if (i + 1 < args.length
+                        && generator.set(args[i], args[i + 1])) {
+                    i++;
+                } else {
+                    printUsage();
+                    return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            printUsage();
+            return;
+        }
+        File file = new File(outputDir, generator.fileName());
+        try {
+            file.getParentFile().mkdirs();
+            Writer out = new OutputStreamWriter(new FileOutputStream(file),
+                    "UTF-8");
+            out.write(nested > 0 ? generator.generateNested(nested)
+                    : generator.generate());
+            out.close();
+        } catch (IOException e) {
+            System.err.println("Error: cannot write " + file);
+        }
+    }
+
+    /**
+     * Sets the parameter named by the specified option (for example
+     * {@code -classes}).
+     *
+     * @param option
+     *            the option.
+     * @param value
+     *            the value.
+     * @return {@code true} if the option names a parameter, and {@code false}
+     *         otherwise.
+     * @throws NumberFormatException
+     *             if the value is not a number.
+     */
+
+    boolean set(String option, String value) {
+        if (option.equals("-classes")) {
+            classes = Integer.parseInt(value);
+        } else if (option.equals("-methods")) {
+            methods = Integer.parseInt(value);
+        } else if (option.equals("-statements")) {
+            statements = Integer.parseInt(value);
+        } else if (option.equals("-depth")) {
+            expressionDepth = Integer.parseInt(value);
+        } else if (option.equals("-arms")) {
+            switchArms = Integer.parseInt(value);
+        } else if (option.equals("-strings")) {
+            strings = Integer.parseInt(value);
+        } else if (option.equals("-nesting")) {
+            nesting = Integer.parseInt(value);
+        } else if (option.equals("-seed")) {
+            seed = Long.parseLong(value);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Prints usage to STDOUT.
+     */
+
+    private static void printUsage() {
+        String usage = "Usage: java jminusminus.ProgramGenerator <options>\n"
+                + "where possible options include:\n"
+                + "  -d <dir>          Write the program to <dir>\n"
+                + "  -main <name>      Name of the main class (Program)\n"
+                + "  -nested <n>       Generate a stress program, nested to "
+                + "depth <n>, instead\n"
+                + PARAMETER_USAGE;
+        System.out.println(usage);
+    }
+
+    /** Usage of the options that set the shape of the program. */
+    static final String PARAMETER_USAGE =
+              "  -classes <n>      Number of classes (4)\n"
+            + "  -methods <n>      Methods per class (4)\n"
+            + "  -statements <n>   Statements per method (8)\n"
+            + "  -depth <n>        Expression depth (3)\n"
+            + "  -arms <n>         Arms per switch statement (4)\n"
+            + "  -strings <n>      String literals in the program (16)\n"
+            + "  -nesting <n>      Depth of nested statements (2)\n"
+            + "  -seed <n>         Seed for operators and operands (42)";
+
+}
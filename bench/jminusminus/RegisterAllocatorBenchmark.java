@@ -0,0 +1,91 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * JMH benchmark for each {@link NRegisterAllocator} (the {@code allocator}
+ * parameter: naive, linear or graph), run over the methods of a fixed corpus
+ * (the {@code corpus} parameter; {@code tests/spim} by default). One operation
+ * is register allocation for every method in the corpus; the control flow
+ * graphs, which allocation rewrites, are rebuilt outside of the measurement
+ * for every operation.
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class RegisterAllocatorBenchmark {
+
+    /** Directory of j-- sources. */
+    @Param({ "tests/spim" })
+    public String corpus;
+
+    /** Register allocation scheme. */
+    @Param({ "naive", "linear", "graph" })
+    public String allocator;
+
+    /** The class files for the corpus. */
+    private ArrayList<CLFile> clFiles;
+
+    /** The control flow graphs, in LIR form. */
+    private ArrayList<NControlFlowGraph> cfgs;
+
+    /**
+     * Generates the class files for the corpus.
+     *
+     * @throws IOException
+     *             if the corpus can't be read.
+     */
+
+    @Setup(Level.Trial)
+    public void codegen() throws IOException {
+        NPhysicalRegister.MAX_COUNT = 8;
+        clFiles = new Corpus(corpus).codegenAll();
+    }
+
+    /**
+     * Builds the control flow graphs.
+     */
+
+    @Setup(Level.Invocation)
+    public void buildControlFlowGraphs() {
+        cfgs = Corpus.controlFlowGraphs(clFiles);
+    }
+
+    /**
+     * Benchmarks {@code NRegisterAllocator.allocation}.
+     *
+     * @return the control flow graphs.
+     */
+
+    @Benchmark
+    public ArrayList<NControlFlowGraph> allocate() {
+        for (NControlFlowGraph cfg : cfgs) {
+            NRegisterAllocator regAllocator;
+            if (allocator.equals("naive")) {
+                regAllocator = new NNaiveRegisterAllocator(cfg);
+            } else if (allocator.equals("linear")) {
+                regAllocator = new NLinearRegisterAllocator(cfg);
+            } else {
+                regAllocator = new NGraphRegisterAllocator(cfg);
+            }
+            regAllocator.allocation();
+        }
+        return cfgs;
+    }
+
+}
@@ -0,0 +1,416 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import static jminusminus.TokenKind.EOF;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A report on how the time taken by each phase of the compiler grows with the
+ * size of its input. For each parameter of {@link ProgramGenerator} in turn,
+ * programs are generated with the parameter doubling from its base value
+ * (the others staying at theirs) and compiled, and the best of a few timings
+ * of each phase is reported against n, the number of tokens in the program. A
+ * phase whose time grows faster than n log n is flagged, and makes the report
+ * exit with status 1. For example,
+ *
+ * <pre>
+ *   java jminusminus.ScalingReport -vary statements -sizes 6
+ * </pre>
+ *
+ * The report also stress tests the compiler with code nested to a great depth
+ * (see {@link ProgramGenerator#generateNested(int)}); the program must compile
+ * without errors, or the report exits with status 1. The stress test is run
+ * when no parameter is varied, or when its depth is given, for example
+ *
+ * <pre>
+ *   java jminusminus.ScalingReport -vary nesting -nested 200000
+ * </pre>
+ */
+
+public class ScalingReport {
+
+    /** The phases measured. */
+    private static final String[] PHASES = { "scan", "parse", "preAnalyze",
+            "analyze", "codegen", "write" };
+
+    /** The parameters of ProgramGenerator that can be varied. */
+    private static final String[] PARAMETERS = { "classes", "methods",
+            "statements", "depth", "arms", "strings", "nesting" };
+
+    /**
+     * Times (in nanoseconds) below which a phase is too quick to be measured
+     * reliably, and isn't judged on. Nor is a phase judged unless n at least
+     * doubles over the sizes.
+     */
+    private static final long MIN_TIME = 1000000;
+
+    /**
+     * How much faster than n log n a phase may grow, over the sizes, before
+     * it's flagged; this allows for noise in the timings.
+     */
+    private static final double SLACK = 2.0;
+
+    /** Depth of the stress program, when the stress test is run by default. */
+    private static final int DEFAULT_NESTED = 100000;
+
+    /** Number of compilations to warm up the JVM with. */
+    private static final int WARMUP = 20;
+
+    /** Number of timings of each size, of which the best is reported. */
+    private int repeat = 3;
+
+    /** Number of sizes, each double the one before. */
+    private int sizes = 5;
+
+    /** Depth of the stress program: 0 for no stress test, and -1 if not
+     * given. */
+    private int nested = -1;
+
+    /** The base values of the parameters. */
+    private ProgramGenerator base = new ProgramGenerator();
+
+    /**
+     * Entry point.
+     *
+     * @param args
+     *            the command-line arguments.
+     */
+
+    public static void main(String[] args) {
+        ScalingReport report = new ScalingReport();
+        ArrayList<String> vary = new ArrayList<String>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (i + 1 == args.length) {
+                    printUsage();
+                    return;
+                } else if (args[i].equals("-vary")) {
+                    vary.add(args[++i]);
+                } else if (args[i].equals("-sizes")) {
+                    report.sizes = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-repeat")) {
+                    report.repeat = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-nested")) {
+                    report.nested = Integer.parseInt(args[++i]);
+                } else if (report.base.set(args[i], args[i + 1])) {
+                    i++;
+                } else {
+                    printUsage();
+                    return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            printUsage();
+            return;
+        }
+        if (vary.isEmpty()) {
+            for (String parameter : PARAMETERS) {
+                vary.add(parameter);
+            }
+            if (report.nested < 0) {
+                report.nested = DEFAULT_NESTED;
+            }
+        }
+        boolean flagged = false;
+        try {
+            report.warmUp();
+            for (String parameter : vary) {
+                flagged |= report.scale(parameter);
+            }
+            if (report.nested > 0) {
+                flagged |= report.stress();
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+        System.exit(flagged ? 1 : 0);
+    }
+
+    /**
+     * Compiles the base program a number of times, so that the timings
+     * aren't those of an unoptimized compiler.
+     */
+
+    private void warmUp() {
+        Corpus corpus = corpus(base);
+        for (int i = 0; i < WARMUP; i++) {
+            time(corpus);
+        }
+    }
+
+    /**
+     * Reports how the phases scale with the specified parameter.
+     *
+     * @param parameter
+     *            the parameter.
+     * @return {@code true} if a phase grows faster than n log n, and
+     *         {@code false} otherwise.
+     */
+
+    private boolean scale(String parameter) {
+        int baseValue = value(base, parameter);
+        long[] n = new long[sizes];
+        long[][] times = new long[sizes][];
+        System.out.printf("Scaling %s (from %d, others at their base values)\n",
+                parameter, baseValue);
+        StringBuffer header = new StringBuffer(String.format("  %8s %10s",
+                parameter, "n"));
+        for (String phase : PHASES) {
+            header.append(String.format(" %12s", phase + " (ms)"));
+        }
+        System.out.println(header);
+        for (int s = 0; s < sizes; s++) {
+            ProgramGenerator generator = copy(base);
+            int value = Math.max(baseValue, 1) << s;
+            generator.set("-" + parameter, String.valueOf(value));
+            Corpus corpus = corpus(generator);
+            n[s] = tokens(corpus);
+            System.gc();
+            times[s] = time(corpus);
+            for (int r = 1; r < repeat; r++) {
+                long[] t = time(corpus);
+                for (int p = 0; p < PHASES.length; p++) {
+                    times[s][p] = Math.min(times[s][p], t[p]);
+                }
+            }
+            StringBuffer line = new StringBuffer(String.format("  %8d %10d",
+                    value, n[s]));
+            for (long t : times[s]) {
+                line.append(String.format(" %12.3f", t / 1e6));
+            }
+            System.out.println(line);
+        }
+
+        // Judge each phase on the sizes where it's measurable
+        boolean flagged = false;
+        StringBuffer growth = new StringBuffer(String.format("  %19s",
+                "growth"));
+        ArrayList<String> warnings = new ArrayList<String>();
+        for (int p = 0; p < PHASES.length; p++) {
+            int first = 0;
+            while (first < sizes && times[first][p] < MIN_TIME) {
+                first++;
+            }
+            int last = sizes - 1;
+            if (first >= last || n[last] < 2 * n[first]) {
+                growth.append(String.format(" %12s", "-"));
+                continue;
+            }
+            double timeRatio = (double) times[last][p] / times[first][p];
+            double nRatio = (double) n[last] / n[first];
+            double exponent = Math.log(timeRatio) / Math.log(nRatio);
+            growth.append(String.format(" %12s", String.format("n^%.2f",
+                    exponent)));
+            double nLogNRatio = nRatio * Math.log(n[last])
+                    / Math.log(n[first]);
+            if (timeRatio > SLACK * nLogNRatio) {
+                flagged = true;
+                warnings.add(String.format("  ! %s grows faster than n log n "
+                        + "(n^%.2f)", PHASES[p], exponent));
+            }
+        }
+        System.out.println(growth);
+        for (String warning : warnings) {
+            System.out.println(warning);
+        }
+        System.out.println();
+        return flagged;
+    }
+
+    /**
+     * Compiles the stress program, whose code is nested to the depth given.
+     * The compiler runs on its own (compiler) thread, as from any other
+     * client.
+     *
+     * @return {@code true} if the program doesn't compile, and {@code false}
+     *         otherwise.
+     */
+
+    private boolean stress() {
+        System.out.printf("Stress test (code nested to depth %d)\n", nested);
+        ProgramGenerator generator = copy(base);
+        Map<String, String> sources = new LinkedHashMap<String, String>();
+        sources.put(generator.fileName(), generator.generateNested(nested));
+        long time = -System.nanoTime();
+        CompilationResult result;
+        try {
+            result = JMinusMinusCompiler.compile(sources);
+        } catch (StackOverflowError e) {
+            System.out.println("  ! stack overflow");
+            System.out.println();
+            return true;
+        }
+        time += System.nanoTime();
+        for (String diagnostic : result.diagnostics()) {
+            System.out.println("  " + diagnostic);
+        }
+        if (result.errorHasOccurred()) {
+            System.out.println("  ! the program does not compile");
+            System.out.println();
+            return true;
+        }
+        System.out.printf("  compiled in %.3f ms\n", time / 1e6);
+        System.out.println();
+        return false;
+    }
+
+    /**
+     * Returns a corpus of the program made by the specified generator.
+     *
+     * @param generator
+     *            the generator.
+     * @return the corpus.
+     * @throws IllegalArgumentException
+     *             if the program doesn't compile.
+     */
+
+    private static Corpus corpus(ProgramGenerator generator) {
+        Map<String, String> sources = new LinkedHashMap<String, String>();
+        sources.put(generator.fileName(), generator.generate());
+        Corpus corpus = new Corpus(sources);
+        if (corpus.size() == 0) {
+            throw new IllegalArgumentException("generated program does not "
+                    + "compile (see jminusminus.ProgramGenerator)");
+        }
+        return corpus;
+    }
+
+    /**
+     * Compiles the program in the specified corpus, timing each phase.
+     *
+     * @param corpus
+     *            the corpus.
+     * @return the time taken by each phase, in nanoseconds.
+     */
+
+    private static long[] time(Corpus corpus) {
+        long[] t = new long[PHASES.length];
+        t[0] = -System.nanoTime();
+        LookaheadScanner scanner = corpus.scanner(0);
+        for (scanner.next(); scanner.kind() != EOF; scanner.next()) {
+        }
+        t[0] += System.nanoTime();
+        t[1] = -System.nanoTime();
+        JCompilationUnit ast = corpus.parse(0);
+        t[1] += System.nanoTime();
+        t[2] = -System.nanoTime();
+        Corpus.preAnalyze(ast);
+        t[2] += System.nanoTime();
+        t[3] = -System.nanoTime();
+        Corpus.analyze(ast);
+        t[3] += System.nanoTime();
+        t[4] = -System.nanoTime();
+        ArrayList<CLFile> clFiles = Corpus.codegen(ast);
+        t[4] += System.nanoTime();
+        t[5] = -System.nanoTime();
+        try {
+            CLOutputStream out = new CLOutputStream(new ByteArrayOutputStream());
+            for (CLFile clFile : clFiles) {
+                clFile.write(out);
+            }
+            out.close();
+        } catch (IOException e) {
+            // Can't happen
+        }
+        t[5] += System.nanoTime();
+        return t;
+    }
+
+    /**
+     * Returns the number of tokens in the program in the specified corpus.
+     *
+     * @param corpus
+     *            the corpus.
+     * @return the number of tokens.
+     */
+
+    private static long tokens(Corpus corpus) {
+        LookaheadScanner scanner = corpus.scanner(0);
+        long n = 0;
+        for (scanner.next(); scanner.kind() != EOF; scanner.next()) {
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Returns the value of the specified parameter of a generator.
+     *
+     * @param generator
+     *            the generator.
+     * @param parameter
+     *            the parameter.
+     * @return the value.
+     * @throws IllegalArgumentException
+     *             if there is no such parameter.
+     */
+
+    private static int value(ProgramGenerator generator, String parameter) {
+        if (parameter.equals("classes")) {
+            return generator.classes;
+        } else if (parameter.equals("methods")) {
+            return generator.methods;
+        } else if (parameter.equals("statements")) {
+            return generator.statements;
+        } else if (parameter.equals("depth")) {
+            return generator.expressionDepth;
+        } else if (parameter.equals("arms")) {
+            return generator.switchArms;
+        } else if (parameter.equals("strings")) {
+            return generator.strings;
+        } else if (parameter.equals("nesting")) {
+            return generator.nesting;
+        }
+        throw new IllegalArgumentException("no parameter " + parameter);
+    }
+
+    /**
+     * Returns a generator with the same parameters as the specified one.
+     *
+     * @param generator
+     *            the generator.
+     * @return the copy.
+     */
+
+    private static ProgramGenerator copy(ProgramGenerator generator) {
+        ProgramGenerator copy = new ProgramGenerator();
+        for (String parameter : PARAMETERS) {
+            copy.set("-" + parameter, String.valueOf(value(generator,
+                    parameter)));
+        }
+        copy.mainClass = generator.mainClass;
+        copy.seed = generator.seed;
+        return copy;
+    }
+
+    /**
+     * Prints usage to STDOUT.
+     */
+
+    private static void printUsage() {
+        String usage = "Usage: java jminusminus.ScalingReport <options>\n"
+                + "where possible options include:\n"
+                + "  -vary <parameter> Parameter to scale (repeatable; all by "
+                + "default):\n"
+                + "                    classes, methods, statements, depth, "
+                + "arms, strings, nesting\n"
+                + "  -sizes <n>        Number of sizes, each double the last "
+                + "(5)\n"
+                + "  -repeat <n>       Timings per size, of which the best "
+                + "is reported (3)\n"
+                + "  -nested <n>       Depth of the stress program ("
+                + DEFAULT_NESTED + " when no\n"
+                + "                    parameter is varied; 0 for none)\n"
+                + "base values of the parameters:\n"
+                + ProgramGenerator.PARAMETER_USAGE;
+        System.out.println(usage);
+    }
+
+}
@@ -2,7 +2,8 @@
 
 REM Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
 
-REM Wrapper script for running jminusminus.Main program.
+REM Wrapper script for running jminusminus.Main program. If J_DAEMON is set, the
+REM compilation is forwarded to the j--d server, if one is running.
 
 set BASE_DIR=%~dp0
 set j="%BASE_DIR%\..\"
@@ -12,8 +13,15 @@ if "%CLASSPATH%" == "" goto runApp
 set CPATH=%CPATH%;"%CLASSPATH%"
 
 :runApp
+if "%J_DAEMON%" == "" goto runMain
+%JAVA% -XX:TieredStopAtLevel=1 -classpath %CPATH% jminusminus.DaemonClient "j--" %*
+goto done
+
+:runMain
 %JAVA% -classpath %CPATH% jminusminus.Main "j--" %*
 
+:done
+
 set JAVA=
 set BASE_DIR=
 set CPATH=
@@ -0,0 +1,468 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URL;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+/**
+ * A local build cache (-cache), in which the outputs of compiling a unit (its
+ * .class files, or its .s file and the listing written to STDOUT) are kept
+ * under a key computed from the bytes of the source, the compiler itself, and
+ * the options that affect the outputs (-s and -r). When a unit is compiled
+ * again with the same key, its outputs are copied from the cache instead. An
+ * entry also records the signature of every (non-JDK) class the unit
+ * referenced, and is used only if those classes still have the same
+ * signatures.
+ * <p>
+ * Every entry is a directory named by its key, holding the outputs and a
+ * {@code manifest}; an entry is built under a temporary name and renamed into
+ * place atomically, and evicted by being renamed away before it is deleted,
+ * so compiler processes may share a cache directory. The cache is bounded in
+ * size: when it grows too large, the entries used least recently are evicted.
+ */
+
+class BuildCache {
+
+    /** Default bound on the size of the cache, in bytes. */
+    public static final long DEFAULT_MAX_SIZE = 256L * 1024 * 1024;
+
+    /** Name of the manifest within an entry. */
+    private static final String MANIFEST = "manifest";
+
+    /** Name of the captured STDOUT within an entry. */
+    private static final String LISTING = "stdout";
+
+    /**
+     * Age (in milliseconds) after which a temporary directory is taken to be
+     * left over by a compiler that died, and deleted.
+     */
+    private static final long STALE_TEMP_AGE = 60 * 60 * 1000;
+
+    /** Fingerprint of the compiler, or "" if it cannot be identified. */
+    private static String compilerFingerprint;
+
+    /** The cache directory. */
+    private File dir;
+
+    /** Bound on the size of the cache, in bytes. */
+    private long maxSize;
+
+    /**
+     * Size of the cache as of its last scan plus what has been added since, or
+     * -1 if it has not been scanned yet.
+     */
+    private long size;
+
+    /**
+     * Constructs a BuildCache over the specified directory.
+     *
+     * @param dir
+     *            the cache directory; created if need be.
+     * @param maxSize
+     *            bound on the size of the cache, in bytes.
+     */
+
+    public BuildCache(String dir, long maxSize) {
+        this.dir = new File(dir);
+        this.maxSize = maxSize;
+        size = -1;
+        this.dir.mkdirs();
+    }
+
+    /**
+     * Returns the key for the specified source file compiled with the
+     * specified options.
+     *
+     * @param sourceFile
+     *            the source file.
+     * @param options
+     *            the options that affect the outputs.
+     * @return the key, or {@code null} if the source file cannot be read or
+     *         the compiler cannot be identified, in which case the cache is
+     *         not used.
+     */
+
+    public String key(String sourceFile, String options) {
+        String compiler = compilerFingerprint();
+        String source = DependencyIndex.fingerprint(new File(sourceFile));
+        if (compiler.equals("") || source.equals("-")) {
+            return null;
+        }
+        MessageDigest digest = newDigest();
+        digest.update((compiler + "\n" + new File(sourceFile).getName() + "\n"
+                + options + "\n" + source).getBytes());
+        return DependencyIndex.toHex(digest.digest());
+    }
+
+    /**
+     * Copies the outputs cached under the specified key, if any, to where
+     * the compiler would have put them.
+     *
+     * @param key
+     *            the key.
+     * @param sourceFile
+     *            the source file.
+     * @param outputDir
+     *            the output directory.
+     * @param classes
+     *            map to put class files in instead of the output directory
+     *            (-run), or {@code null}.
+     * @param index
+     *            the incremental compilation index to record the unit in, or
+     *            {@code null}.
+     * @return {@code true} if the outputs were found in the cache (and
+     *         copied), and {@code false} otherwise.
+     */
+
+    public boolean restore(String key, String sourceFile, String outputDir,
+            Map<String, byte[]> classes, DependencyIndex index) {
+        File entry = new File(dir, key);
+        File manifest = new File(entry, MANIFEST);
+        Hashtable<String, String> produced = new Hashtable<String, String>();
+        Hashtable<String, String> referenced = new Hashtable<String, String>();
+        ArrayList<String> classNames = new ArrayList<String>();
+        ArrayList<String> files = new ArrayList<String>();
+        try {
+            if (!read(manifest, produced, referenced, classNames, files)) {
+                return false;
+            }
+
+            // The unit may compile differently against the classes it
+            // references if their signatures changed
+            for (Map.Entry<String, String> e : referenced.entrySet()) {
+                String signature = DependencyIndex.signatureFingerprint(e
+                        .getKey());
+                if (!signature.equals(e.getValue())) {
+                    return false;
+                }
+            }
+            for (String name : classNames) {
+                byte[] bytes = Files.readAllBytes(new File(entry, name
+                        + ".class").toPath());
+                if (classes != null) {
+                    classes.put(name, bytes);
+                } else {
+                    // As atomically as if they were generated
+                    ClassFileWriter.writeFile(new File(outputDir, name
+                            .replace('.', File.separatorChar) + ".class"),
+                            bytes);
+                }
+            }
+            for (String name : files) {
+                ClassFileWriter.writeFile(new File(outputDir, name), Files
+                        .readAllBytes(new File(entry, name).toPath()));
+            }
+            File listing = new File(entry, LISTING);
+            if (listing.exists()) {
+                byte[] bytes = Files.readAllBytes(listing.toPath());
+                System.out.write(bytes, 0, bytes.length);
+                System.out.flush();
+            }
+        } catch (IOException e) {
+            // The entry was evicted while being read
+            return false;
+        } catch (ClassNotFoundException e) {
+            return false;
+        } catch (LinkageError e) {
+            return false;
+        }
+
+        // The entry is now the one used most recently
+        manifest.setLastModified(System.currentTimeMillis());
+        if (index != null) {
+            index.record(sourceFile, produced, referenced);
+        }
+        return true;
+    }
+
+    /**
+     * Stores the outputs of the successful compilation of a unit under the
+     * specified key, evicting entries if the cache has grown too large. If
+     * the outputs cannot be stored, they are simply left uncached.
+     *
+     * @param key
+     *            the key.
+     * @param ast
+     *            the unit's AST.
+     * @param outputDir
+     *            the output directory.
+     * @param classes
+     *            map the class files were put in instead of the output
+     *            directory (-run), or {@code null}.
+     * @param spimFile
+     *            name of the .s file written to the output directory, or
+     *            {@code null} if class files were generated.
+     * @param listing
+     *            what the compilation wrote to STDOUT, or {@code null}.
+     */
+
+    public void store(String key, JCompilationUnit ast, String outputDir,
+            Map<String, byte[]> classes, String spimFile, byte[] listing) {
+        File entry = new File(dir, key);
+        if (entry.exists()) {
+            return;
+        }
+        File temp = new File(dir, "tmp-" + key + "-"
+                + Long.toHexString(Double.doubleToLongBits(Math.random())));
+        long added = 0;
+        try {
+            Files.createDirectory(temp.toPath());
+            Hashtable<String, String> produced = DependencyIndex
+                    .producedSignatures(ast);
+            Hashtable<String, String> referenced = DependencyIndex
+                    .referencedSignatures(ast, produced);
+            PrintWriter manifest = new PrintWriter(new File(temp, MANIFEST));
+            if (spimFile == null) {
+                // In the order generated, which is that of a jar's entries
+                for (DeclaredType declared : ast.declaredTypes()) {
+                    String name = declared.toString();
+                    byte[] bytes = classes != null ? classes.get(name) : Files
+                            .readAllBytes(new File(outputDir, name.replace(
+                                    '.', File.separatorChar)
+                                    + ".class").toPath());
+                    Files.write(new File(temp, name + ".class").toPath(),
+                            bytes);
+                    added += bytes.length;
+                    manifest.printf("class\t%s\t%s\n", name, produced
+                            .get(name));
+                }
+            } else {
+                Files.copy(new File(outputDir, spimFile).toPath(), new File(
+                        temp, spimFile).toPath());
+                added += new File(temp, spimFile).length();
+                manifest.printf("file\t%s\t-\n", spimFile);
+            }
+            for (Map.Entry<String, String> e : referenced.entrySet()) {
+                manifest.printf("uses\t%s\t%s\n", e.getKey(), e.getValue());
+            }
+            manifest.close();
+            if (listing != null) {
+                Files.write(new File(temp, LISTING).toPath(), listing);
+                added += listing.length;
+            }
+            Util.moveIntoPlace(temp, entry);
+        } catch (IOException e) {
+            // Possibly another compiler stored the same entry first
+            delete(temp);
+            return;
+        }
+        added(added);
+    }
+
+    /**
+     * Accounts for an entry added to the cache, evicting entries if it has
+     * grown too large.
+     *
+     * @param bytes
+     *            size of the entry.
+     */
+
+    private synchronized void added(long bytes) {
+        if (size >= 0) {
+            size += bytes;
+        }
+
+        // Other compilers may have added entries too, so the cache is
+        // scanned before anything is evicted
+        if (size < 0 || size > maxSize) {
+            evict();
+        }
+    }
+
+    /**
+     * Evicts the entries used least recently until the cache is within its
+     * bound, and deletes temporary directories left over by compilers that
+     * died.
+     */
+
+    private void evict() {
+        File[] entries = dir.listFiles();
+        if (entries == null) {
+            return;
+        }
+        ArrayList<File> used = new ArrayList<File>();
+        final Hashtable<File, Long> lastUsed = new Hashtable<File, Long>();
+        size = 0;
+        for (File entry : entries) {
+            if (entry.getName().startsWith("tmp-")) {
+                if (entry.lastModified() < System.currentTimeMillis()
+                        - STALE_TEMP_AGE) {
+                    delete(entry);
+                }
+            } else if (entry.isDirectory()) {
+                used.add(entry);
+                lastUsed.put(entry, new File(entry, MANIFEST).lastModified());
+                size += size(entry);
+            }
+        }
+        Collections.sort(used, new Comparator<File>() {
+            public int compare(File a, File b) {
+                return lastUsed.get(a).compareTo(lastUsed.get(b));
+            }
+        });
+        for (int i = 0; i < used.size() && size > maxSize; i++) {
+            File entry = used.get(i);
+            long bytes = size(entry);
+            File temp = new File(dir, "tmp-evicted-" + entry.getName());
+            if (entry.renameTo(temp)) {
+                delete(temp);
+                size -= bytes;
+            }
+        }
+    }
+
+    /**
+     * Reads the manifest of an entry.
+     *
+     * @param manifest
+     *            the manifest.
+     * @param produced
+     *            where to put the classes produced and their signatures.
+     * @param referenced
+     *            where to put the classes referenced and their signatures.
+     * @param classNames
+     *            where to put the names of the classes produced, in the 
+     *            order they were generated.
+     * @param files
+     *            where to put the names of the other files produced.
+     * @return {@code true} if the manifest was read, and {@code false} if
+     *         there is no such entry.
+     * @throws IOException
+     *             if the manifest cannot be read.
+     */
+
+    private static boolean read(File manifest,
+            Hashtable<String, String> produced,
+            Hashtable<String, String> referenced,
+            ArrayList<String> classNames, ArrayList<String> files)
+            throws IOException {
+        if (!manifest.exists()) {
+            return false;
+        }
+        BufferedReader reader = new BufferedReader(new FileReader(manifest));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                StringTokenizer tokens = new StringTokenizer(line, "\t");
+                String kind = tokens.nextToken();
+                String name = tokens.nextToken();
+                String fingerprint = tokens.nextToken();
+                if (kind.equals("class")) {
+                    produced.put(name, fingerprint);
+                    classNames.add(name);
+                } else if (kind.equals("uses")) {
+                    referenced.put(name, fingerprint);
+                } else if (kind.equals("file")) {
+                    files.add(name);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return true;
+    }
+
+    /**
+     * Returns the fingerprint of the compiler: of the name, size and time of
+     * last modification of the jar it was loaded from or, if it was loaded
+     * from a directory, of each of its class files. Hashing their contents
+     * instead would cost more, each time the compiler starts, than a cache
+     * hit saves.
+     *
+     * @return the fingerprint, or "" if the compiler cannot be identified.
+     */
+
+    private static synchronized String compilerFingerprint() {
+        if (compilerFingerprint != null) {
+            return compilerFingerprint;
+        }
+        compilerFingerprint = "";
+        try {
+            URL location = BuildCache.class.getProtectionDomain()
+                    .getCodeSource().getLocation();
+            File file = new File(location.toURI());
+            File[] files = { file };
+            if (file.isDirectory()) {
+                files = new File(file, "jminusminus").listFiles();
+                Arrays.sort(files);
+            }
+            MessageDigest digest = newDigest();
+            for (File f : files) {
+                digest.update((f.getPath() + " " + f.length() + " "
+                        + f.lastModified() + "\n").getBytes());
+            }
+            compilerFingerprint = DependencyIndex.toHex(digest.digest());
+        } catch (Exception e) {
+            System.err.println("Warning: cannot identify the compiler; "
+                    + "not using the build cache");
+        }
+        return compilerFingerprint;
+    }
+
+    /**
+     * Returns the total size of the files in a directory.
+     *
+     * @param dir
+     *            the directory.
+     * @return the size, in bytes.
+     */
+
+    private static long size(File dir) {
+        long size = 0;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                size += file.isDirectory() ? size(file) : file.length();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Deletes a file, or a directory and everything in it.
+     *
+     * @param file
+     *            the file or directory.
+     */
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                delete(f);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Returns a new message digest for computing keys.
+     *
+     * @return the message digest.
+     */
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
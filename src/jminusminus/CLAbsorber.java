@@ -13,6 +13,10 @@ import static jminusminus.CLConstants.*;
  * CLAbsorber is for reading a Java class into an in-memory {@link CLFile}
  * representation and printing it out to STDOUT in a format similar to that of
  * javap.
+ * <p>
+ * A class may also be read for its signature only (as {@link ClassFileType}
+ * does, for compiling against it): then the attributes, and so the code of
+ * the methods, are skipped rather than read.
  */
 
 public class CLAbsorber {
@@ -26,6 +30,9 @@ public class CLAbsorber {
     /** Name of the class that is read. */
     private String className;
 
+    /** Whether only the signature of the class is read. */
+    private boolean signatureOnly;
+
     /**
      * Print the specified warning to STDERR.
      * 
@@ -107,10 +114,24 @@ public class CLAbsorber {
                     cp.addCPItem(new CLConstantNameAndTypeInfo(in
                             .readUnsignedShort(), in.readUnsignedShort()));
                     break;
+                case CONSTANT_MethodHandle:
+                    cp.addCPItem(new CLConstantMethodHandleInfo(in
+                            .readUnsignedByte(), in.readUnsignedShort()));
+                    break;
+                case CONSTANT_MethodType:
+                    cp.addCPItem(new CLConstantMethodTypeInfo(in
+                            .readUnsignedShort()));
+                    break;
+                case CONSTANT_Dynamic:
+                case CONSTANT_InvokeDynamic:
+                    cp.addCPItem(new CLConstantDynamicInfo(in
+                            .readUnsignedShort(), in.readUnsignedShort(),
+                            (short) tag));
+                    break;
                 case CONSTANT_Utf8:
                     int length = in.readUnsignedShort();
                     byte[] b = new byte[length];
-                    in.read(b);
+                    in.readFully(b);
                     cp.addCPItem(new CLConstantUtf8Info(b));
                     break;
                 default:
@@ -206,6 +227,10 @@ public class CLAbsorber {
                 int attributeNameIndex = in.readUnsignedShort();
                 long attributeLength   = in.readUnsignedInt();
                 CLAttributeInfo attributeInfo = null;
+                if (signatureOnly) {
+                    in.skipFully(attributeLength);
+                    continue;
+                }
 
                 String attributeName = new String(((CLConstantUtf8Info) cp
                         .cpItem(attributeNameIndex)).b);
@@ -943,15 +968,57 @@ public class CLAbsorber {
      */
 
     public CLAbsorber(String className) {
+        CLPath path = new CLPath();
+        try {
+            read(className, path.loadClass(className), false);
+        } finally {
+            path.close();
+        }
+    }
+
+    /**
+     * Construct a CLAbsorber object reading the class with the specified 
+     * (fully-qualified) name from the specified stream, which is closed 
+     * once read.
+     * 
+     * @param className
+     *            fully qualified name of the input class file.
+     * @param in
+     *            the class file, as opened by {@link CLPath#loadClass(String)};
+     *            {@code null} if it was not found.
+     * @param signatureOnly
+     *            whether only the signature of the class is to be read; if 
+     *            so, the attributes of the class and of its members are 
+     *            skipped.
+     */
+
+    public CLAbsorber(String className, CLInputStream in, 
+            boolean signatureOnly) {
+        read(className, in, signatureOnly);
+    }
+
+    /**
+     * Reads the class with the specified (fully-qualified) name from the
+     * specified stream, and closes the stream.
+     * 
+     * @param className
+     *            fully qualified name of the input class file.
+     * @param in
+     *            the class file, or {@code null} if it was not found.
+     * @param signatureOnly
+     *            whether only the signature of the class is to be read.
+     */
+
+    private void read(String className, CLInputStream in, 
+            boolean signatureOnly) {
+        this.className = className;
+        this.signatureOnly = signatureOnly;
+        errorHasOccurred = false;
+        if (in == null) {
+            reportError("Error loading %s", className);
+            return;
+        }
         try {
-            this.className = className;
-            CLPath classPath = new CLPath();
-            CLInputStream in = classPath.loadClass(className);
-            errorHasOccurred = false;
-            if (in == null) {
-                reportError("Error loading %s", className);
-                return;
-            }
             classFile = new CLFile();
 
             // Read magic number (0xCAFEBABE)
@@ -1014,6 +1081,12 @@ public class CLAbsorber {
             reportError("Unexpected end of file %s", className);
         } catch (IOException e) {
             reportError("Error reading file %s", className);
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // Ignore
+            }
         }
     }
 
@@ -1110,10 +1183,36 @@ class CLInputStream extends DataInputStream {
     public final long readUnsignedInt() throws IOException {
         byte[] b = new byte[4];
         long mask = 0xFF, l;
-        in.read(b);
+        readFully(b);
         l = ((b[0] & mask) << 24) | ((b[1] & mask) << 16)
                 | ((b[2] & mask) << 8) | (b[3] & mask);
         return l;
     }
 
+    /**
+     * Skips exactly the specified number of bytes; unlike {@code skipBytes},
+     * it does not stop short of that until the end of the stream (as streams 
+     * from zip files may).
+     * 
+     * @param n
+     *            the number of bytes to skip.
+     * @exception EOFException
+     *                if this stream reaches the end before skipping all the
+     *                bytes.
+     * @exception IOException
+     *                if an I/O error occurs.
+     */
+
+    public final void skipFully(long n) throws IOException {
+        while (n > 0) {
+            int skipped = skipBytes((int) Math.min(n, Integer.MAX_VALUE));
+            if (skipped == 0) {
+                // Either at the end of the stream, or the stream won't skip
+                readByte();
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+
 }
@@ -800,3 +800,218 @@ class CLConstantUtf8Info extends CLCPInfo {
     }
 
 }
+
+/**
+ * Representation of CONSTANT_MethodHandle_info structure (JVM Spec Section
+ * 4.4.8, Java SE 7). We never emit one, but the classes we read may have them.
+ */
+
+class CLConstantMethodHandleInfo extends CLCPInfo {
+
+    /** CONSTANT_MethodHandle_info.reference_kind item. */
+    public int referenceKind;
+
+    /** CONSTANT_MethodHandle_info.reference_index item. */
+    public int referenceIndex;
+
+    /**
+     * Constructs a CLConstantMethodHandleInfo object.
+     * 
+     * @param referenceKind
+     *            CONSTANT_MethodHandle_info.reference_kind item.
+     * @param referenceIndex
+     *            CONSTANT_MethodHandle_info.reference_index item.
+     */
+
+    public CLConstantMethodHandleInfo(int referenceKind, int referenceIndex) {
+        super.tag = CONSTANT_MethodHandle;
+        this.referenceKind = referenceKind;
+        this.referenceIndex = referenceIndex;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void write(CLOutputStream out) throws IOException {
+        super.write(out);
+        out.writeByte(referenceKind);
+        out.writeShort(referenceIndex);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean equals(Object obj) {
+        if (obj instanceof CLConstantMethodHandleInfo) {
+            CLConstantMethodHandleInfo c = (CLConstantMethodHandleInfo) obj;
+            if ((c.referenceKind == referenceKind)
+                    && (c.referenceIndex == referenceIndex)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public int hashCode() {
+        return 31 * referenceKind + referenceIndex;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void writeToStdOut(PrettyPrinter p) {
+        super.writeToStdOut(p);
+        p.printf("%-20s%-8s%-8s\n", "MethodHandle", referenceKind,
+                referenceIndex);
+    }
+
+}
+
+/**
+ * Representation of CONSTANT_MethodType_info structure (JVM Spec Section
+ * 4.4.9, Java SE 7).
+ */
+
+class CLConstantMethodTypeInfo extends CLCPInfo {
+
+    /** CONSTANT_MethodType_info.descriptor_index item. */
+    public int descriptorIndex;
+
+    /**
+     * Constructs a CLConstantMethodTypeInfo object.
+     * 
+     * @param descriptorIndex
+     *            CONSTANT_MethodType_info.descriptor_index item.
+     */
+
+    public CLConstantMethodTypeInfo(int descriptorIndex) {
+        super.tag = CONSTANT_MethodType;
+        this.descriptorIndex = descriptorIndex;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void write(CLOutputStream out) throws IOException {
+        super.write(out);
+        out.writeShort(descriptorIndex);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean equals(Object obj) {
+        if (obj instanceof CLConstantMethodTypeInfo) {
+            CLConstantMethodTypeInfo c = (CLConstantMethodTypeInfo) obj;
+            if (c.descriptorIndex == descriptorIndex) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public int hashCode() {
+        return descriptorIndex;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void writeToStdOut(PrettyPrinter p) {
+        super.writeToStdOut(p);
+        p.printf("%-20s%s\n", "MethodType", descriptorIndex);
+    }
+
+}
+
+/**
+ * Representation of CONSTANT_Dynamic_info and CONSTANT_InvokeDynamic_info
+ * structures (JVM Spec Section 4.4.10, Java SE 7 and 11), which differ only in
+ * their tags.
+ */
+
+class CLConstantDynamicInfo extends CLCPInfo {
+
+    /** CONSTANT_Dynamic_info.bootstrap_method_attr_index item. */
+    public int bootstrapMethodAttrIndex;
+
+    /** CONSTANT_Dynamic_info.name_and_type_index item. */
+    public int nameAndTypeIndex;
+
+    /**
+     * Constructs a CLConstantDynamicInfo object.
+     * 
+     * @param bootstrapMethodAttrIndex
+     *            CONSTANT_Dynamic_info.bootstrap_method_attr_index item.
+     * @param nameAndTypeIndex
+     *            CONSTANT_Dynamic_info.name_and_type_index item.
+     * @param tag
+     *            CONSTANT_Dynamic_info.tag item.
+     */
+
+    public CLConstantDynamicInfo(int bootstrapMethodAttrIndex,
+            int nameAndTypeIndex, short tag) {
+        super.tag = tag;
+        this.bootstrapMethodAttrIndex = bootstrapMethodAttrIndex;
+        this.nameAndTypeIndex = nameAndTypeIndex;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void write(CLOutputStream out) throws IOException {
+        super.write(out);
+        out.writeShort(bootstrapMethodAttrIndex);
+        out.writeShort(nameAndTypeIndex);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean equals(Object obj) {
+        if (obj instanceof CLConstantDynamicInfo) {
+            CLConstantDynamicInfo c = (CLConstantDynamicInfo) obj;
+            if ((c.tag == tag)
+                    && (c.bootstrapMethodAttrIndex == bootstrapMethodAttrIndex)
+                    && (c.nameAndTypeIndex == nameAndTypeIndex)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public int hashCode() {
+        return (31 * tag + bootstrapMethodAttrIndex) * 31 + nameAndTypeIndex;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void writeToStdOut(PrettyPrinter p) {
+        super.writeToStdOut(p);
+        p.printf("%-20s%-8s%-8s\n", tag == CONSTANT_Dynamic ? "Dynamic"
+                : "InvokeDynamic", bootstrapMethodAttrIndex, nameAndTypeIndex);
+    }
+
+}
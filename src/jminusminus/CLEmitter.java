@@ -7,12 +7,13 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.FileSystemException;
 
 import java.util.ArrayList;
 import java.util.Hashtable;
+import java.util.Map;
 import java.util.Stack;
 import java.util.StringTokenizer;
 import java.util.TreeMap;
@@ -25,10 +26,9 @@ import static jminusminus.CLConstants.Category.*;
  * based) representation of Java classes.
  * <p>
  * j-- uses this interface to produce target JVM bytecode from a j-- source
- * program. During the pre-analysis and analysis phases, j-- produces partial
- * (in-memory) classes for the type declarations within the compilation unit,
- * and during the code generation phase, it produces file-based classes for the
- * declarations.
+ * program. During the code generation phase, it produces file-based (or, for
+ * the API, in-memory) classes for the type declarations within the
+ * compilation unit.
  */
 
 public class CLEmitter {
@@ -45,9 +45,18 @@ public class CLEmitter {
     /** Destination directory for the class. */
     private String destDir;
 
+    /**
+     * If not null, the map (of binary class names to class file bytes) into 
+     * which the class is written, in place of the file system.
+     */
+    private Map<String, byte[]> destMap;
+
     /** In-memory representation of the class. */
     private CLFile clFile;
 
+    /** Class files handed to the background writer and not yet waited for. */
+    private ArrayList<PendingClassFile> pendingWrites;
+
     /** Constant pool of the class. */
     private CLConstantPool constantPool;
 
@@ -139,12 +148,6 @@ public class CLEmitter {
      */
     private boolean errorHasOccurred;
 
-    /**
-     * Class loader to use for creating in-memory representation of classes from
-     * byte streams.
-     */
-    private static ByteClassLoader byteClassLoader;
-
     /**
      * Initialize all variables used for adding a method to the ClassFile
      * structure to their appropriate values.
@@ -167,6 +170,17 @@ public class CLEmitter {
         mInstructionAfterLabel = false;
     }
 
+    /**
+     * Adds the method created using addMethod() to the ClassFile structure
+     * now, rather than when the next method is added or the class is written,
+     * so the work is done (and measured, see {@link Stats}) as part of the
+     * method's code generation.
+     */
+
+    public void endMethod() {
+        endOpenMethodIfAny();
+    }
+
     /**
      * Add the method created using addMethod() to the ClassFile structure. This
      * involves adding an instance of CLMethodInfo to ClassFile.methods for the
@@ -175,6 +189,7 @@ public class CLEmitter {
 
     private void endOpenMethodIfAny() {
         if (isMethodOpen) {
+            Measurement m = Stats.start("endMethod", eCurrentMethod);
             isMethodOpen = false;
             if (!mInstructionAfterLabel) {
                 // Must jump to an instruction
@@ -258,6 +273,7 @@ public class CLEmitter {
 
             methods.add(new CLMethodInfo(mAccessFlags, mNameIndex,
                     mDescriptorIndex, mAttributes.size(), mAttributes));
+            Stats.stop(m);
         }
 
         // This method could be the last method, so we need
@@ -597,38 +613,39 @@ public class CLEmitter {
      */
 
     private CLInstruction instruction(int pc) {
-        for (int j = 0; j < mCode.size(); j++) {
-            CLInstruction i = mCode.get(j);
-            if (i.pc() == pc) {
-                return i;
-            }
-        }
-        return null;
+        int j = instructionIndex(pc);
+        return j < mCode.size() && mCode.get(j).pc() == pc ? mCode.get(j)
+                : null;
     }
 
     /**
      * Return the index of the instruction with the specified pc, within the
-     * code array of the current method being added.
+     * code array of the current method being added. The instructions are in
+     * the order of their pcs, so they're searched by bisection.
      * 
      * @param pc
      *            pc of the instruction.
-     * @return index of the instruction with the specified pc.
+     * @return index of the instruction with the specified pc, or of the first
+     *         one after it.
      */
 
     private int instructionIndex(int pc) {
-        int j = 0;
-        for (; j < mCode.size(); j++) {
-            CLInstruction i = mCode.get(j);
-            if (i.pc() == pc) {
-                return j;
+        int low = 0, high = mCode.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (mCode.get(middle).pc() < pc) {
+                low = middle + 1;
+            } else {
+                high = middle;
             }
         }
-        return j;
+        return low;
     }
 
     /**
      * Compute the maximum depth of the operand stack for the method last added,
-     * and return the value.
+     * and return the value. The depth before an instruction is the same on
+     * every path to it, so each instruction is walked once.
      * 
      * @return maximum depth of operand stack.
      */
@@ -645,55 +662,63 @@ public class CLEmitter {
             }
         }
         int stackDepth = 0, maxStackDepth = 0, c = 0;
+        boolean[] walked = new boolean[mCode.size()];
         CLInstruction instr = (mCode.size() == 0) ? null : mCode.get(c);
         while (instr != null) {
-            int opcode = instr.opcode();
-            int stackUnits = instr.stackUnits();
-            if (stackUnits == EMPTY_STACK) {
-                stackDepth = 0;
-            } else if (stackUnits == UNIT_SIZE_STACK) {
-                stackDepth = 1;
+            if (walked[c]) {
+                // Reached code already walked, from another path
+                instr = null;
             } else {
-                stackDepth += stackUnits;
-            }
-            if (stackDepth > maxStackDepth) {
-                maxStackDepth = stackDepth;
-            }
+                walked[c] = true;
+                int opcode = instr.opcode();
+                int stackUnits = instr.stackUnits();
+                if (stackUnits == EMPTY_STACK) {
+                    stackDepth = 0;
+                } else if (stackUnits == UNIT_SIZE_STACK) {
+                    stackDepth = 1;
+                } else {
+                    stackDepth += stackUnits;
+                }
+                if (stackDepth > maxStackDepth) {
+                    maxStackDepth = stackDepth;
+                }
+
+                // For tracing purposes
+                // System.out.println( instr.mnemonic() + ", " +
+                // stackUnits + ", " +
+                // stackDepth + ", " + maxStackDepth );
 
-            // For tracing purposes
-            // System.out.println( instr.mnemonic() + ", " +
-            // stackUnits + ", " +
-            // stackDepth + ", " + maxStackDepth );
-
-            if (instr instanceof CLFlowControlInstruction) {
-                CLFlowControlInstruction b = (CLFlowControlInstruction) instr;
-                int jumpToIndex = b.pc() + b.jumpToOffset();
-                CLInstruction instrAt = null;
-                switch (opcode) {
-                case JSR:
-                case JSR_W:
-                case RET:
-                    instr = null;
-                    break;
-                case GOTO:
-                case GOTO_W:
-                    instr = null;
-                default:
-                    instrAt = instruction(jumpToIndex);
-                    if (instrAt != null) {
-                        branchTargets.push(instrAt, stackDepth);
+                if (instr instanceof CLFlowControlInstruction) {
+                    CLFlowControlInstruction b =
+                        (CLFlowControlInstruction) instr;
+                    int jumpToIndex = b.pc() + b.jumpToOffset();
+                    CLInstruction instrAt = null;
+                    switch (opcode) {
+                    case JSR:
+                    case JSR_W:
+                    case RET:
+                        instr = null;
+                        break;
+                    case GOTO:
+                    case GOTO_W:
+                        instr = null;
+                    default:
+                        instrAt = instruction(jumpToIndex);
+                        if (instrAt != null) {
+                            branchTargets.push(instrAt, stackDepth);
+                        }
+                    }
+                } else {
+                    if ((opcode == ATHROW) ||
+                        ((opcode >= IRETURN) && (opcode <= RETURN))) {
+                        instr = null;
                     }
                 }
-            } else {
-                if ((opcode == ATHROW) ||
-                    ((opcode >= IRETURN) && (opcode <= RETURN))) {
-                    instr = null;
+                if (instr != null) {
+                    c++;
+                    instr = (c >= mCode.size()) ? null : mCode.get(c);
                 }
             }
-            if (instr != null) {
-                c++;
-                instr = (c >= mCode.size()) ? null : mCode.get(c);
-            }
             if (instr == null) {
                 CLBranchTarget bt = branchTargets.pop();
                 if (bt != null) {
@@ -894,6 +919,7 @@ public class CLEmitter {
     public CLEmitter(boolean toFile) {
         destDir = ".";
         this.toFile = toFile;
+        pendingWrites = new ArrayList<PendingClassFile>();
     }
 
     /**
@@ -908,12 +934,42 @@ public class CLEmitter {
     }
 
     /**
-     * Has an emitter error occurred up to now?
+     * Sets the map into which the class is written, in place of the file 
+     * system; the class file bytes are put in the map under the binary name
+     * of the class (for example, {@code pass.Factorial}).
+     * 
+     * @param destMap
+     *            destination map.
+     */
+
+    public void destinationMap(Map<String, byte[]> destMap) {
+        this.destMap = destMap;
+    }
+
+    /**
+     * Has an emitter error occurred up to now? The class files written so 
+     * far are waited for, so that any error in writing them is reported.
      * 
      * @return true or false.
      */
 
     public boolean errorHasOccurred() {
+        for (PendingClassFile pending : pendingWrites) {
+            String outFile = pending.file().getPath();
+            try {
+                IOException e = pending.await();
+                if (e instanceof FileNotFoundException
+                        || e instanceof FileSystemException) {
+                    reportEmitterError("File %s not found", outFile);
+                } else if (e != null) {
+                    reportEmitterError("Cannot write to file %s", outFile);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                reportEmitterError("Cannot write to file %s", outFile);
+            }
+        }
+        pendingWrites.clear();
         return errorHasOccurred;
     }
 
@@ -1887,14 +1943,6 @@ public class CLEmitter {
         return constantPool;
     }
 
-    /**
-     * Sets a new ByteClassLoader for loading classes from byte streams.
-     */
-
-    public static void initializeByteClassLoader() {
-        byteClassLoader = new ByteClassLoader();
-    }
-
     /**
      * Returns the {@code CLFile} instance corresponding to the class built by 
      * this emitter.
@@ -1907,40 +1955,31 @@ public class CLEmitter {
     }
 
     /**
-     * Returns the class being constructed as a Java {@code Class} instance.
+     * Returns the bytes of the class file for the class in memory.
      * 
-     * @return Java Class instance.
+     * @return the class file bytes.
+     * @throws IOException
+     *             if the bytes cannot be written.
      */
-    public Class toClass() {
-        endOpenMethodIfAny();
-        Class theClass = null;
-        try {
-            // Extract the bytes from the class representation in
-            // memory into an array of bytes
-            ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-            CLOutputStream out = new CLOutputStream(new BufferedOutputStream(
-                    byteStream));
-            clFile.write(out);
-            out.close();
-            byte[] classBytes = byteStream.toByteArray();
-            byteStream.close();
-
-            // Load a Java Class instance from its byte
-            // representation
-            byteClassLoader.setClassBytes(classBytes);
-            theClass = byteClassLoader.loadClass(name, true);
-        } catch (IOException e) {
-            reportEmitterError("Cannot write class to byte stream");
-        } catch (ClassNotFoundException e) {
-            reportEmitterError("Cannot load class from byte stream");
-        }
-        return theClass;
+
+    private byte[] toBytes() throws IOException {
+        // Extract the bytes from the class representation in
+        // memory into an array of bytes
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        CLOutputStream out = new CLOutputStream(new BufferedOutputStream(
+                byteStream));
+        clFile.write(out);
+        out.close();
+        return byteStream.toByteArray();
     }
 
     /**
      * Writes out the class to the file system as a .class file if 
      * {@code toFile} is {@code true}. The destination directory for the file 
-     * can be set using the {@link #destinationDir(String)} method.
+     * can be set using the {@link #destinationDir(String)} method; the class 
+     * may instead be written to a map (see {@link #destinationMap(Map)}).
+     * The file is written in the background (see {@link ClassFileWriter}); 
+     * {@link #errorHasOccurred()} waits for it.
      */
 
     public void write() {
@@ -1948,17 +1987,18 @@ public class CLEmitter {
         if (!toFile) {
             return;
         }
+        if (destMap != null) {
+            try {
+                destMap.put(name.replace("/", "."), toBytes());
+            } catch (IOException e) {
+                reportEmitterError("Cannot write class to byte stream");
+            }
+            return;
+        }
         String outFile = destDir + File.separator + name + ".class";
         try {
-            File file = new File(destDir + File.separator
-                    + name.substring(0, name.lastIndexOf("/") + 1));
-            file.mkdirs();
-            CLOutputStream out = new CLOutputStream(new BufferedOutputStream(
-                    new FileOutputStream(outFile)));
-            clFile.write(out);
-            out.close();
-        } catch (FileNotFoundException e) {
-            reportEmitterError("File %s not found", outFile);
+            pendingWrites.add(ClassFileWriter.write(new File(outFile), 
+                    toBytes()));
         } catch (IOException e) {
             reportEmitterError("Cannot write to file %s", outFile);
         }
@@ -2182,71 +2222,6 @@ class CLBranchStack {
 
 }
 
-/**
- * A class loader to be able to load a class from a byte stream.
- */
-
-class ByteClassLoader extends ClassLoader {
-
-    /** Bytes representing the class. */
-    private byte[] bytes;
-
-    /** Has a package been defined for this class loader? */
-    private boolean pkgDefined = false;
-
-    /**
-     * Sets the bytes representing the class.
-     * 
-     * @param bytes
-     *            bytes representing the class.
-     */
-
-    public void setClassBytes(byte[] bytes) {
-        this.bytes = bytes;
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-
-    public Class<?> loadClass(String name, boolean resolve)
-            throws ClassNotFoundException {
-        Class cls = findLoadedClass(name);
-        if (cls == null) {
-            try {
-                cls = findSystemClass(name);
-            } catch (Exception e) {
-                // Ignore these
-            } catch (NoClassDefFoundError e) {
-                // If we get here we know the class exists, 
-                // so change the name to its binary name as defined
-                // in the Java Language Specifications
-                cls = findSystemClass(name.replace("/", "."));
-            }
-        }
-        if (cls == null) {
-            name = name.replace("/", ".");
-            String pkg = name.lastIndexOf('.') == -1 ? "" : name.substring(0,
-                    name.lastIndexOf('.'));
-            if (!pkgDefined) {
-                // Packages must be created before the class is
-                // defined, and package names must be unique
-                // within
-                // a class loader and cannot be redefined or
-                // changed once created
-                definePackage(pkg, "", "", "", "", "", "", null);
-                pkgDefined = true;
-            }
-            cls = defineClass(name, bytes, 0, bytes.length);
-            if (resolve && cls != null) {
-                resolveClass(cls);
-            }
-        }
-        return cls;
-    }
-
-}
-
 /**
  * Inherits from java.out.DataOutputStream and provides an extra function for
  * writing unsigned int to the output stream, which is required for writing Java
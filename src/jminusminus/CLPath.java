@@ -3,12 +3,21 @@
 package jminusminus;
 
 import java.io.BufferedInputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -16,9 +25,18 @@ import java.util.zip.ZipFile;
  * This class can be used to locate and load system, extension, and user-defined
  * class files from directories and zip (jar) files. The code for this class has
  * been adapted from the Kopi (http://www.dms.at/kopi/) project.
+ * <p>
+ * The system classes are those of the running JDK: from its boot class path 
+ * or rt.jar, or, since Java 9, from its run-time image (the jrt file system). 
+ * They are looked for first, so that they can't be hidden by classes on the 
+ * class path.
+ * <p>
+ * Zip and jar files on the class path are kept open once opened, until the 
+ * CLPath is closed; those holding the system classes are shared by every 
+ * CLPath, and stay open.
  */
 
-class CLPath {
+class CLPath implements Closeable {
 
     /**
      * Stores the individual directories, zip, and jar files from the class
@@ -26,6 +44,32 @@ class CLPath {
      */
     private ArrayList<String> dirs;
 
+    /**
+     * The system directories, zip, and jar files; empty if the system 
+     * classes are in the run-time image.
+     */
+    private ArrayList<String> systemDirs;
+
+    /** The zip and jar files on the class path opened so far, by name. */
+    private HashMap<String, ZipFile> zips;
+
+    /** The system zip and jar files opened so far, by name. */
+    private static HashMap<String, ZipFile> systemZips = 
+        new HashMap<String, ZipFile>();
+
+    /** 
+     * The run-time image of the JDK, if the system classes are there; opened
+     * when first needed.
+     */
+    private static FileSystem jrt;
+
+    /** 
+     * Maps the packages looked for in the run-time image so far to the 
+     * modules that have them (none, if the image has no such package).
+     */
+    private static ConcurrentHashMap<String, ArrayList<String>> jrtPackages =
+        new ConcurrentHashMap<String, ArrayList<String>>();
+
     /**
      * Return a list of conceptual directories defining the class path.
      * 
@@ -43,21 +87,28 @@ class CLPath {
         while (entries.hasMoreTokens()) {
             container.add(entries.nextToken());
         }
+        return container;
+    }
+
+    /**
+     * Return a list of conceptual directories holding the system classes;
+     * the list is empty if they are in the run-time image (since Java 9).
+     * 
+     * @return a list of conceptual directories holding the system classes.
+     */
 
-        // Add system directories
+    private ArrayList<String> loadSystemPath() {
+        ArrayList<String> container = new ArrayList<String>();
         if (System.getProperty("sun.boot.class.path") != null) {
-            entries = new StringTokenizer(System
+            StringTokenizer entries = new StringTokenizer(System
                     .getProperty("sun.boot.class.path"), File.pathSeparator);
             while (entries.hasMoreTokens()) {
                 container.add(entries.nextToken());
             }
         } else {
-            float version = Float
-                    .parseFloat(System.getProperty("java.version"));
-            if (version > 1.1) {
-                String dir = System.getProperty("java.home")
-                        + File.separatorChar + "lib" + File.separatorChar
-                        + "rt.jar";
+            String dir = System.getProperty("java.home") + File.separatorChar
+                    + "lib" + File.separatorChar + "rt.jar";
+            if (new File(dir).isFile()) {
                 container.add(dir);
             }
         }
@@ -93,6 +144,8 @@ class CLPath {
             path = ".";
         }
         dirs = loadClassPath(path);
+        systemDirs = loadSystemPath();
+        zips = new HashMap<String, ZipFile>();
         if (extdir == null) {
             // Java extension classes
             extdir = System.getProperty("java.ext.dirs");
@@ -106,7 +159,7 @@ class CLPath {
                     if (file.isFile()
                             && (file.getName().endsWith(".zip") || file
                                     .getName().endsWith(".jar"))) {
-                        dirs.add(file.getName());
+                        dirs.add(file.getPath());
                     } else {
                         // Wrong suffix; ignore
                     }
@@ -128,37 +181,253 @@ class CLPath {
      */
 
     public CLInputStream loadClass(String name) {
-        CLInputStream reader = null;
-        for (int i = 0; i < dirs.size(); i++) {
-            String dir = dirs.get(i);
+        CLInputStream reader = loadSystemClass(name);
+        for (int i = 0; reader == null && i < dirs.size(); i++) {
+            reader = loadClass(dirs.get(i), name, false);
+        }
+        return reader;
+    }
+
+    /**
+     * Returns true if the class with the specified name (fully-qualified; 
+     * tokens separated by '/') is a system class.
+     * 
+     * @param name
+     *            the fully-qualified name of the class.
+     * @return {@code true} if it is a system class, and {@code false} 
+     *         otherwise.
+     */
+
+    public boolean isSystemClass(String name) {
+        if (systemDirs.isEmpty()) {
+            return jrtClass(name) != null;
+        }
+        for (String dir : systemDirs) {
             File file = new File(dir);
-            if (file.isDirectory()) {
-                File theClass = new File(dir, name.replace('/',
-                        File.separatorChar)
-                        + ".class");
-                if (theClass.canRead()) {
-                    try {
-                        reader = new CLInputStream(new BufferedInputStream(
-                                new FileInputStream(theClass)));
-                    } catch (FileNotFoundException e) {
-                        // Ignore
-                    }
+            if (file.isDirectory() ? new File(dir, name.replace('/',
+                    File.separatorChar) + ".class").isFile() : file.isFile()
+                    && systemZip(dir) != null
+                    && systemZip(dir).getEntry(name + ".class") != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a CLInputStream instance for the system class with specified 
+     * name or {@code null} if there is no such system class.
+     * 
+     * @param name
+     *            the fully-qualified name of the class.
+     * @return a CLInputStream instance for the class with specified name or
+     *         {@code null} if the class was not found.
+     */
+
+    private CLInputStream loadSystemClass(String name) {
+        if (systemDirs.isEmpty()) {
+            Path path = jrtClass(name);
+            try {
+                return path == null ? null : new CLInputStream(
+                        new BufferedInputStream(Files.newInputStream(path)));
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        CLInputStream reader = null;
+        for (int i = 0; reader == null && i < systemDirs.size(); i++) {
+            reader = loadClass(systemDirs.get(i), name, true);
+        }
+        return reader;
+    }
+
+    /**
+     * Returns a CLInputStream instance for the class with specified name in
+     * the specified directory, zip, or jar file, or {@code null} if it is not
+     * there.
+     * 
+     * @param dir
+     *            the directory, zip, or jar file.
+     * @param name
+     *            the fully-qualified name of the class.
+     * @param system
+     *            whether the directory, zip, or jar file holds system 
+     *            classes.
+     * @return a CLInputStream instance for the class with specified name or
+     *         {@code null} if the class was not found.
+     */
+
+    private CLInputStream loadClass(String dir, String name, boolean system) {
+        File file = new File(dir);
+        if (file.isDirectory()) {
+            File theClass = new File(dir, name.replace('/', File.separatorChar)
+                    + ".class");
+            if (theClass.canRead()) {
+                try {
+                    return new CLInputStream(new BufferedInputStream(
+                            new FileInputStream(theClass)));
+                } catch (FileNotFoundException e) {
+                    // Ignore
                 }
-            } else if (file.isFile()) {
+            }
+        } else if (file.isFile()) {
+            ZipFile zip = system ? systemZip(dir) : zip(dir);
+            ZipEntry entry = zip == null ? null : zip.getEntry(name + ".class");
+            if (entry != null) {
                 try {
-                    ZipFile zip = new ZipFile(dir);
-                    ZipEntry entry = zip.getEntry(name + ".class");
-                    if (entry != null) {
-                        reader = new CLInputStream(zip.getInputStream(entry));
+                    return new CLInputStream(new BufferedInputStream(zip
+                            .getInputStream(entry)));
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        } else {
+            // Bogus entry; ignore
+        }
+        return null;
+    }
+
+    /**
+     * Closes the zip and jar files on the class path opened so far; they are
+     * opened again if need be.
+     */
+
+    public synchronized void close() {
+        for (ZipFile zip : zips.values()) {
+            try {
+                if (zip != null) {
+                    zip.close();
+                }
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+        zips.clear();
+    }
+
+    /**
+     * Returns the specified zip (or jar) file on the class path, opening it 
+     * the first time round; it is kept open until this CLPath is closed.
+     * 
+     * @param dir
+     *            the name of the file.
+     * @return the zip file, or {@code null} if it cannot be opened.
+     */
+
+    private synchronized ZipFile zip(String dir) {
+        return zip(zips, dir);
+    }
+
+    /**
+     * Returns the specified system zip (or jar) file, opening it the first 
+     * time round; it is kept open from then on.
+     * 
+     * @param dir
+     *            the name of the file.
+     * @return the zip file, or {@code null} if it cannot be opened.
+     */
+
+    private static ZipFile systemZip(String dir) {
+        synchronized (systemZips) {
+            return zip(systemZips, dir);
+        }
+    }
+
+    /**
+     * Returns the specified zip (or jar) file from the specified ones opened 
+     * so far, opening it if it is not one of them.
+     * 
+     * @param zips
+     *            the zip files opened so far, by name.
+     * @param dir
+     *            the name of the file.
+     * @return the zip file, or {@code null} if it cannot be opened.
+     */
+
+    private static ZipFile zip(HashMap<String, ZipFile> zips, String dir) {
+        if (!zips.containsKey(dir)) {
+            ZipFile zip = null;
+            try {
+                zip = new ZipFile(dir);
+            } catch (IOException e) {
+                // Not a zip file; ignore
+            }
+            zips.put(dir, zip);
+        }
+        return zips.get(dir);
+    }
+
+    /**
+     * Returns the path of the system class with the specified name in the
+     * run-time image, or {@code null} if it is not there.
+     * 
+     * @param name
+     *            the fully-qualified name of the class.
+     * @return the path of the class file, or {@code null}.
+     */
+
+    private static Path jrtClass(String name) {
+        int i = name.lastIndexOf('/');
+        if (i < 0 || jrt() == null) {
+            return null;
+        }
+        for (String module : jrtModules(name.substring(0, i).replace('/',
+                '.'))) {
+            Path path = jrt.getPath("/modules", module, name + ".class");
+            if (Files.isRegularFile(path)) {
+                return path;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the modules in the run-time image that have the specified 
+     * package; they are listed the first time round.
+     * 
+     * @param packageName
+     *            the package name.
+     * @return the modules.
+     */
+
+    private static ArrayList<String> jrtModules(String packageName) {
+        ArrayList<String> modules = jrtPackages.get(packageName);
+        if (modules == null) {
+            modules = new ArrayList<String>();
+            Path dir = jrt.getPath("/packages", packageName);
+            if (Files.isDirectory(dir)) {
+                try {
+                    DirectoryStream<Path> links = Files.newDirectoryStream(dir);
+                    for (Path module : links) {
+                        modules.add(module.getFileName().toString());
                     }
+                    links.close();
                 } catch (IOException e) {
                     // Ignore
                 }
-            } else {
-                // Bogus entry; ignore
             }
+            jrtPackages.put(packageName, modules);
         }
-        return reader;
+        return modules;
+    }
+
+    /**
+     * Returns the run-time image of the JDK, opening it the first time 
+     * round.
+     * 
+     * @return the run-time image, or {@code null} if there is none (before 
+     *         Java 9).
+     */
+
+    private static synchronized FileSystem jrt() {
+        if (jrt == null) {
+            try {
+                jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+            } catch (Exception e) {
+                // No run-time image
+            }
+        }
+        return jrt;
     }
 
 }
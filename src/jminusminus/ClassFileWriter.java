@@ -0,0 +1,220 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A background writer of class files, so that writing one class to disk
+ * overlaps with generating code for the next. {@link CLEmitter} hands the
+ * serialized class over with {@link #write}, and waits for it with
+ * {@link PendingClassFile#await} only when it must report whether the write
+ * succeeded. The queue of classes waiting to be written is bounded: a compiler
+ * that outruns the disk waits for room in it.
+ * <p>
+ * A class file is written to a temporary file in its directory, which is
+ * then renamed over the class file, so that no one ever sees a partly written
+ * class file, even if the compiler is killed while writing it.
+ */
+
+class ClassFileWriter implements Runnable {
+
+    /** Bound on the number of classes waiting to be written. */
+    private static final int QUEUE_SIZE = 32;
+
+    /** The classes waiting to be written. */
+    private static BlockingQueue<PendingClassFile> queue;
+
+    /**
+     * Hands over the specified class file to be written by the background
+     * writer, starting it if need be; waits if too many classes are waiting
+     * to be written.
+     *
+     * @param file
+     *            the class file.
+     * @param bytes
+     *            the contents of the class file.
+     * @return the pending write.
+     */
+
+    public static PendingClassFile write(File file, byte[] bytes) {
+        PendingClassFile pending = new PendingClassFile(file, bytes);
+        BlockingQueue<PendingClassFile> queue = queue();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(pending);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return pending;
+    }
+
+    /**
+     * Returns the queue of classes waiting to be written, starting the
+     * background writer the first time round.
+     *
+     * @return the queue.
+     */
+
+    private static synchronized BlockingQueue<PendingClassFile> queue() {
+        if (queue == null) {
+            queue = new ArrayBlockingQueue<PendingClassFile>(QUEUE_SIZE);
+            Thread writer = new Thread(new ClassFileWriter(),
+                    "j-- class file writer");
+            writer.setDaemon(true);
+            writer.start();
+
+            // Programs using CLEmitter directly may exit without waiting for
+            // their classes to be written
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                public void run() {
+                    PendingClassFile last = new PendingClassFile(null, null);
+                    try {
+                        queue.put(last);
+                        last.await();
+                    } catch (InterruptedException e) {
+                        // Nothing more to do
+                    }
+                }
+            });
+        }
+        return queue;
+    }
+
+    /**
+     * Writes the classes handed over, one after another, for good.
+     */
+
+    public void run() {
+        while (true) {
+            PendingClassFile pending;
+            try {
+                pending = queue.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            IOException error = null;
+            if (pending.file() != null) {
+                try {
+                    writeFile(pending.file(), pending.bytes());
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+            pending.done(error);
+        }
+    }
+
+    /**
+     * Writes a class file (or another output of the compiler) through a
+     * temporary file in the same directory, in the calling thread.
+     *
+     * @param file
+     *            the class file.
+     * @param bytes
+     *            the contents of the class file.
+     * @throws IOException
+     *             if the class file cannot be written.
+     */
+
+    static void writeFile(File file, byte[] bytes) throws IOException {
+        // Its permissions are left to the umask, as writing the class file
+        // directly would
+        Util.writeFile(file, bytes, false);
+    }
+
+}
+
+/**
+ * A class file handed over to the {@link ClassFileWriter}, which may not have
+ * been written yet.
+ */
+
+class PendingClassFile {
+
+    /** The class file. */
+    private File file;
+
+    /** The contents of the class file. */
+    private byte[] bytes;
+
+    /** Whether the class file has been written (or failed to be). */
+    private boolean done;
+
+    /** Why the class file could not be written, if it could not. */
+    private IOException error;
+
+    /**
+     * Constructs a PendingClassFile.
+     *
+     * @param file
+     *            the class file.
+     * @param bytes
+     *            the contents of the class file.
+     */
+
+    public PendingClassFile(File file, byte[] bytes) {
+        this.file = file;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Returns the class file.
+     *
+     * @return the class file.
+     */
+
+    public File file() {
+        return file;
+    }
+
+    /**
+     * Returns the contents of the class file.
+     *
+     * @return the contents.
+     */
+
+    public byte[] bytes() {
+        return bytes;
+    }
+
+    /**
+     * Waits until the class file has been written.
+     *
+     * @return why the class file could not be written, or {@code null} if it
+     *         was written.
+     * @throws InterruptedException
+     *             if interrupted while waiting.
+     */
+
+    public synchronized IOException await() throws InterruptedException {
+        while (!done) {
+            wait();
+        }
+        return error;
+    }
+
+    /**
+     * Notes that the class file has been written, or failed to be.
+     *
+     * @param error
+     *            why the class file could not be written, or {@code null}.
+     */
+
+    public synchronized void done(IOException error) {
+        this.error = error;
+        bytes = null;
+        done = true;
+        notifyAll();
+    }
+
+}
@@ -0,0 +1,214 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.util.ArrayList;
+
+import static jminusminus.CLConstants.*;
+
+/**
+ * The symbol for a type declared in the unit being compiled: its modifiers, its
+ * superclass, and the headers of its members. Pre-analysis builds one for each
+ * type declaration, from the member headers, and makes it the representation
+ * of the type (see {@link DeclaredType}), so that analysis can look the members
+ * up; no class is generated for the type until code generation.
+ * <p>
+ * Modifiers are encoded as by {@link java.lang.reflect.Modifier} (whose values
+ * are those of the access flags in class files), just as reflection would
+ * report them for the type's class once it is generated.
+ */
+
+class ClassSymbol {
+
+    /** The type this is the symbol for. */
+    private DeclaredType type;
+
+    /** The type's modifiers. */
+    private int modifiers;
+
+    /** The superclass. */
+    private Type superType;
+
+    /** The fields, in the order declared. */
+    private ArrayList<FieldSymbol> fields;
+
+    /** The methods, in the order declared. */
+    private ArrayList<MethodSymbol> methods;
+
+    /** The constructors, in the order declared. */
+    private ArrayList<ConstructorSymbol> constructors;
+
+    /**
+     * Constructs a ClassSymbol, with no members (yet).
+     *
+     * @param type
+     *            the type this is the symbol for.
+     * @param mods
+     *            the type's modifiers.
+     * @param superType
+     *            the superclass.
+     */
+
+    public ClassSymbol(DeclaredType type, ArrayList<String> mods,
+            Type superType) {
+        this.type = type;
+        this.modifiers = modifiersFor(mods);
+        if ((modifiers & ACC_INTERFACE) != 0) {
+            // As the JVM makes it for our (version 49) class files
+            modifiers |= ACC_ABSTRACT;
+        }
+        this.superType = superType;
+        fields = new ArrayList<FieldSymbol>();
+        methods = new ArrayList<MethodSymbol>();
+        constructors = new ArrayList<ConstructorSymbol>();
+    }
+
+    /**
+     * Returns the type's modifiers.
+     *
+     * @return the modifiers.
+     */
+
+    public int modifiers() {
+        return modifiers;
+    }
+
+    /**
+     * Returns the superclass.
+     *
+     * @return the superclass.
+     */
+
+    public Type superType() {
+        return superType;
+    }
+
+    /**
+     * Returns the fields.
+     *
+     * @return the fields, in the order declared.
+     */
+
+    public ArrayList<FieldSymbol> fields() {
+        return fields;
+    }
+
+    /**
+     * Returns the methods.
+     *
+     * @return the methods, in the order declared.
+     */
+
+    public ArrayList<MethodSymbol> methods() {
+        return methods;
+    }
+
+    /**
+     * Returns the constructors.
+     *
+     * @return the constructors, in the order declared.
+     */
+
+    public ArrayList<ConstructorSymbol> constructors() {
+        return constructors;
+    }
+
+    /**
+     * Adds a field, unless one by that name has been added already.
+     *
+     * @param mods
+     *            the field's modifiers.
+     * @param name
+     *            the field's name.
+     * @param fieldType
+     *            the field's type.
+     * @return {@code true} if the field is added, and {@code false} if it is
+     *         already declared.
+     */
+
+    public boolean addField(ArrayList<String> mods, String name,
+            Type fieldType) {
+        for (FieldSymbol field : fields) {
+            if (field.name().equals(name)) {
+                return false;
+            }
+        }
+        fields.add(new FieldSymbol(type, modifiersFor(mods), name, fieldType));
+        return true;
+    }
+
+    /**
+     * Adds a method, unless one with that name and those parameter types has
+     * been added already.
+     *
+     * @param mods
+     *            the method's modifiers.
+     * @param name
+     *            the method's name.
+     * @param parameterTypes
+     *            types of the formal parameters.
+     * @param returnType
+     *            the return type.
+     * @return {@code true} if the method is added, and {@code false} if it is
+     *         already declared.
+     */
+
+    public boolean addMethod(ArrayList<String> mods, String name,
+            Type[] parameterTypes, Type returnType) {
+        String parameters = Type.parametersFor(parameterTypes);
+        for (MethodSymbol method : methods) {
+            if (method.name().equals(name)
+                    && method.parameters().equals(parameters)) {
+                return false;
+            }
+        }
+        methods.add(new MethodSymbol(type, modifiersFor(mods), name,
+                parameterTypes, returnType));
+        return true;
+    }
+
+    /**
+     * Adds a constructor, unless one with those parameter types has been added
+     * already.
+     *
+     * @param mods
+     *            the constructor's modifiers.
+     * @param parameterTypes
+     *            types of the formal parameters.
+     * @return {@code true} if the constructor is added, and {@code false} if
+     *         it is already declared.
+     */
+
+    public boolean addConstructor(ArrayList<String> mods,
+            Type[] parameterTypes) {
+        String parameters = Type.parametersFor(parameterTypes);
+        for (ConstructorSymbol constructor : constructors) {
+            if (constructor.parameters().equals(parameters)) {
+                return false;
+            }
+        }
+        constructors.add(new ConstructorSymbol(type, modifiersFor(mods),
+                parameterTypes));
+        return true;
+    }
+
+    /**
+     * Returns the encoding of the specified modifiers, as the access flags
+     * {@link CLEmitter} would give them in the class file.
+     *
+     * @param mods
+     *            the modifiers.
+     * @return the encoded modifiers.
+     */
+
+    private static int modifiersFor(ArrayList<String> mods) {
+        int modifiers = 0;
+        if (mods != null) {
+            for (String mod : mods) {
+                modifiers |= CLFile.accessFlagToInt(mod);
+            }
+        }
+        return modifiers;
+    }
+
+}
@@ -0,0 +1,76 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The result of compiling sources through {@link JMinusMinusCompiler}: the
+ * class files produced, and the diagnostics (error messages) reported.
+ */
+
+public class CompilationResult {
+
+    /** Maps binary class names to class files. */
+    private Map<String, byte[]> classes;
+
+    /** The diagnostics, one per line. */
+    private List<String> diagnostics;
+
+    /** Whether an error occurred. */
+    private boolean errorHasOccurred;
+
+    /**
+     * Constructs a CompilationResult.
+     *
+     * @param classes
+     *            maps binary class names to class files.
+     * @param diagnostics
+     *            the diagnostics, one per line.
+     * @param errorHasOccurred
+     *            whether an error occurred.
+     */
+
+    CompilationResult(Map<String, byte[]> classes, List<String> diagnostics,
+            boolean errorHasOccurred) {
+        this.classes = classes;
+        this.diagnostics = diagnostics;
+        this.errorHasOccurred = errorHasOccurred;
+    }
+
+    /**
+     * Returns the class files produced, in the order in which they were
+     * produced. Units in error produce none.
+     *
+     * @return map of binary class names (for example, {@code pass.Factorial})
+     *         to class files.
+     */
+
+    public Map<String, byte[]> classes() {
+        return classes;
+    }
+
+    /**
+     * Returns the diagnostics, one per line, in the format in which the
+     * command-line compiler writes them to STDERR.
+     *
+     * @return the diagnostics.
+     */
+
+    public List<String> diagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * Returns true if an error occurred during compilation; false otherwise.
+     *
+     * @return {@code true} if an error has occurred and {@code false}
+     *         otherwise.
+     */
+
+    public boolean errorHasOccurred() {
+        return errorHasOccurred;
+    }
+
+}
@@ -86,7 +86,7 @@ class Context {
 
     public void addEntry(int line, String name, IDefn definition) {
         if (entries.containsKey(name)) {
-            JAST.compilationUnit.reportSemanticError(line, "redefining name: "
+            JAST.compilationUnit().reportSemanticError(line, "redefining name: "
                     + name);
         } else {
             entries.put(name, definition);
@@ -103,10 +103,15 @@ class Context {
      */
 
     public IDefn lookup(String name) {
-        IDefn iDefn = (IDefn) entries.get(name);
-        return iDefn != null ? iDefn
-                : surroundingContext != null ? surroundingContext.lookup(name)
-                        : null;
+        // A loop rather than recursion, as contexts nest as deeply as blocks
+        for (Context context = this; context != null; context =
+                context.surroundingContext) {
+            IDefn iDefn = context.entries.get(name);
+            if (iDefn != null) {
+                return iDefn;
+            }
+        }
+        return null;
     }
 
     /**
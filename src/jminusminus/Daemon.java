@@ -0,0 +1,382 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A long-running j-- compiler server. It keeps one JVM (and so the JIT-compiled
+ * compiler and the Types resolved for JDK classes) warm across compilations,
+ * taking compile requests from {@link DaemonClient} over a loopback socket.
+ *
+ * <p>
+ * Since a request runs the compiler with the permissions of the user running
+ * the server (writing files where -d and -jar say, for one), only that user's
+ * clients are served. The server listens on a port of its choosing, and 
+ * writes that port and a random token to the file {@code .j--d} in the user's 
+ * home directory, readable by the user alone; a request must begin with the
+ * token, and is dropped otherwise.
+ *
+ * <p>
+ * The protocol is as follows. The client sends the token (a modified UTF-8 
+ * string), then the number of arguments (an int) followed by the arguments 
+ * themselves (modified UTF-8 strings), which are exactly those accepted by
+ * {@link Main}, with source files and the output directory given as absolute
+ * paths. The server answers with a sequence of
+ * frames, each a channel byte, a length (an int) and that many bytes; channel
+ * {@code OUT} carries what the compiler wrote to STDOUT, channel {@code ERR}
+ * what it wrote to STDERR, and a last, empty frame on channel {@code EXIT} or
+ * {@code FAILURE} says whether the compilation succeeded.
+ *
+ * <p>
+ * Each request is served on its own thread. Since the compiler's options are
+ * held by {@link Main} for the duration of a run, the compilations themselves
+ * happen one at a time; use -j for compiling the units of a request
+ * concurrently.
+ */
+
+public class Daemon {
+
+    /** Name of the file, in the user's home directory, holding the port and
+     * the token. */
+    static final String DAEMON_FILE = ".j--d";
+
+    /** Frame carrying bytes written to STDOUT. */
+    static final int OUT = 1;
+
+    /** Frame carrying bytes written to STDERR. */
+    static final int ERR = 2;
+
+    /** Last frame of a successful compilation. */
+    static final int EXIT = 0;
+
+    /** Last frame of a compilation that reported errors. */
+    static final int FAILURE = 3;
+
+    /** Lock held for the duration of a compilation. */
+    private static final Object compilerLock = new Object();
+
+    /** The token a request must begin with. */
+    private static String token;
+
+    /** How long (in ms) a client has to send the token. */
+    static final int TOKEN_TIMEOUT = 10000;
+
+    /**
+     * Entry point.
+     *
+     * @param args
+     *            the command-line arguments.
+     */
+
+    public static void main(String[] args) {
+        int port = 0;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-port") && (i + 1) < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else {
+                System.out.println("Usage: j--d [-port <num>]\n"
+                        + "  -port <num> Port to listen on (loopback only); "
+                        + "default = any free port");
+                return;
+            }
+        }
+
+        // Whatever a request's compilation writes to STDOUT and STDERR is
+        // sent back to its client; anything else goes to the console.
+        PerThreadOutputStream out = new PerThreadOutputStream(System.out);
+        PerThreadOutputStream err = new PerThreadOutputStream(System.err);
+        System.setOut(new PrintStream(out, true));
+        System.setErr(new PrintStream(err, true));
+
+        ServerSocket server = null;
+        try {
+            server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        } catch (IOException e) {
+            System.err.println("Error: cannot listen on port " + port + ": "
+                    + e.getMessage());
+            return;
+        }
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        token = "";
+        for (byte b : bytes) {
+            token += String.format("%02x", b);
+        }
+        final File file = daemonFile();
+        try {
+            writeDaemonFile(file, server.getLocalPort() + " " + token);
+        } catch (IOException e) {
+            System.err.println("Error: cannot write " + file + ": " 
+                    + e.getMessage());
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            public void run() {
+                // Unless a server started since has replaced it
+                try {
+                    String[] daemon = readDaemonFile(file);
+                    if (daemon != null && daemon[1].equals(token)) {
+                        file.delete();
+                    }
+                } catch (IOException e) {
+                    // Nothing more to do
+                }
+            }
+        });
+        System.out.println("j--d listening on port " + server.getLocalPort());
+        ExecutorService executor = Executors
+                .newCachedThreadPool(CompilerThread.factory("j--d"));
+        while (true) {
+            try {
+                Socket socket = server.accept();
+                executor.execute(new DaemonRequest(socket, out, err));
+            } catch (IOException e) {
+                System.err.println("Error: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Compiles with the specified arguments, as {@link Main} would, holding the
+     * compiler lock.
+     *
+     * @param args
+     *            the arguments.
+     * @return {@code true} if an error occurred and {@code false} otherwise.
+     */
+
+    static boolean compile(String[] args) {
+        synchronized (compilerLock) {
+            Main.compile(args);
+            return Main.errorHasOccurred();
+        }
+    }
+
+    /**
+     * Returns true if the specified token is the one requests must begin 
+     * with. The comparison takes as long whatever the token. 
+     *
+     * @param token
+     *            the token sent.
+     * @return {@code true} if the token is right, and {@code false} 
+     *         otherwise.
+     */
+
+    static boolean isToken(String token) {
+        return MessageDigest.isEqual(Daemon.token.getBytes(), token
+                .getBytes());
+    }
+
+    /**
+     * Returns the file, in the user's home directory, that holds the port the
+     * server listens on and the token.
+     * 
+     * @return the file.
+     */
+
+    static File daemonFile() {
+        return new File(System.getProperty("user.home"), DAEMON_FILE);
+    }
+
+    /**
+     * Returns the port and the token in the specified file.
+     * 
+     * @param file
+     *            the file.
+     * @return the port and the token, or {@code null} if there is no such 
+     *         file (no server is running).
+     * @throws IOException
+     *             if the file cannot be read.
+     */
+
+    static String[] readDaemonFile(File file) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        String[] daemon = new String(Files.readAllBytes(file.toPath()), 
+                "UTF-8").trim().split(" ");
+        return daemon.length == 2 ? daemon : null;
+    }
+
+    /**
+     * Writes the specified contents to the specified file, readable by the
+     * user alone, through a temporary file, so that a client never reads it 
+     * partly written.
+     * 
+     * @param file
+     *            the file.
+     * @param contents
+     *            the port and the token.
+     * @throws IOException
+     *             if the file cannot be written.
+     */
+
+    private static void writeDaemonFile(File file, String contents) 
+            throws IOException {
+        Util.writeFile(file, (contents + "\n").getBytes("UTF-8"), true);
+    }
+
+}
+
+/**
+ * Serves a single compile request sent to the {@link Daemon}.
+ */
+
+class DaemonRequest implements Runnable {
+
+    /** Connection to the client. */
+    private Socket socket;
+
+    /** STDOUT as seen by the compiler. */
+    private PerThreadOutputStream out;
+
+    /** STDERR as seen by the compiler. */
+    private PerThreadOutputStream err;
+
+    /**
+     * Constructs a request served over the specified connection.
+     *
+     * @param socket
+     *            connection to the client.
+     * @param out
+     *            STDOUT as seen by the compiler.
+     * @param err
+     *            STDERR as seen by the compiler.
+     */
+
+    public DaemonRequest(Socket socket, PerThreadOutputStream out,
+            PerThreadOutputStream err) {
+        this.socket = socket;
+        this.out = out;
+        this.err = err;
+    }
+
+    /**
+     * Reads the token and the arguments, compiles and sends back the 
+     * results; a request without the token is dropped.
+     */
+
+    public void run() {
+        try {
+            DataInputStream input = new DataInputStream(
+                    new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream()));
+            socket.setSoTimeout(Daemon.TOKEN_TIMEOUT);
+            if (!Daemon.isToken(input.readUTF())) {
+                System.err.println("Warning: dropped a request without the "
+                        + "token");
+                return;
+            }
+            socket.setSoTimeout(0);
+            String[] args = new String[input.readInt()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = input.readUTF();
+            }
+            out.redirect(new FrameOutputStream(output, Daemon.OUT));
+            err.redirect(new FrameOutputStream(output, Daemon.ERR));
+            boolean errorHasOccurred;
+            try {
+                errorHasOccurred = Daemon.compile(args);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                errorHasOccurred = true;
+            } finally {
+                System.out.flush();
+                System.err.flush();
+                out.redirect(null);
+                err.redirect(null);
+            }
+            synchronized (output) {
+                output.writeByte(errorHasOccurred ? Daemon.FAILURE
+                        : Daemon.EXIT);
+                output.writeInt(0);
+                output.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Nothing more to do
+            }
+        }
+    }
+
+}
+
+/**
+ * An output stream that sends whatever is written to it as frames on one
+ * channel of the {@link Daemon} protocol.
+ */
+
+class FrameOutputStream extends OutputStream {
+
+    /** The connection to the client. */
+    private DataOutputStream output;
+
+    /** The channel. */
+    private int channel;
+
+    /**
+     * Constructs a FrameOutputStream.
+     *
+     * @param output
+     *            the connection to the client, shared by all channels.
+     * @param channel
+     *            the channel.
+     */
+
+    public FrameOutputStream(DataOutputStream output, int channel) {
+        this.output = output;
+        this.channel = channel;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void write(byte[] b, int off, int len) throws IOException {
+        synchronized (output) {
+            output.writeByte(channel);
+            output.writeInt(len);
+            output.write(b, off, len);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void flush() throws IOException {
+        synchronized (output) {
+            output.flush();
+        }
+    }
+
+}
@@ -0,0 +1,165 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.StringTokenizer;
+
+/**
+ * A thin client for the j-- compiler server ({@link Daemon}). It forwards its
+ * arguments, which are those accepted by {@link Main}, to the server whose 
+ * port and token are in the user's {@code .j--d} file, and copies the 
+ * server's output to STDOUT and STDERR. If no server is listening, or the
+ * arguments ask for watching sources or running a program, the compilation
+ * is done right here, by {@link Main}.
+ */
+
+public class DaemonClient {
+
+    /**
+     * Entry point.
+     *
+     * @param args
+     *            the command-line arguments.
+     */
+
+    public static void main(String[] args) {
+        ArrayList<String> arguments = null;
+        try {
+            arguments = Util.expandArgFiles(args);
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+
+        // The server does not share our working directory, so paths are
+        // made absolute. Watching (-watch) keeps a compiler busy for good,
+        // so it is never forwarded; the watching JVM stays warm anyway. Nor
+        // is running a program (-run), which would run inside the server,
+        // where it could take the server down by exiting, and its exit
+        // status would be lost.
+        boolean local = false;
+        for (int i = 0; i < arguments.size(); i++) {
+            String arg = arguments.get(i);
+            if (arg.equals("--")) {
+                // The rest are arguments for a program run with -run
+                break;
+            } else if (arg.endsWith(".java")) {
+                arguments.set(i, new File(arg).getAbsolutePath());
+            } else if (arg.equals("-watch") || arg.equals("-run")) {
+                local = true;
+            } else if ((arg.equals("-d") || arg.equals("-cache")
+                    || arg.startsWith("-jar")) && (i + 1) < arguments.size()) {
+                i++;
+                arguments.set(i, new File(arguments.get(i)).getAbsolutePath());
+            } else if ((arg.equals("-cp") || arg.equals("-classpath"))
+                    && (i + 1) < arguments.size()) {
+                i++;
+                arguments.set(i, absolutePath(arguments.get(i)));
+            }
+        }
+
+        Socket socket = null;
+        String[] daemon = null;
+        if (!local) {
+            try {
+                daemon = Daemon.readDaemonFile(Daemon.daemonFile());
+                if (daemon != null) {
+                    socket = new Socket(InetAddress.getLoopbackAddress(),
+                            Integer.parseInt(daemon[0]));
+                }
+            } catch (IOException e) {
+                // No server is listening
+            } catch (NumberFormatException e) {
+                // Nor is one
+            }
+        }
+        if (socket == null) {
+            Main.compile(arguments.toArray(new String[0]));
+            System.exit(Main.errorHasOccurred() ? 1 : 0);
+        }
+        try {
+            System.exit(forward(socket, daemon[1], arguments) ? 1 : 0);
+        } catch (IOException e) {
+            System.err.println("Error: lost connection to j--d: "
+                    + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Returns the specified class path with each of its entries made 
+     * absolute.
+     * 
+     * @param path
+     *            the class path.
+     * @return the absolute class path.
+     */
+
+    private static String absolutePath(String path) {
+        StringTokenizer entries = new StringTokenizer(path, File.pathSeparator);
+        String absolute = "";
+        while (entries.hasMoreTokens()) {
+            absolute += (absolute.equals("") ? "" : File.pathSeparator)
+                    + new File(entries.nextToken()).getAbsolutePath();
+        }
+        return absolute;
+    }
+
+    /**
+     * Sends the token and the arguments to the server and copies its output 
+     * to STDOUT and STDERR, until the server says the compilation is done.
+     *
+     * @param socket
+     *            connection to the server.
+     * @param token
+     *            the server's token.
+     * @param arguments
+     *            the arguments.
+     * @return {@code true} if an error occurred during compilation and
+     *         {@code false} otherwise.
+     * @throws IOException
+     *             if the connection fails.
+     */
+
+    private static boolean forward(Socket socket, String token,
+            ArrayList<String> arguments) throws IOException {
+        try {
+            DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream()));
+            output.writeUTF(token);
+            output.writeInt(arguments.size());
+            for (String arg : arguments) {
+                output.writeUTF(arg);
+            }
+            output.flush();
+            DataInputStream input = new DataInputStream(
+                    new BufferedInputStream(socket.getInputStream()));
+            while (true) {
+                int channel = input.readByte();
+                byte[] bytes = new byte[input.readInt()];
+                input.readFully(bytes);
+                if (channel == Daemon.OUT || channel == Daemon.ERR) {
+                    PrintStream stream = channel == Daemon.OUT ? System.out
+                            : System.err;
+                    stream.write(bytes, 0, bytes.length);
+                    stream.flush();
+                } else {
+                    return channel == Daemon.FAILURE;
+                }
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+}
@@ -0,0 +1,743 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+/**
+ * The on-disk index behind incremental compilation (-incremental). For every
+ * source file compiled into an output directory, it records
+ * <ul>
+ *   <li>a fingerprint (content hash) of the source,</li>
+ *   <li>the classes the source produced, each with a fingerprint of its
+ *       signature, that is of the member headers that pre-analysis puts into
+ *       its class symbol, and</li>
+ *   <li>the (non-JDK) classes the source referenced, each with the
+ *       fingerprint of its signature as seen when the source was compiled,
+ *       whether from the class or from its class file (see 
+ *       {@link ClassFileType}).</li>
+ * </ul>
+ * A source needs to be compiled again only if it changed, if one of its
+ * classes is missing from the output directory, or if the signature of a
+ * class it references has changed since, or the class is no longer produced
+ * at all; changing only a method body therefore recompiles just that one
+ * source. The class files of the classes a source no longer produces (or of
+ * a source that was removed) are deleted.
+ * <p>
+ * The index is kept as a text file named {@code .j--index} in the output
+ * directory.
+ */
+
+class DependencyIndex {
+
+    /** Name of the index file within the output directory. */
+    public static final String FILE_NAME = ".j--index";
+
+    /** The output directory. */
+    private String outputDir;
+
+    /** Maps (absolute) source paths to what is known about them. */
+    private Hashtable<String, SourceEntry> sources;
+
+    /** Maps names of the classes produced to their signature fingerprints. */
+    private Hashtable<String, String> signatures;
+
+    /**
+     * Names of the classes that indexed sources produced, but no longer 
+     * produce.
+     */
+    private HashSet<String> removed;
+
+    /**
+     * Constructs an empty index for the specified output directory.
+     *
+     * @param outputDir
+     *            the output directory.
+     */
+
+    public DependencyIndex(String outputDir) {
+        this.outputDir = outputDir;
+        sources = new Hashtable<String, SourceEntry>();
+        signatures = new Hashtable<String, String>();
+        removed = new HashSet<String>();
+    }
+
+    /**
+     * Loads the index kept in the specified output directory. An index that
+     * does not exist or cannot be read is treated as empty, which simply
+     * means that every source is compiled.
+     *
+     * @param outputDir
+     *            the output directory.
+     * @return the index.
+     */
+
+    public static DependencyIndex load(String outputDir) {
+        DependencyIndex index = new DependencyIndex(outputDir);
+        File file = new File(outputDir, FILE_NAME);
+        if (!file.exists()) {
+            return index;
+        }
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader(file));
+            try {
+                SourceEntry entry = null;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    StringTokenizer tokens = new StringTokenizer(line, "\t");
+                    String kind = tokens.nextToken();
+                    String name = tokens.nextToken();
+                    String fingerprint = tokens.nextToken();
+                    if (kind.equals("removed")) {
+                        index.removed.add(name);
+                    } else if (kind.equals("source")) {
+                        entry = new SourceEntry(fingerprint);
+                        index.sources.put(name, entry);
+                    } else if (kind.equals("class")) {
+                        entry.produced.put(name, fingerprint);
+                        index.signatures.put(name, fingerprint);
+                    } else if (kind.equals("uses")) {
+                        entry.referenced.put(name, fingerprint);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (Exception e) {
+            System.err.println("Warning: ignoring unreadable " + file);
+            return new DependencyIndex(outputDir);
+        }
+        return index;
+    }
+
+    /**
+     * Saves the index in the output directory.
+     */
+
+    public synchronized void save() {
+        File file = new File(outputDir, FILE_NAME);
+        try {
+            file.getParentFile().mkdirs();
+            PrintWriter writer = new PrintWriter(new FileWriter(file));
+            ArrayList<String> paths = new ArrayList<String>(sources.keySet());
+            Collections.sort(paths);
+
+            // Removed classes matter only as long as a source references them
+            ArrayList<String> names = new ArrayList<String>(removed);
+            Collections.sort(names);
+            for (String name : names) {
+                for (String path : paths) {
+                    if (sources.get(path).referenced.containsKey(name)) {
+                        writer.println("removed\t" + name + "\t-");
+                        break;
+                    }
+                }
+            }
+            for (String path : paths) {
+                SourceEntry entry = sources.get(path);
+                writer.println("source\t" + path + "\t" + entry.fingerprint);
+                for (Map.Entry<String, String> e : entry.produced.entrySet()) {
+                    writer.println("class\t" + e.getKey() + "\t"
+                            + e.getValue());
+                }
+                for (Map.Entry<String, String> e : entry.referenced.entrySet()) {
+                    writer.println("uses\t" + e.getKey() + "\t" + e.getValue());
+                }
+            }
+            writer.close();
+        } catch (IOException e) {
+            System.err.println("Error: cannot write " + file);
+        }
+    }
+
+    /**
+     * Returns those of the specified source files that must be compiled,
+     * because they are new, have changed, are missing some of their classes,
+     * or reference a class whose signature has changed.
+     *
+     * @param sourceFiles
+     *            the source files.
+     * @return the source files to compile.
+     */
+
+    public synchronized ArrayList<String> staleSources(
+            ArrayList<String> sourceFiles) {
+        ArrayList<String> stale = new ArrayList<String>();
+        for (String sourceFile : sourceFiles) {
+            if (isStale(sourceFile)) {
+                stale.add(sourceFile);
+            }
+        }
+        return stale;
+    }
+
+    /**
+     * Returns those of the specified source files that must be compiled
+     * because they reference a class whose signature has changed, or were
+     * not compiled successfully the last time round. Unlike
+     * {@link #staleSources}, this does not read the source files, and so
+     * assumes that they have not changed.
+     *
+     * @param sourceFiles
+     *            the source files.
+     * @return the source files to compile.
+     */
+
+    public synchronized ArrayList<String> dependentSources(
+            ArrayList<String> sourceFiles) {
+        ArrayList<String> dependent = new ArrayList<String>();
+        for (String sourceFile : sourceFiles) {
+            SourceEntry entry = sources.get(key(sourceFile));
+            if (entry == null || referencesChanged(entry)) {
+                dependent.add(sourceFile);
+            }
+        }
+        return dependent;
+    }
+
+    /**
+     * Records the results of successfully compiling a source file.
+     *
+     * @param sourceFile
+     *            the source file.
+     * @param ast
+     *            the unit's (pre-analyzed) AST.
+     */
+
+    public void record(String sourceFile, JCompilationUnit ast) {
+        Hashtable<String, String> produced = producedSignatures(ast);
+        record(sourceFile, produced, referencedSignatures(ast, produced));
+    }
+
+    /**
+     * Records the results of successfully compiling a source file, given the
+     * signatures of the classes it produced and of those it referenced. The
+     * class files of the classes it produced before, but no longer produces,
+     * are deleted.
+     *
+     * @param sourceFile
+     *            the source file.
+     * @param produced
+     *            maps names of the classes produced to their signature
+     *            fingerprints.
+     * @param referenced
+     *            maps names of the classes referenced to their signature
+     *            fingerprints.
+     */
+
+    public synchronized void record(String sourceFile,
+            Map<String, String> produced, Map<String, String> referenced) {
+        SourceEntry previous = sources.get(key(sourceFile));
+        if (previous != null) {
+            for (String name : previous.produced.keySet()) {
+                if (!produced.containsKey(name)) {
+                    removeClass(name, sourceFile);
+                }
+            }
+        }
+        forget(sourceFile);
+        removed.removeAll(produced.keySet());
+        SourceEntry entry = new SourceEntry(fingerprint(new File(sourceFile)));
+        entry.produced.putAll(produced);
+        entry.referenced.putAll(referenced);
+        signatures.putAll(produced);
+        sources.put(key(sourceFile), entry);
+    }
+
+    /**
+     * Returns the signature fingerprints of the classes a unit produces.
+     *
+     * @param ast
+     *            the unit's (pre-analyzed) AST.
+     * @return map of class names to signature fingerprints.
+     */
+
+    static Hashtable<String, String> producedSignatures(JCompilationUnit ast) {
+        Hashtable<String, String> produced = new Hashtable<String, String>();
+        for (DeclaredType declared : ast.declaredTypes()) {
+            produced.put(declared.toString(), signatureFingerprint(declared));
+        }
+        return produced;
+    }
+
+    /**
+     * Returns the signature fingerprints of the (non-JDK) classes a unit
+     * references, other than those it produces.
+     *
+     * @param ast
+     *            the unit's (pre-analyzed) AST.
+     * @param produced
+     *            the classes the unit produces.
+     * @return map of class names to signature fingerprints.
+     */
+
+    static Hashtable<String, String> referencedSignatures(
+            JCompilationUnit ast, Map<String, String> produced) {
+        Hashtable<String, String> referenced = new Hashtable<String, String>();
+        for (Class<?> classRep : ast.referencedTypes()) {
+            while (classRep.isArray()) {
+                classRep = classRep.getComponentType();
+            }
+
+            // JDK classes (loaded by the bootstrap loader) don't change
+            if (classRep.getClassLoader() == null
+                    || produced.containsKey(classRep.getName())) {
+                continue;
+            }
+            referenced.put(classRep.getName(), signatureFingerprint(classRep));
+        }
+
+        // So do those of the JDK read from class files; of those read from
+        // the class path, only the ones whose signature was read matter
+        for (Type type : new ArrayList<Type>(ast.types().values())) {
+            if (type instanceof ClassFileType
+                    && ((ClassFileType) type).isRead()
+                    && ((ClassFileType) type).exists()
+                    && !((ClassFileType) type).isSystem()
+                    && !produced.containsKey(type.toString())) {
+                referenced.put(type.toString(), signatureFingerprint(type));
+            }
+        }
+        return referenced;
+    }
+
+    /**
+     * Forgets what is known about a source file, so that it is compiled the
+     * next time round; used when the compilation fails.
+     *
+     * @param sourceFile
+     *            the source file.
+     */
+
+    public synchronized void forget(String sourceFile) {
+        SourceEntry entry = sources.remove(key(sourceFile));
+        if (entry != null) {
+            for (String name : entry.produced.keySet()) {
+                if (!producedElsewhere(name, sourceFile)) {
+                    signatures.remove(name);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets a source file that was removed, deleting the class files of the
+     * classes it produced; the sources referencing those classes must then 
+     * be compiled again.
+     *
+     * @param sourceFile
+     *            the source file.
+     */
+
+    public synchronized void remove(String sourceFile) {
+        SourceEntry entry = sources.get(key(sourceFile));
+        if (entry != null) {
+            for (String name : entry.produced.keySet()) {
+                removeClass(name, sourceFile);
+            }
+            forget(sourceFile);
+        }
+    }
+
+    /**
+     * Removes (as with {@link #remove}) the indexed source files that no 
+     * longer exist.
+     */
+
+    public synchronized void removeMissing() {
+        for (String path : new ArrayList<String>(sources.keySet())) {
+            if (!new File(path).exists()) {
+                remove(path);
+            }
+        }
+    }
+
+    /**
+     * Records that the specified source file no longer produces the class
+     * with the specified name and, unless another source now produces it,
+     * that the class is removed, deleting its class file.
+     *
+     * @param name
+     *            the name of the class.
+     * @param sourceFile
+     *            the source file.
+     */
+
+    private void removeClass(String name, String sourceFile) {
+        if (!producedElsewhere(name, sourceFile)) {
+            removed.add(name);
+            classFile(name).delete();
+        }
+    }
+
+    /**
+     * Returns true if a source file other than the specified one produces the
+     * class with the specified name.
+     *
+     * @param name
+     *            the name of the class.
+     * @param sourceFile
+     *            the source file.
+     * @return {@code true} if another source file produces the class and 
+     *         {@code false} otherwise.
+     */
+
+    private boolean producedElsewhere(String name, String sourceFile) {
+        String key = key(sourceFile);
+        for (Map.Entry<String, SourceEntry> e : sources.entrySet()) {
+            if (!e.getKey().equals(key)
+                    && e.getValue().produced.containsKey(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the class file of the class with the specified name, in the 
+     * output directory.
+     *
+     * @param name
+     *            the name of the class.
+     * @return the class file.
+     */
+
+    private File classFile(String name) {
+        return new File(outputDir, name.replace('.', File.separatorChar)
+                + ".class");
+    }
+
+    /**
+     * Returns true if the specified source file must be compiled.
+     *
+     * @param sourceFile
+     *            the source file.
+     * @return {@code true} if it must be compiled and {@code false}
+     *         otherwise.
+     */
+
+    private boolean isStale(String sourceFile) {
+        SourceEntry entry = sources.get(key(sourceFile));
+        if (entry == null
+                || !entry.fingerprint.equals(fingerprint(new File(sourceFile)))) {
+            return true;
+        }
+        for (String name : entry.produced.keySet()) {
+            if (!classFile(name).exists()) {
+                return true;
+            }
+        }
+        return referencesChanged(entry);
+    }
+
+    /**
+     * Returns true if the source file with the specified entry references a
+     * class whose signature has changed since it was compiled, or that is no
+     * longer produced.
+     *
+     * @param entry
+     *            the entry.
+     * @return {@code true} if a referenced signature changed and
+     *         {@code false} otherwise.
+     */
+
+    private boolean referencesChanged(SourceEntry entry) {
+        for (Map.Entry<String, String> e : entry.referenced.entrySet()) {
+            String signature = signatures.get(e.getKey());
+            if (signature == null ? removed.contains(e.getKey()) 
+                    : !signature.equals(e.getValue())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the key under which a source file is indexed.
+     *
+     * @param sourceFile
+     *            the source file.
+     * @return its absolute path.
+     */
+
+    private static String key(String sourceFile) {
+        return new File(sourceFile).getAbsolutePath();
+    }
+
+    /**
+     * Returns a fingerprint of the contents of a file, or of a missing file.
+     *
+     * @param file
+     *            the file.
+     * @return the fingerprint.
+     */
+
+    static String fingerprint(File file) {
+        MessageDigest digest = newDigest();
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                byte[] buffer = new byte[8192];
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, n);
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return "-";
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Returns a fingerprint of the signature of a class: its modifiers,
+     * supertypes, and the headers of its non-private members.
+     *
+     * @param classRep
+     *            the class.
+     * @return the fingerprint.
+     */
+
+    static String signatureFingerprint(Class<?> classRep) {
+        ArrayList<String> headers = new ArrayList<String>();
+        for (Field field : classRep.getDeclaredFields()) {
+            if (!Modifier.isPrivate(field.getModifiers())) {
+                headers.add(Modifier.toString(field.getModifiers()) + " "
+                        + field.getType().getName() + " " + field.getName());
+            }
+        }
+        for (Method method : classRep.getDeclaredMethods()) {
+            if (!Modifier.isPrivate(method.getModifiers())) {
+                headers.add(Modifier.toString(method.getModifiers()) + " "
+                        + method.getReturnType().getName() + " "
+                        + method.getName()
+                        + names(method.getParameterTypes()));
+            }
+        }
+        for (Constructor<?> constructor : classRep.getDeclaredConstructors()) {
+            if (!Modifier.isPrivate(constructor.getModifiers())) {
+                headers.add(Modifier.toString(constructor.getModifiers())
+                        + " <init>" + names(constructor.getParameterTypes()));
+            }
+        }
+        Collections.sort(headers);
+        Class<?> superClass = classRep.getSuperclass();
+        headers.add(0, Modifier.toString(classRep.getModifiers()) + " "
+                + classRep.getName() + " extends "
+                + (superClass == null ? "" : superClass.getName())
+                + " implements" + names(classRep.getInterfaces()));
+        return fingerprint(headers);
+    }
+
+    /**
+     * Returns a fingerprint of the signature of a type that has no class: 
+     * one declared in the unit being compiled (from its symbol), or one read
+     * from its class file. It is the fingerprint of the signature of the 
+     * type's class (see {@link #signatureFingerprint(Class)}), so they can 
+     * all be compared with one another.
+     *
+     * @param type
+     *            the type.
+     * @return the fingerprint.
+     */
+
+    static String signatureFingerprint(Type type) {
+        ArrayList<String> headers = new ArrayList<String>();
+        for (jminusminus.Field field : type.declaredFields()) {
+            if (!field.isPrivate()) {
+                headers.add(Modifier.toString(field.modifiers()) + " "
+                        + name(field.type()) + " " + field.name());
+            }
+        }
+        for (jminusminus.Method method : type.declaredMethods()) {
+            if (!method.isPrivate()) {
+                headers.add(Modifier.toString(method.modifiers()) + " "
+                        + name(method.returnType()) + " " + method.name()
+                        + names(method.parameterTypes()));
+            }
+        }
+        for (jminusminus.Constructor constructor : type
+                .declaredConstructors()) {
+            if (!constructor.isPrivate()) {
+                headers.add(Modifier.toString(constructor.modifiers())
+                        + " <init>" + names(constructor.parameterTypes()));
+            }
+        }
+        Collections.sort(headers);
+        Type superClass = type.superClass();
+        ArrayList<Type> interfaces = type.interfaces();
+        headers.add(0, Modifier.toString(type.modifiers()) + " " + type
+                + " extends " + (superClass == null ? "" : name(superClass))
+                + " implements"
+                + names(interfaces.toArray(new Type[interfaces.size()])));
+        return fingerprint(headers);
+    }
+
+    /**
+     * Returns a fingerprint of the signature of the (library) class with the
+     * specified name, as the compiler currently sees it: from the class, or
+     * from its class file if library classes are read from class files.
+     *
+     * @param name
+     *            the name of the class.
+     * @return the fingerprint.
+     * @throws ClassNotFoundException
+     *             if the class cannot be found.
+     */
+
+    static String signatureFingerprint(String name)
+            throws ClassNotFoundException {
+        if (Type.libraryPath() == null) {
+            return signatureFingerprint(Type.classFor(name));
+        }
+        return signatureFingerprint(Type.libraryTypeFor(name));
+    }
+
+    /**
+     * Returns the fingerprint of the specified signature.
+     *
+     * @param headers
+     *            the class header and the (sorted) member headers.
+     * @return the fingerprint.
+     */
+
+    private static String fingerprint(ArrayList<String> headers) {
+        MessageDigest digest = newDigest();
+        for (String header : headers) {
+            digest.update(header.getBytes());
+            digest.update((byte) '\n');
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Returns the parenthesized list of the names of the specified classes.
+     *
+     * @param classes
+     *            the classes.
+     * @return the list.
+     */
+
+    private static String names(Class<?>[] classes) {
+        String names = "(";
+        for (int i = 0; i < classes.length; i++) {
+            names += (i == 0 ? "" : ",") + classes[i].getName();
+        }
+        return names + ")";
+    }
+
+    /**
+     * Returns the parenthesized list of the names of the specified types.
+     *
+     * @param types
+     *            the types.
+     * @return the list.
+     */
+
+    private static String names(Type[] types) {
+        String names = "(";
+        for (int i = 0; i < types.length; i++) {
+            names += (i == 0 ? "" : ",") + name(types[i]);
+        }
+        return names + ")";
+    }
+
+    /**
+     * Returns the name of the specified type, as reflection gives it for the
+     * type's class; for example, int, java.lang.String, [Ljava.lang.String;.
+     *
+     * @param type
+     *            the type.
+     * @return the name.
+     */
+
+    private static String name(Type type) {
+        return type.isArray() ? type.toDescriptor().replace('/', '.') : type
+                .toString();
+    }
+
+    /**
+     * Returns a new message digest for computing fingerprints.
+     *
+     * @return the message digest.
+     */
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the hexadecimal representation of the specified bytes.
+     *
+     * @param bytes
+     *            the bytes.
+     * @return the hexadecimal representation.
+     */
+
+    static String toHex(byte[] bytes) {
+        String digits = "0123456789abcdef";
+        StringBuffer b = new StringBuffer();
+        for (byte x : bytes) {
+            b.append(digits.charAt((x >> 4) & 0xf));
+            b.append(digits.charAt(x & 0xf));
+        }
+        return b.toString();
+    }
+
+}
+
+/**
+ * What the {@link DependencyIndex} knows about one source file.
+ */
+
+class SourceEntry {
+
+    /** Fingerprint of the source. */
+    public String fingerprint;
+
+    /** Signature fingerprints of the classes the source produced. */
+    public Hashtable<String, String> produced;
+
+    /** Signature fingerprints of the classes the source referenced. */
+    public Hashtable<String, String> referenced;
+
+    /**
+     * Constructs a SourceEntry.
+     *
+     * @param fingerprint
+     *            fingerprint of the source.
+     */
+
+    public SourceEntry(String fingerprint) {
+        this.fingerprint = fingerprint;
+        produced = new Hashtable<String, String>();
+        referenced = new Hashtable<String, String>();
+    }
+
+}
@@ -9,8 +9,13 @@ package jminusminus;
 
 abstract class JAST {
 
-    /** Current compilation unit (set in JCompilationUnit()). */
-    public static JCompilationUnit compilationUnit;
+    /**
+     * Current compilation unit (set in JCompilationUnit(), and again by the
+     * driver before each unit is analyzed). A unit is compiled entirely on one
+     * thread, so each compiling thread has its own current unit.
+     */
+    private static ThreadLocal<JCompilationUnit> compilationUnit = 
+        new ThreadLocal<JCompilationUnit>();
 
     /** Line in which the source for the AST was found. */
     protected int line;
@@ -26,6 +31,28 @@ abstract class JAST {
         this.line = line;
     }
 
+    /**
+     * Returns the compilation unit currently being compiled (by this thread).
+     * 
+     * @return the current compilation unit.
+     */
+
+    public static JCompilationUnit compilationUnit() {
+        return compilationUnit.get();
+    }
+
+    /**
+     * Makes the specified compilation unit the one currently being compiled 
+     * (by this thread).
+     * 
+     * @param unit
+     *            the compilation unit.
+     */
+
+    public static void setCompilationUnit(JCompilationUnit unit) {
+        compilationUnit.set(unit);
+    }
+
     /**
      * Returns the line in which the source for the AST was found.
      * 
@@ -47,20 +74,6 @@ abstract class JAST {
 
     public abstract JAST analyze(Context context);
 
-    /**
-     * Generates a partial class for this type, reflecting only the member
-     * information required to do analysis.
-     * 
-     * @param context
-     *            the parent (class) context.
-     * @param partial
-     *            the code emitter (basically an abstraction for producing the
-     *            partial class).
-     */
-
-    public void partialCodegen(Context context, CLEmitter partial) {
-        // A dummy -- redefined where necessary.
-    }
 
     /**
      * Performs code generation for this AST.
@@ -66,7 +66,7 @@ class JAssignOp extends JAssignment {
 
     public JExpression analyze(Context context) {
         if (!(lhs instanceof JLhs)) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Illegal lhs for assignment");
         } else {
             lhs = (JExpression) ((JLhs) lhs).analyzeLhs(context);
@@ -142,7 +142,7 @@ class JPlusAssignOp extends JAssignment {
 
     public JExpression analyze(Context context) {
         if (!(lhs instanceof JLhs)) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Illegal lhs for assignment");
             return this;
         } else {
@@ -162,7 +162,7 @@ class JPlusAssignOp extends JAssignment {
             rhs = (new JStringConcatenationOp(line, lhs, rhs)).analyze(context);
             type = Type.STRING;
         } else {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Invalid lhs type for +=: " + lhs.type());
         }
         return this;
@@ -240,7 +240,7 @@ class JMulAssignOp extends JAssignment {
 
     public JExpression analyze(Context context) {
         if (!(lhs instanceof JLhs)) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Illegal lhs for assignment");
             return this;
         } else {
@@ -257,7 +257,7 @@ class JMulAssignOp extends JAssignment {
             rhs.type().mustMatchExpected(line(), Type.LONG);
             type = Type.LONG;
         } else {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Invalid lhs type for *=: " + lhs.type());
         }
         return this;
@@ -331,7 +331,7 @@ class JMinusAssignOp extends JAssignment {
 
     public JExpression analyze(Context context) {
         if (!(lhs instanceof JLhs)) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Illegal lhs for assignment");
             return this;
         } else {
@@ -348,7 +348,7 @@ class JMinusAssignOp extends JAssignment {
             rhs.type().mustMatchExpected(line(), Type.LONG);
             type = Type.LONG;
         } else {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Invalid lhs type for -=: " + lhs.type());
         }
         return this;
@@ -422,7 +422,7 @@ class JDivAssignOp extends JAssignment {
 
     public JExpression analyze(Context context) {
         if (!(lhs instanceof JLhs)) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Illegal lhs for assignment");
             return this;
         } else {
@@ -439,7 +439,7 @@ class JDivAssignOp extends JAssignment {
             rhs.type().mustMatchExpected(line(), Type.LONG);
             type = Type.LONG;
         } else {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Invalid lhs type for /=: " + lhs.type());
         }
         return this;
@@ -513,7 +513,7 @@ class JRemAssignOp extends JAssignment {
 
     public JExpression analyze(Context context) {
         if (!(lhs instanceof JLhs)) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Illegal lhs for assignment");
             return this;
         } else {
@@ -530,7 +530,7 @@ class JRemAssignOp extends JAssignment {
             rhs.type().mustMatchExpected(line(), Type.LONG);
             type = Type.LONG;
         } else {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Invalid lhs type for %=: " + lhs.type());
         }
         return this;
@@ -604,7 +604,7 @@ class JRightShiftAssignOp extends JAssignment {
 
     public JExpression analyze(Context context) {
         if (!(lhs instanceof JLhs)) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Illegal lhs for assignment");
             return this;
         } else {
@@ -618,7 +618,7 @@ class JRightShiftAssignOp extends JAssignment {
             rhs.type().mustMatchExpected(line(), Type.LONG);
             type = Type.LONG;
         } else {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Invalid lhs type for >>=: " + lhs.type());
         }
         return this;
@@ -687,7 +687,7 @@ class JLeftShiftAssignOp extends JAssignment {
 
     public JExpression analyze(Context context) {
         if (!(lhs instanceof JLhs)) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Illegal lhs for assignment");
             return this;
         } else {
@@ -701,7 +701,7 @@ class JLeftShiftAssignOp extends JAssignment {
             rhs.type().mustMatchExpected(line(), Type.LONG);
             type = Type.LONG;
         } else {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Invalid lhs type for <<=: " + lhs.type());
         }
         return this;
@@ -769,7 +769,7 @@ class JLogicalRightShiftAssignOp extends JAssignment {
 
     public JExpression analyze(Context context) {
         if (!(lhs instanceof JLhs)) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Illegal lhs for assignment");
             return this;
         } else {
@@ -783,7 +783,7 @@ class JLogicalRightShiftAssignOp extends JAssignment {
             rhs.type().mustMatchExpected(line(), Type.LONG);
             type = Type.LONG;
         } else {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Invalid lhs type for >>>=: " + lhs.type());
         }
         return this;
@@ -851,7 +851,7 @@ class JAndAssignOp extends JAssignment {
 
     public JExpression analyze(Context context) {
         if (!(lhs instanceof JLhs)) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Illegal lhs for assignment");
             return this;
         } else {
@@ -865,7 +865,7 @@ class JAndAssignOp extends JAssignment {
             rhs.type().mustMatchExpected(line(), Type.LONG);
             type = Type.LONG;
         } else {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Invalid lhs type for &=: " + lhs.type());
         }
         return this;
@@ -933,7 +933,7 @@ class JExclusiveAssignOp extends JAssignment {
 
     public JExpression analyze(Context context) {
         if (!(lhs instanceof JLhs)) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Illegal lhs for assignment");
             return this;
         } else {
@@ -947,7 +947,7 @@ class JExclusiveAssignOp extends JAssignment {
             rhs.type().mustMatchExpected(line(), Type.LONG);
             type = Type.LONG;
         } else {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Invalid lhs type for ^=: " + lhs.type());
         }
         return this;
@@ -1015,7 +1015,7 @@ class JInclusiveAssignOp extends JAssignment {
 
     public JExpression analyze(Context context) {
         if (!(lhs instanceof JLhs)) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Illegal lhs for assignment");
             return this;
         } else {
@@ -1029,7 +1029,7 @@ class JInclusiveAssignOp extends JAssignment {
             rhs.type().mustMatchExpected(line(), Type.LONG);
             type = Type.LONG;
         } else {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Invalid lhs type for |=: " + lhs.type());
         }
         return this;
@@ -116,7 +116,7 @@ class JPlusOp extends JBinaryExpression {
             type = Type.LONG;
         } else {
             type = Type.ANY;
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Invalid operand types for +");
         }
         return this;
@@ -195,7 +195,7 @@ class JSubtractOp extends JBinaryExpression {
             type = Type.LONG;
         } else {
             type = Type.ANY;
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Invalid operand types for +");
         }
         
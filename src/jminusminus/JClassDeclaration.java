@@ -30,7 +30,7 @@ class JClassDeclaration extends JAST implements JTypeDecl {
     /** Implements*/
     private ArrayList<TypeName> impl;
     /** This class type. */
-    private Type thisType;
+    private DeclaredType thisType;
 
     /** Context for this class. */
     private ClassContext context;
@@ -126,12 +126,10 @@ class JClassDeclaration extends JAST implements JTypeDecl {
      */
 
     public void declareThisType(Context context) {
-        String qualifiedName = JAST.compilationUnit.packageName() == "" ? name
-                : JAST.compilationUnit.packageName() + "/" + name;
-        CLEmitter partial = new CLEmitter(false);
-        partial.addClass(mods, qualifiedName, Type.OBJECT.jvmName(), null,
-                false); // Object for superClass, just for now
-        thisType = Type.typeFor(partial.toClass());
+        String qualifiedName = JAST.compilationUnit().packageName() == "" ? name
+                : JAST.compilationUnit().packageName() + "/" + name;
+        // Object for superClass, just for now
+        thisType = Type.declaredTypeFor(qualifiedName, mods);
         context.addType(line, thisType);
     }
 
@@ -151,25 +149,26 @@ class JClassDeclaration extends JAST implements JTypeDecl {
         // Resolve superclass
         superType = superType.resolve(this.context);
 
-        // Creating a partial class in memory can result in a
-        // java.lang.VerifyError if the semantics below are
-        // violated, so we can't defer these checks to analyze()
+        // Analysis looks members up through the superclass in the
+        // class symbol, so we can't defer these checks to analyze()
         thisType.checkAccess(line, superType);
         if (superType.isFinal()) {
-            JAST.compilationUnit.reportSemanticError(line,
+            JAST.compilationUnit().reportSemanticError(line,
                     "Cannot extend a final type: %s", superType.toString());
         }
+        for (Type type = superType; type != null; type = type.superClass()) {
+            if (type == thisType) {
+                JAST.compilationUnit().reportSemanticError(line,
+                        "Cyclic inheritance involving %s", thisType.toString());
+                break;
+            }
+        }
 
-        // Create the (partial) class
-        CLEmitter partial = new CLEmitter(false);
-
-        // Add the class header to the partial class
-        String qualifiedName = JAST.compilationUnit.packageName() == "" ? name
-                : JAST.compilationUnit.packageName() + "/" + name;
-        partial.addClass(mods, qualifiedName, superType.jvmName(), null, false);
+        // Create the (partial) class symbol
+        ClassSymbol partial = new ClassSymbol(thisType, mods, superType);
 
         // Pre-analyze the members and add them to the partial
-        // class
+        // class symbol
         for (JMember member : classBlock) {
             member.preAnalyze(this.context, partial);
             if (member instanceof JConstructorDeclaration
@@ -180,15 +179,15 @@ class JClassDeclaration extends JAST implements JTypeDecl {
 
         // Add the implicit empty constructor?
         if (!hasExplicitConstructor) {
-            codegenPartialImplicitConstructor(partial);
+            ArrayList<String> mods = new ArrayList<String>();
+            mods.add("public");
+            partial.addConstructor(mods, new Type[0]);
         }
 
-        // Get the Class rep for the (partial) class and make it
-        // the
-        // representation for this type
-        Type id = this.context.lookupType(name);
-        if (id != null && !JAST.compilationUnit.errorHasOccurred()) {
-            id.setClassRep(partial.toClass());
+        // Make the (partial) class symbol the representation for
+        // this type
+        if (!JAST.compilationUnit().errorHasOccurred()) {
+            thisType.setSymbol(partial);
         }
     }
 
@@ -227,7 +226,7 @@ class JClassDeclaration extends JAST implements JTypeDecl {
             for (Method method : thisType.abstractMethods()) {
                 methods += "\n" + method;
             }
-            JAST.compilationUnit.reportSemanticError(line,
+            JAST.compilationUnit().reportSemanticError(line,
                     "Class must be declared abstract since it defines "
                             + "the following abstract methods: %s", methods);
 
@@ -245,8 +244,8 @@ class JClassDeclaration extends JAST implements JTypeDecl {
 
     public void codegen(CLEmitter output) {
         // The class header
-        String qualifiedName = JAST.compilationUnit.packageName() == "" ? name
-                : JAST.compilationUnit.packageName() + "/" + name;
+        String qualifiedName = JAST.compilationUnit().packageName() == "" ? name
+                : JAST.compilationUnit().packageName() + "/" + name;
         output.addClass(mods, qualifiedName, superType.jvmName(), null, false);
 
         // The implicit empty constructor?
@@ -309,28 +308,6 @@ class JClassDeclaration extends JAST implements JTypeDecl {
         p.println("</JClassDeclaration>");
     }
 
-    /**
-     * Generates code for an implicit empty constructor. (Necessary only if there
-     * is not already an explicit one.)
-     * 
-     * @param partial
-     *            the code emitter (basically an abstraction for producing a
-     *            Java class).
-     */
-
-    private void codegenPartialImplicitConstructor(CLEmitter partial) {
-        // Invoke super constructor
-        ArrayList<String> mods = new ArrayList<String>();
-        mods.add("public");
-        partial.addMethod(mods, "<init>", "()V", null, false);
-        partial.addNoArgInstruction(ALOAD_0);
-        partial.addMemberAccessInstruction(INVOKESPECIAL, superType.jvmName(),
-                "<init>", "()V");
-
-        // Return
-        partial.addNoArgInstruction(RETURN);
-    }
-
     /**
      * Generates code for an implicit empty constructor. (Necessary only if there
      * is not already an explicit one.
@@ -357,6 +334,7 @@ class JClassDeclaration extends JAST implements JTypeDecl {
 
         // Return
         output.addNoArgInstruction(RETURN);
+        output.endMethod();
     }
 
     /**
@@ -382,6 +360,7 @@ class JClassDeclaration extends JAST implements JTypeDecl {
 
         // Return
         output.addNoArgInstruction(RETURN);
+        output.endMethod();
     }
 
 }
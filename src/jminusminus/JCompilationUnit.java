@@ -3,6 +3,8 @@
 package jminusminus;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 
 /**
  * The abstract syntax tree (AST) node representing a compilation unit, and so
@@ -20,9 +22,9 @@ import java.util.ArrayList;
  *   <li>Method {@code preAnalyze} is invoked for making a first pass at type 
  *       analysis, recursively reaching down to the member headers for declaring
  *       types and member interfaces in the environment (contexts). 
- *       {@code preAnalyze} also creates a partial class file (in memory) for 
- *       recording member header information, using the {@code partialCodegen} 
- *       method.</li>
+ *       {@code preAnalyze} also builds a symbol (see {@link ClassSymbol}) for
+ *       each declared type, recording its member header information; no 
+ *       class is generated for it before {@code codegen}.</li>
  * 
  *   <li>Method {@code analyze} is invoked for type-checking field 
  *       initializations and method bodies, and determining the types of all 
@@ -68,6 +70,12 @@ class JCompilationUnit extends JAST {
     /** Whether a semantic error has been found. */
     private boolean isInError;
 
+    /** Classes of the types referenced while compiling this unit. */
+    private HashSet<Class<?>> referencedTypes;
+
+    /** Types of the non-JDK classes, seen from this unit, by descriptor. */
+    private HashMap<String, Type> types;
+
     /**
      * Constructs an AST node for a compilation unit given a file name, class
      * directory, line number, package name, list of imports, and type
@@ -93,7 +101,9 @@ class JCompilationUnit extends JAST {
         this.imports = imports;
         this.typeDeclarations = typeDeclarations;
         clFiles = new ArrayList<CLFile>();
-        compilationUnit = this;
+        referencedTypes = new HashSet<Class<?>>();
+        types = new HashMap<String, Type>();
+        setCompilationUnit(this);
     }
 
     /**
@@ -154,26 +164,27 @@ class JCompilationUnit extends JAST {
         // Declare any imported types
         for (TypeName imported : imports) {
             try {
-                Class<?> classRep = Class.forName(imported.toString());
-                context.addType(imported.line(), Type.typeFor(classRep));
+                context.addType(imported.line(), Type.libraryTypeFor(imported
+                        .toString()));
             } catch (Exception e) {
-                JAST.compilationUnit.reportSemanticError(imported.line(),
+                JAST.compilationUnit().reportSemanticError(imported.line(),
                         "Unable to find %s", imported.toString());
             }
         }
 
         // Declare the locally declared type(s)
-        CLEmitter.initializeByteClassLoader();
         for (JAST typeDeclaration : typeDeclarations) {
             ((JTypeDecl) typeDeclaration).declareThisType(context);
         }
 
-        // Pre-analyze the locally declared type(s). Generate
-        // (partial) Class instances, reflecting only the member
+        // Pre-analyze the locally declared type(s). Build their
+        // (partial) class symbols, reflecting only the member
         // interface type information
-        CLEmitter.initializeByteClassLoader();
         for (JAST typeDeclaration : typeDeclarations) {
+            Measurement m = Stats.start("preAnalyze", 
+                    ((JTypeDecl) typeDeclaration).name());
             ((JTypeDecl) typeDeclaration).preAnalyze(context);
+            Stats.stop(m);
         }
     }
 
@@ -187,7 +198,10 @@ class JCompilationUnit extends JAST {
 
     public JAST analyze(Context context) {
         for (JAST typeDeclaration : typeDeclarations) {
+            Measurement m = Stats.start("analyze", 
+                    ((JTypeDecl) typeDeclaration).name());
             typeDeclaration.analyze(this.context);
+            Stats.stop(m);
         }
         return this;
     }
@@ -203,8 +217,13 @@ class JCompilationUnit extends JAST {
 
     public void codegen(CLEmitter output) {
         for (JAST typeDeclaration : typeDeclarations) {
+            String name = ((JTypeDecl) typeDeclaration).name();
+            Measurement m = Stats.start("codegen", name);
             typeDeclaration.codegen(output);
+            Stats.stop(m);
+            m = Stats.start("write", name);
             output.write();
+            Stats.stop(m);
             clFiles.add(output.clFile());
         }
     }
@@ -220,6 +239,59 @@ class JCompilationUnit extends JAST {
         return clFiles;
     }
 
+    /**
+     * Records that the type with the specified class representation has been
+     * referenced while compiling this unit.
+     * 
+     * @param classRep
+     *            the class representation.
+     */
+
+    public void addReferencedType(Class<?> classRep) {
+        referencedTypes.add(classRep);
+    }
+
+    /**
+     * Returns the Types of the classes outside the JDK (those declared in this
+     * unit, and those it uses from the class path), by descriptor; see 
+     * {@link Type#typeFor(Class)}. They are only seen from this unit, so they 
+     * don't leak into the compilation of other units.
+     * 
+     * @return the Types, by descriptor.
+     */
+
+    public HashMap<String, Type> types() {
+        return types;
+    }
+
+    /**
+     * Returns the classes of the types referenced while compiling this unit.
+     * 
+     * @return the referenced classes.
+     */
+
+    public HashSet<Class<?>> referencedTypes() {
+        return referencedTypes;
+    }
+
+    /**
+     * Returns the types declared in this unit, as computed during 
+     * pre-analysis.
+     * 
+     * @return the declared types.
+     */
+
+    public ArrayList<DeclaredType> declaredTypes() {
+        ArrayList<DeclaredType> declaredTypes = new ArrayList<DeclaredType>();
+        for (JAST typeDeclaration : typeDeclarations) {
+            Type type = ((JTypeDecl) typeDeclaration).thisType();
+            if (type instanceof DeclaredType) {
+                declaredTypes.add((DeclaredType) type);
+            }
+        }
+        return declaredTypes;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -52,17 +52,16 @@ class JConstructorDeclaration extends JMethodDeclaration implements JMember {
      * @param context
      *            the parent (class) context.
      * @param partial
-     *            the code emitter (basically an abstraction for producing the
-     *            partial class).
+     *            the symbol of the class, as it is being built.
      */
 
-    public void preAnalyze(Context context, CLEmitter partial) {
+    public void preAnalyze(Context context, ClassSymbol partial) {
         super.preAnalyze(context, partial);
         if (isStatic) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Constructor cannot be declared static");
         } else if (isAbstract) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Constructor cannot be declared abstract");
         }
         if (body.statements().size() > 0
@@ -89,6 +88,8 @@ class JConstructorDeclaration extends JMethodDeclaration implements JMember {
      */
 
     public JAST analyze(Context context) {
+        Measurement m = Stats.start("analyze", "<init>" + descriptor);
+
         // Record the defining class declaration.
         definingClass = (JClassDeclaration) (context.classContext()
                                                     .definition());
@@ -112,29 +113,23 @@ class JConstructorDeclaration extends JMethodDeclaration implements JMember {
         if (body != null) {
             body = body.analyze(this.context);
         }
+        Stats.stop(m);
         return this;
 
     }
 
     /**
-     * Adds this constructor declaration to the partial class.
+     * Adds this constructor's header to the partial class symbol.
      * 
-     * @param context
-     *            the parent (class) context.
      * @param partial
-     *            the code emitter (basically an abstraction for producing the
-     *            partial class).
+     *            the symbol of the class, as it is being built.
      */
 
-    public void partialCodegen(Context context, CLEmitter partial) {
-        partial.addMethod(mods, "<init>", descriptor, null, false);
-        if (!invokesConstructor) {
-            partial.addNoArgInstruction(ALOAD_0);
-            partial.addMemberAccessInstruction(INVOKESPECIAL,
-                    ((JTypeDecl) context.classContext().definition())
-                            .superType().jvmName(), "<init>", "()V");
+    protected void addHeader(ClassSymbol partial) {
+        if (!partial.addConstructor(mods, paramTypes())) {
+            JAST.compilationUnit().reportSemanticError(line(),
+                    "redefining constructor: <init>" + descriptor);
         }
-        partial.addNoArgInstruction(RETURN);
     }
 
     /**
@@ -146,6 +141,7 @@ class JConstructorDeclaration extends JMethodDeclaration implements JMember {
      */
 
     public void codegen(CLEmitter output) {
+        Measurement m = Stats.start("codegen", "<init>" + descriptor);
         output.addMethod(mods, "<init>", descriptor, null, false);
         if (!invokesConstructor) {
             output.addNoArgInstruction(ALOAD_0);
@@ -161,6 +157,8 @@ class JConstructorDeclaration extends JMethodDeclaration implements JMember {
         // And then the body
         body.codegen(output);
         output.addNoArgInstruction(RETURN);
+        output.endMethod();
+        Stats.stop(m);
     }
 
     /**
@@ -51,27 +51,28 @@ class JFieldDeclaration extends JAST implements JMember {
     }
 
     /**
-     * Declares fields in the parent's (partial) class.
+     * Declares fields in the parent's (partial) class symbol.
      * 
      * @param context
      *            the parent (class) context.
      * @param partial
-     *            the code emitter (basically an abstraction for producing the
-     *            partial class).
+     *            the symbol of the class, as it is being built.
      */
 
-    public void preAnalyze(Context context, CLEmitter partial) {
+    public void preAnalyze(Context context, ClassSymbol partial) {
         // Fields may not be declared abstract.
         if (mods.contains("abstract")) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                     "Field cannot be declared abstract");
         }
 
         for (JVariableDeclarator decl : decls) {
-            // Add field to (partial) class
+            // Add field to (partial) class symbol
             decl.setType(decl.type().resolve(context));
-            partial.addField(mods, decl.name(), decl.type().toDescriptor(),
-                    false);
+            if (!partial.addField(mods, decl.name(), decl.type())) {
+                JAST.compilationUnit().reportSemanticError(decl.line(),
+                        "redefining field: " + decl.name());
+            }
         }
     }
 
@@ -28,7 +28,10 @@ class JInterfaceDeclaration extends JAST implements JTypeDecl {
     //** extends */
     private ArrayList<TypeName> ext;
     
-    private Type thisType, superType = null;
+    /** The type this declaration defines. */
+    private DeclaredType thisType;
+
+    private Type superType = null;
 
     /** Context for this class. */
     private ClassContext context;
@@ -96,12 +99,10 @@ class JInterfaceDeclaration extends JAST implements JTypeDecl {
      */
 
      public void declareThisType(Context context) {
-        String qualifiedName = JAST.compilationUnit.packageName() == "" ? name
-                : JAST.compilationUnit.packageName() + "/" + name;
-        CLEmitter partial = new CLEmitter(false);
-        partial.addClass(mods, qualifiedName, Type.OBJECT.jvmName(), null,
-                false); // Object for superClass
-        thisType = Type.typeFor(partial.toClass());
+        String qualifiedName = JAST.compilationUnit().packageName() == "" ? name
+                : JAST.compilationUnit().packageName() + "/" + name;
+        // Object for superClass
+        thisType = Type.declaredTypeFor(qualifiedName, mods);
         context.addType(line, thisType);
     }
 
@@ -118,28 +119,18 @@ class JInterfaceDeclaration extends JAST implements JTypeDecl {
         // Construct a class context
         this.context = new ClassContext(this, context);
 
-        // Creating a partial class in memory can result in a
-        // java.lang.VerifyError if the semantics below are
-        // violated, so we can't defer these checks to analyze()
-    
-        // Create the (partial) class
-        CLEmitter partial = new CLEmitter(false);
-        
-        // Add the class header to the partial class
-        String qualifiedName = JAST.compilationUnit.packageName() == "" ? name
-                : JAST.compilationUnit.packageName() + "/" + name;
-        partial.addClass(mods, qualifiedName, Type.OBJECT.jvmName(), null, false);
+        // Create the (partial) class symbol
+        ClassSymbol partial = new ClassSymbol(thisType, mods, Type.OBJECT);
 
         // Pre-analyze the members and add them to the partial
-        // class
+        // class symbol
         for (JMember member : interfaceBlock) {
             member.preAnalyze(this.context, partial);
           }
-        // Get the Class rep for the (partial) class and make it the
-        // representation for this type
-        Type id = this.context.lookupType(name);
-        if (id != null && !JAST.compilationUnit.errorHasOccurred()) {
-            id.setClassRep(partial.toClass());
+        // Make the (partial) class symbol the representation for
+        // this type
+        if (!JAST.compilationUnit().errorHasOccurred()) {
+            thisType.setSymbol(partial);
         }
     }
 
@@ -170,8 +161,8 @@ class JInterfaceDeclaration extends JAST implements JTypeDecl {
 
     public void codegen(CLEmitter output) {
         // The class header
-        String qualifiedName = JAST.compilationUnit.packageName() == "" ? name
-                : JAST.compilationUnit.packageName() + "/" + name;
+        String qualifiedName = JAST.compilationUnit().packageName() == "" ? name
+                : JAST.compilationUnit().packageName() + "/" + name;
         output.addClass(mods, qualifiedName, Type.OBJECT.jvmName(), null, false);
         // The implicit empty constructor?
         /*
@@ -9,17 +9,16 @@ package jminusminus;
 interface JMember {
 
     /**
-     * Declares the member name(s) in the specified (class) context. Generates 
-     * the member header(s) in the (partial) class. All members must support 
-     * this method.
+     * Declares the member name(s) in the specified (class) context. Adds 
+     * the member header(s) to the (partial) class symbol. All members must 
+     * support this method.
      * 
      * @param context
      *            class context in which names are resolved.
      * @param partial
-     *            the code emitter (basically an abstraction for producing the
-     *            partial class).
+     *            the symbol of the class, as it is being built.
      */
 
-    public void preAnalyze(Context context, CLEmitter partial);
+    public void preAnalyze(Context context, ClassSymbol partial);
 
 }
@@ -86,11 +86,11 @@ class JMethodDeclaration extends JAST implements JMember {
      * @param context
      *                the parent (class) context.
      * @param partial
-     *                the code emitter (basically an abstraction
-     *                for producing the partial class).
+     *                the symbol of the class, as it is being
+     *                built.
      */
 
-    public void preAnalyze(Context context, CLEmitter partial) {
+    public void preAnalyze(Context context, ClassSymbol partial) {
         // Resolve types of the formal parameters
         for (JFormalParameter param : params) {
             param.setType(param.type().resolve(context));
@@ -101,16 +101,16 @@ class JMethodDeclaration extends JAST implements JMember {
 
         // Check proper local use of abstract
         if (isAbstract && body != null) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                 "abstract method cannot have a body");
         } else if (body == null && !isAbstract) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                 "Method with null body must be abstract");
         } else if (isAbstract && isPrivate) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                 "private method cannot be declared abstract");
         } else if (isAbstract && isStatic) {
-            JAST.compilationUnit.reportSemanticError(line(),
+            JAST.compilationUnit().reportSemanticError(line(),
                 "static method cannot be declared abstract");
         }
 
@@ -121,8 +121,8 @@ class JMethodDeclaration extends JAST implements JMember {
         }
         descriptor += ")" + returnType.toDescriptor();
 
-        // Generate the method with an empty body (for now)
-        partialCodegen(context, partial);
+        // Add the method header to the partial class symbol
+        addHeader(partial);
     }
 
     /**
@@ -139,6 +139,7 @@ class JMethodDeclaration extends JAST implements JMember {
      */
 
     public JAST analyze(Context context) {
+        Measurement m = Stats.start("analyze", name + descriptor);
         MethodContext methodContext = new MethodContext(context,
                                                         isStatic,
                                                         returnType);
@@ -160,40 +161,41 @@ class JMethodDeclaration extends JAST implements JMember {
         if (body != null) {
             body = body.analyze(this.context);
             if (returnType!=Type.VOID && ! methodContext.methodHasReturn()){
-                JAST.compilationUnit.reportSemanticError(line(),
+                JAST.compilationUnit().reportSemanticError(line(),
                             "Non-void method must have a return statement");
             }
         }
+        Stats.stop(m);
         return this;
     }
 
     /**
-     * Adds this method declaration to the partial class.
+     * Adds this method's header to the partial class symbol.
      * 
-     * @param context
-     *                the parent (class) context.
      * @param partial
-     *                the code emitter (basically an abstraction
-     *                for producing the partial class).
+     *                the symbol of the class, as it is being
+     *                built.
      */
 
-    public void partialCodegen(Context context, CLEmitter partial) {
-        // Generate a method with an empty body; need a return to
-        // make the class verifier happy.
-        partial.addMethod(mods, name, descriptor, null, false);
+    protected void addHeader(ClassSymbol partial) {
+        if (!partial.addMethod(mods, name, paramTypes(), returnType)) {
+            JAST.compilationUnit().reportSemanticError(line(),
+                "redefining method: " + name + descriptor);
+        }
+    }
+
+    /**
+     * Returns the (resolved) types of the formal parameters.
+     * 
+     * @return the parameter types.
+     */
 
-        // Add implicit RETURN
-        if (returnType == Type.VOID) {
-            partial.addNoArgInstruction(RETURN);
-        } else if (returnType == Type.INT
-            || returnType == Type.BOOLEAN || returnType == Type.CHAR) {
-            partial.addNoArgInstruction(ICONST_0);
-            partial.addNoArgInstruction(IRETURN);
-        } else {
-            // A reference type.
-            partial.addNoArgInstruction(ACONST_NULL);
-            partial.addNoArgInstruction(ARETURN);
+    protected Type[] paramTypes() {
+        Type[] paramTypes = new Type[params.size()];
+        for (int i = 0; i < paramTypes.length; i++) {
+            paramTypes[i] = params.get(i).type();
         }
+        return paramTypes;
     }
 
     /**
@@ -205,6 +207,7 @@ class JMethodDeclaration extends JAST implements JMember {
      */
 
     public void codegen(CLEmitter output) {
+        Measurement m = Stats.start("codegen", name + descriptor);
         output.addMethod(mods, name, descriptor, null, false);
         if (body != null) {
             body.codegen(output);
@@ -214,6 +217,8 @@ class JMethodDeclaration extends JAST implements JMember {
         if (returnType == Type.VOID) {
             output.addNoArgInstruction(RETURN);
         }
+        output.endMethod();
+        Stats.stop(m);
     }
 
     /**
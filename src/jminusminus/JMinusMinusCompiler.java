@@ -0,0 +1,213 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+/**
+ * A programmatic interface to the j-- compiler, which compiles source held
+ * in memory into class files held in memory, without touching the file
+ * system. For example,
+ *
+ * <pre>
+ *   Map&lt;String, String&gt; sources = new LinkedHashMap&lt;String, String&gt;();
+ *   sources.put("Hello.java", "public class Hello { ... }");
+ *   CompilationResult result = JMinusMinusCompiler.compile(sources);
+ *   byte[] bytes = result.classes().get("Hello");
+ * </pre>
+ *
+ * The sources are compiled in the iteration order of the map, each one as a
+ * separate compilation unit; a unit may import the classes produced by the
+ * units before it. A compilation is confined to one compiler thread (see
+ * {@link CompilerThread}), whose large stack lets deeply nested code be
+ * compiled; the calling thread waits for it. So different threads may
+ * compile concurrently, provided they don't declare types with the same
+ * names.
+ */
+
+public class JMinusMinusCompiler {
+
+    /**
+     * Compiles the specified sources.
+     *
+     * @param sources
+     *            maps source file names (used in diagnostics) to sources.
+     * @return the class files produced, and the diagnostics.
+     */
+
+    public static CompilationResult compile(
+            final Map<String, ? extends CharSequence> sources) {
+        final Map<String, byte[]> classes = new LinkedHashMap<String, byte[]>();
+        final ByteArrayOutputStream diagnostics = new ByteArrayOutputStream();
+        final ClassLoader parent = Type.libraryLoader();
+        final boolean[] errorHasOccurred = new boolean[1];
+        CompilerThread.run(new Runnable() {
+            public void run() {
+                errorHasOccurred[0] = compile(sources, classes, diagnostics,
+                        parent);
+            }
+        });
+        ArrayList<String> lines = new ArrayList<String>();
+        StringTokenizer tokens = new StringTokenizer(diagnostics.toString(),
+                "\r\n");
+        while (tokens.hasMoreTokens()) {
+            lines.add(tokens.nextToken());
+        }
+        return new CompilationResult(classes, lines, errorHasOccurred[0]);
+    }
+
+    /**
+     * Compiles the specified sources on the current (compiler) thread.
+     *
+     * @param sources
+     *            maps source file names to sources.
+     * @param classes
+     *            maps binary class names to the class files produced.
+     * @param diagnostics
+     *            where the diagnostics are written.
+     * @param parent
+     *            the calling thread's library class loader, if any.
+     * @return {@code true} if an error occurred and {@code false} otherwise.
+     */
+
+    private static boolean compile(Map<String, ? extends CharSequence> sources,
+            Map<String, byte[]> classes, ByteArrayOutputStream diagnostics,
+            ClassLoader parent) {
+        boolean errorHasOccurred = false;
+        ClassLoader previous = Type.libraryLoader();
+        PerThreadOutputStream err = PerThreadOutputStream.stderr();
+        err.redirect(diagnostics);
+        Type.setLibraryLoader(new MemoryClassLoader(classes,
+                parent != null ? parent : JMinusMinusCompiler.class
+                        .getClassLoader()));
+        try {
+            for (Map.Entry<String, ? extends CharSequence> source : sources
+                    .entrySet()) {
+                try {
+                    errorHasOccurred |= compile(source.getKey(), source
+                            .getValue().toString(), classes);
+                } catch (RuntimeException e) {
+                    System.err.println("Error: internal compiler error while "
+                            + "compiling " + source.getKey());
+                    e.printStackTrace();
+                    errorHasOccurred = true;
+                }
+            }
+        } finally {
+            System.err.flush();
+            err.redirect(null);
+            Type.setLibraryLoader(previous);
+        }
+        return errorHasOccurred;
+    }
+
+    /**
+     * Compiles a single source (compilation unit), adding the class files
+     * produced to the specified map if there are no errors.
+     *
+     * @param fileName
+     *            the source file name.
+     * @param source
+     *            the source.
+     * @param classes
+     *            maps binary class names to class files.
+     * @return {@code true} if an error occurred while compiling the unit and
+     *         {@code false} otherwise.
+     */
+
+    private static boolean compile(String fileName, String source,
+            Map<String, byte[]> classes) {
+        LookaheadScanner scanner = new LookaheadScanner(fileName,
+                new StringReader(source));
+        Parser parser = new Parser(scanner);
+        JCompilationUnit ast = parser.compilationUnit();
+        if (parser.errorHasOccurred()) {
+            return true;
+        }
+        JAST.setCompilationUnit(ast);
+        ast.preAnalyze();
+        if (ast.errorHasOccurred()) {
+            return true;
+        }
+        ast.analyze(null);
+        if (ast.errorHasOccurred()) {
+            return true;
+        }
+        Map<String, byte[]> unitClasses = new LinkedHashMap<String, byte[]>();
+        CLEmitter clEmitter = new CLEmitter(true);
+        clEmitter.destinationMap(unitClasses);
+        ast.codegen(clEmitter);
+        if (clEmitter.errorHasOccurred()) {
+            return true;
+        }
+        classes.putAll(unitClasses);
+        return false;
+    }
+
+}
+
+/**
+ * A class loader for class files held in memory, in a map from binary class
+ * names to class file bytes. Classes in the map take precedence over any of
+ * the same name that the parent loader can find.
+ */
+
+class MemoryClassLoader extends ClassLoader {
+
+    /** Maps binary class names to class files. */
+    private Map<String, byte[]> classes;
+
+    /**
+     * Constructs a MemoryClassLoader.
+     *
+     * @param classes
+     *            maps binary class names to class files; the map may grow
+     *            while the loader is in use.
+     * @param parent
+     *            the parent class loader.
+     */
+
+    public MemoryClassLoader(Map<String, byte[]> classes, ClassLoader parent) {
+        super(parent);
+        this.classes = classes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    protected Class<?> loadClass(String name, boolean resolve)
+            throws ClassNotFoundException {
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> cls = findLoadedClass(name);
+            if (cls == null && classes.containsKey(name)) {
+                cls = findClass(name);
+            }
+            if (cls == null) {
+                return super.loadClass(name, resolve);
+            }
+            if (resolve) {
+                resolveClass(cls);
+            }
+            return cls;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        byte[] bytes = classes.get(name);
+        if (bytes == null) {
+            throw new ClassNotFoundException(name);
+        }
+        return defineClass(name, bytes, 0, bytes.length);
+    }
+
+}
@@ -0,0 +1,145 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+/**
+ * A jar file (-jar) into which the class files generated are streamed, in
+ * place of the output directory, sparing the creation of a directory and a
+ * file per class. Entries are compressed, or stored as they are (-jar:stored)
+ * for classes that load faster. The jar is written to a temporary file that
+ * is renamed into place when it is closed, or deleted when it is discarded
+ * because compilation failed, so an earlier jar of the same name is replaced
+ * only by a complete one.
+ */
+
+class JarOutput {
+
+    /** Size of the buffer beneath the jar stream. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** The jar file. */
+    private File file;
+
+    /** The temporary file being written. */
+    private File temp;
+
+    /** The jar stream. */
+    private JarOutputStream out;
+
+    /** Whether entries are stored uncompressed. */
+    private boolean stored;
+
+    /** For computing the checksums of stored entries. */
+    private CRC32 crc;
+
+    /**
+     * Constructs a JarOutput, starting the jar.
+     *
+     * @param file
+     *            the jar file.
+     * @param stored
+     *            whether entries are stored uncompressed.
+     * @throws IOException
+     *             if the jar cannot be written.
+     */
+
+    public JarOutput(String file, boolean stored) throws IOException {
+        this.file = new File(file).getAbsoluteFile();
+        this.stored = stored;
+        crc = new CRC32();
+        temp = Util.createTempFile(this.file, false);
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION,
+                "1.0");
+        try {
+            out = new JarOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(temp), BUFFER_SIZE), manifest);
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the jar file.
+     *
+     * @return the jar file.
+     */
+
+    public File file() {
+        return file;
+    }
+
+    /**
+     * Adds the specified classes to the jar.
+     *
+     * @param classes
+     *            maps binary class names to class files.
+     * @throws IOException
+     *             if the classes cannot be written, for example because a
+     *             class of the same name is in the jar already.
+     */
+
+    public synchronized void add(Map<String, byte[]> classes)
+            throws IOException {
+        for (Map.Entry<String, byte[]> e : classes.entrySet()) {
+            byte[] bytes = e.getValue();
+            ZipEntry entry = new ZipEntry(e.getKey().replace('.', '/')
+                    + ".class");
+            if (stored) {
+                crc.reset();
+                crc.update(bytes, 0, bytes.length);
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(bytes.length);
+                entry.setCompressedSize(bytes.length);
+                entry.setCrc(crc.getValue());
+            }
+            out.putNextEntry(entry);
+            out.write(bytes, 0, bytes.length);
+            out.closeEntry();
+        }
+    }
+
+    /**
+     * Finishes the jar, and renames it into place.
+     *
+     * @throws IOException
+     *             if the jar cannot be written.
+     */
+
+    public synchronized void close() throws IOException {
+        try {
+            out.close();
+            Util.moveIntoPlace(temp, file);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Abandons the jar, deleting the temporary file, so that an earlier jar
+     * of the same name is left as it is; used when compilation fails.
+     */
+
+    public synchronized void discard() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            // The jar is deleted anyway
+        } finally {
+            temp.delete();
+        }
+    }
+
+}
@@ -4,12 +4,18 @@ package jminusminus;
 
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+
+import java.util.ArrayList;
 
 /**
  * Driver class for j-- compiler using JavaCC front-end. This is the main entry
  * point for the compiler. The compiler proceeds as follows:
  * <ol>
- *   <li>It reads arguments that affects its behavior.</li>
+ *   <li>It reads arguments that affects its behavior. Any number of source
+ *       files may be given, either directly or listed in {@code @argfile}s;
+ *       each one is compiled in turn, as a separate compilation unit, by
+ *       the steps that follow.</li>
  * 
  *   <li>It builds a scanner.</li>
  * 
@@ -35,9 +41,21 @@ import java.io.FileNotFoundException;
 
 public class JavaCCMain {
 
-    /** Whether an error occurred during compilation. */
+    /** Whether an error occurred during compilation (of any unit). */
     private static boolean errorHasOccurred;
 
+    /** Debug option (-t, -p, -pa or -a), if any. */
+    private static String debugOption;
+
+    /** Where to place output files. */
+    private static String outputDir;
+
+    /** Whether SPIM code is to be generated. */
+    private static boolean spimOutput;
+
+    /** Register allocation scheme for SPIM code. */
+    private static String registerAllocation;
+
     /**
      * Entry point.
      *
@@ -47,25 +65,34 @@ public class JavaCCMain {
 
     public static void main(String args[]) {
         String caller = "java jminusminus.JavaCCMain";
-        String sourceFile = "";
-        String debugOption = "";
-        String outputDir = ".";
-        boolean spimOutput = false;
-        String registerAllocation = "";
+        ArrayList<String> sourceFiles = new ArrayList<String>();
+        debugOption = "";
+        outputDir = ".";
+        spimOutput = false;
+        registerAllocation = "";
         errorHasOccurred = false;
-        for (int i = 0; i < args.length; i++) {
-            if (args[i].equals("javaccj--")) {
+        ArrayList<String> arguments = null;
+        try {
+            arguments = Util.expandArgFiles(args);
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            errorHasOccurred = true;
+            return;
+        }
+        for (int i = 0; i < arguments.size(); i++) {
+            String arg = arguments.get(i);
+            if (arg.equals("javaccj--")) {
                 caller = "javaccj--";
-            } else if (args[i].endsWith(".java")) {
-                sourceFile = args[i];
-            } else if (args[i].equals("-t") || args[i].equals("-p")
-                    || args[i].equals("-pa") || args[i].equals("-a")) {
-                debugOption = args[i];
-            } else if (args[i].endsWith("-d") && (i + 1) < args.length) {
-                outputDir = args[++i];
-            } else if (args[i].endsWith("-s") && (i + 1) < args.length) {
+            } else if (arg.endsWith(".java")) {
+                sourceFiles.add(arg);
+            } else if (arg.equals("-t") || arg.equals("-p")
+                    || arg.equals("-pa") || arg.equals("-a")) {
+                debugOption = arg;
+            } else if (arg.endsWith("-d") && (i + 1) < arguments.size()) {
+                outputDir = arguments.get(++i);
+            } else if (arg.endsWith("-s") && (i + 1) < arguments.size()) {
                 spimOutput = true;
-                registerAllocation = args[++i];
+                registerAllocation = arguments.get(++i);
                 if (!registerAllocation.equals("naive") &&
                     !registerAllocation.equals("linear") &&
                     !registerAllocation.equals("graph")
@@ -73,9 +100,9 @@ public class JavaCCMain {
                     printUsage(caller);
                     return;
                 }
-            } else if (args[i].endsWith("-r") && (i + 1) < args.length) {
+            } else if (arg.endsWith("-r") && (i + 1) < arguments.size()) {
                 NPhysicalRegister.MAX_COUNT = Math.min(18, Integer
-                        .parseInt(args[++i]));
+                        .parseInt(arguments.get(++i)));
                 NPhysicalRegister.MAX_COUNT = Math.max(1,
                         NPhysicalRegister.MAX_COUNT);
             } else {
@@ -83,17 +110,45 @@ public class JavaCCMain {
                 return;
             }
         }
-        if (sourceFile.equals("")) {
+        if (sourceFiles.isEmpty()) {
             printUsage(caller);
             return;
         }
 
+        // Compile the units one after another; an error in one unit (even 
+        // an internal one) does not stop the compilation of the remaining
+        // ones.
+        for (String sourceFile : sourceFiles) {
+            try {
+                errorHasOccurred |= compile(sourceFile);
+            } catch (RuntimeException e) {
+                System.err.println("Error: internal compiler error while "
+                        + "compiling " + sourceFile);
+                e.printStackTrace();
+                errorHasOccurred = true;
+            }
+        }
+    }
+
+    /**
+     * Compiles a single source file (compilation unit) according to the 
+     * options parsed by {@code main}.
+     * 
+     * @param sourceFile
+     *            the source file.
+     * @return {@code true} if an error occurred while compiling the unit and
+     *         {@code false} otherwise.
+     */
+
+    private static boolean compile(String sourceFile) {
+        boolean errorHasOccurred = false;
         JavaCCParserTokenManager javaCCScanner = null;
         try {
             javaCCScanner = new JavaCCParserTokenManager(new SimpleCharStream(
                     new FileInputStream(sourceFile), 1, 1));
         } catch (FileNotFoundException e) {
             System.err.println("Error: file " + sourceFile + " not found.");
+            return true;
         }
 
         if (debugOption.equals("-t")) {
@@ -112,7 +167,7 @@ public class JavaCCMain {
                             token.image);
                 }
             } while (token.kind != JavaCCParserConstants.EOF);
-            return;
+            return errorHasOccurred;
         }
 
         // Parse input
@@ -124,35 +179,37 @@ public class JavaCCMain {
             errorHasOccurred |= javaCCParser.errorHasOccurred();
         } catch (ParseException e) {
             System.err.println(e.getMessage());
+            return true;
         }
         if (debugOption.equals("-p")) {
             ast.writeToStdOut(new PrettyPrinter());
-            return;
+            return errorHasOccurred;
         }
         if (errorHasOccurred) {
-            return;
+            return errorHasOccurred;
         }
 
-        // Do pre-analysis
+        // Do pre-analysis; the unit being compiled is the current one
+        JAST.setCompilationUnit(ast);
         ast.preAnalyze();
-        errorHasOccurred |= JAST.compilationUnit.errorHasOccurred();
+        errorHasOccurred |= ast.errorHasOccurred();
         if (debugOption.equals("-pa")) {
             ast.writeToStdOut(new PrettyPrinter());
-            return;
+            return errorHasOccurred;
         }
         if (errorHasOccurred) {
-            return;
+            return errorHasOccurred;
         }
 
         // Do analysis
         ast.analyze(null);
-        errorHasOccurred |= JAST.compilationUnit.errorHasOccurred();
+        errorHasOccurred |= ast.errorHasOccurred();
         if (debugOption.equals("-a")) {
             ast.writeToStdOut(new PrettyPrinter());
-            return;
+            return errorHasOccurred;
         }
         if (errorHasOccurred) {
-            return;
+            return errorHasOccurred;
         }
 
         // Generate JVM code
@@ -161,7 +218,7 @@ public class JavaCCMain {
         ast.codegen(clEmitter);
         errorHasOccurred |= clEmitter.errorHasOccurred();
         if (errorHasOccurred) {
-            return;
+            return errorHasOccurred;
         }
 
         // If SPIM output was asked for, convert the in-memory
@@ -174,6 +231,7 @@ public class JavaCCMain {
             nEmitter.write();
             errorHasOccurred |= nEmitter.errorHasOccurred();
         }
+        return errorHasOccurred;
     }
 
     /**
@@ -196,7 +254,7 @@ public class JavaCCMain {
     private static void printUsage(String caller) {
         String usage = "Usage: "
                 + caller
-                + " <options> <source file>\n"
+                + " <options> <source files | @argfiles>\n"
                 + "Where possible options include:\n"
                 + "  -t  Only tokenize input and print tokens to STDOUT\n"
                 + "  -p  Only parse input and print AST to STDOUT\n"
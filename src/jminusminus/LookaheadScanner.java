@@ -3,37 +3,44 @@
 package jminusminus;
 
 import java.io.FileNotFoundException;
-import java.util.Stack;
-import java.util.Vector;
+import java.io.Reader;
+import java.util.Arrays;
 
 /**
  * A lexical analyzer for j-- that interfaces with the hand-written parser
  * ({@link Parser}). It provides a backtracking mechanism, and makes use of the
- * underlying hand-written {@link Scanner}.
+ * underlying hand-written {@link Scanner}, whose tokens it keeps in a 
+ * {@link TokenStream}. Tokens are referred to by their index in the stream, so
+ * a recorded position is simply an index, and recording a position or
+ * returning to one takes constant time. The stream keeps the tokens from the
+ * outermost recorded position on, and lets go of the rest.
  */
 
 class LookaheadScanner {
 
-    /** The underlying hand-written scanner. */
-    private Scanner scanner;
+    /** The tokens. */
+    private TokenStream tokens;
 
-    /** Backtracking queue. */
-    private Vector<TokenInfo> backtrackingQueue;
-
-    /** Token queue. */
-    private Vector<TokenInfo> nextQueue;
+    /**
+     * Stack of recorded positions for nested lookahead: the indices of the
+     * previous and current tokens, in pairs.
+     */
+    private int[] marks;
 
-    /** Stack of token queues for nested lookahead. */
-    private Stack<Vector<TokenInfo>> queueStack;
+    /** Number of ints on the marks stack. */
+    private int markCount;
 
     /** Whether we are looking ahead. */
     public boolean isLookingAhead;
 
-    /** Previous token. */
-    private TokenInfo previousToken;
+    /** Index of the previous token (-1 if none). */
+    private int previousToken;
 
-    /** Current token. */
-    private TokenInfo token;
+    /** Index of the current token (-1 if none). */
+    private int token;
+
+    /** Number of tokens scanned while looking ahead. */
+    private int lookaheadTokens;
 
     /**
      * Constructs a LookaheadScanner from a file name.
@@ -45,60 +52,135 @@ class LookaheadScanner {
      */
 
     public LookaheadScanner(String fileName) throws FileNotFoundException {
-        scanner = new Scanner(fileName);
-        backtrackingQueue = new Vector<TokenInfo>();
-        nextQueue = new Vector<TokenInfo>();
-        queueStack = new Stack<Vector<TokenInfo>>();
+        this(new Scanner(fileName));
+    }
+
+    /**
+     * Constructs a LookaheadScanner reading the source from the specified 
+     * reader.
+     * 
+     * @param fileName
+     *            the name by which the source is known (in error messages).
+     * @param source
+     *            the reader supplying the source.
+     */
+
+    public LookaheadScanner(String fileName, Reader source) {
+        this(new Scanner(fileName, source));
+    }
+
+    /**
+     * Constructs a LookaheadScanner atop the specified scanner.
+     * 
+     * @param scanner
+     *            the scanner.
+     */
+
+    private LookaheadScanner(Scanner scanner) {
+        tokens = new TokenStream(scanner);
+        marks = new int[16];
+        markCount = 0;
         isLookingAhead = false;
+        previousToken = -1;
+        token = -1;
     }
 
     /**
-     * Scans to the next token in the input.
+     * Scans to the next token in the input. At the end of the input, the 
+     * current token stays EOF.
      */
 
     public void next() {
         previousToken = token;
-        if (backtrackingQueue.size() == 0) {
-            token = scanner.getNextToken();
-        } else {
-            token = backtrackingQueue.remove(0);
+        if (token < 0 || tokens.kind(token) != TokenKind.EOF) {
+            token++;
         }
-        if (isLookingAhead) {
-            nextQueue.add(token);
+        if (markCount > 0) {
+            lookaheadTokens++;
+        } else if (previousToken >= 0) {
+            // Not looking ahead, so we won't return before the previous token
+            tokens.release(previousToken);
         }
     }
 
     /**
      * Records the current position in the input, so that we can start looking
-     * ahead in the input (and later return to this position). We'll queue up
-     * the current and subsequent tokens until {@code returnToPosition} is 
-     * invoked. These recordPosition's can be nested.
+     * ahead in the input (and later return to this position). These
+     * recordPosition's can be nested.
      */
 
     public void recordPosition() {
         isLookingAhead = true;
-        queueStack.push(nextQueue);
-        nextQueue = new Vector<TokenInfo>();
-        nextQueue.add(previousToken);
-        nextQueue.add(token);
+        if (markCount == marks.length) {
+            marks = Arrays.copyOf(marks, 2 * markCount);
+        }
+        marks[markCount++] = previousToken;
+        marks[markCount++] = token;
     }
 
     /**
      * Returns to the previously recorded position in the input stream of tokens.
-     * If this is a nested lookahead, then return to the previous token queue.
+     * If this is a nested lookahead, then return to the previous recorded
+     * position next time.
      */
 
     public void returnToPosition() {
-        while (backtrackingQueue.size() > 0) {
-            nextQueue.add(backtrackingQueue.remove(0));
-        }
-        backtrackingQueue = nextQueue;
-        nextQueue = queueStack.pop();
-        isLookingAhead = !(queueStack.empty());
+        token = marks[--markCount];
+        previousToken = marks[--markCount];
+        isLookingAhead = markCount > 0;
+    }
+
+    /**
+     * Returns the number of tokens scanned while looking ahead (some of them
+     * more than once) so far.
+     * 
+     * @return the number of tokens.
+     */
+
+    public int lookaheadTokens() {
+        return lookaheadTokens;
+    }
+
+    /**
+     * Returns the kind of the current token.
+     * 
+     * @return the kind.
+     */
+
+    public TokenKind kind() {
+        return tokens.kind(token);
+    }
+
+    /**
+     * Returns the line of the current token.
+     * 
+     * @return the line.
+     */
+
+    public int line() {
+        return tokens.line(token);
+    }
+
+    /**
+     * Returns the image of the current token.
+     * 
+     * @return the image.
+     */
+
+    public String image() {
+        return tokens.image(token);
+    }
+
+    /**
+     * Returns the image of the previous token. We use this in the parser to 
+     * get at a token's semantic info (for example an identifier's name), 
+     * after we've scanned it.
+     * 
+     * @return the image.
+     */
 
-        // Restore previous and current tokens
-        previousToken = backtrackingQueue.remove(0);
-        token = backtrackingQueue.remove(0);
+    public String previousImage() {
+        return tokens.image(previousToken);
     }
 
     /**
@@ -108,19 +190,17 @@ class LookaheadScanner {
      */
 
     public TokenInfo token() {
-        return token;
+        return token < 0 ? null : tokens.token(token);
     }
 
     /**
-     * Returns the previously scanned token. We use this in the parser to get 
-     * at a token's semantic info (for example an identifier's name), after 
-     * we've scanned it.
+     * Returns the previously scanned token.
      * 
      * @return the previous token.
      */
 
     public TokenInfo previousToken() {
-        return previousToken;
+        return previousToken < 0 ? null : tokens.token(previousToken);
     }
 
     /**
@@ -130,7 +210,7 @@ class LookaheadScanner {
      */
 
     public boolean errorHasOccured() {
-        return scanner.errorHasOccurred();
+        return tokens.errorHasOccurred();
     }
 
     /**
@@ -140,7 +220,7 @@ class LookaheadScanner {
      */
 
     public String fileName() {
-        return scanner.fileName();
+        return tokens.fileName();
     }
 
 }
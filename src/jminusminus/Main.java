@@ -2,8 +2,24 @@
 
 package jminusminus;
 
-import java.io.FileInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static jminusminus.TokenKind.EOF;
 
@@ -11,7 +27,10 @@ import static jminusminus.TokenKind.EOF;
  * Driver class for j-- compiler using hand-written front-end. This is the main
  * entry point for the compiler. The compiler proceeds as follows:
  * <ol>
- *   <li>It reads arguments that affects its behavior.</li>
+ *   <li>It reads arguments that affects its behavior. Any number of source
+ *       files may be given, either directly or listed in {@code @argfile}s;
+ *       each one is compiled in turn, as a separate compilation unit, by
+ *       the steps that follow.</li>
  * 
  *   <li>It builds a scanner.</li>
  * 
@@ -37,37 +56,133 @@ import static jminusminus.TokenKind.EOF;
 
 public class Main {
 
-    /** Whether an error occurred during compilation. */
+    /** Whether an error occurred during compilation (of any unit). */
     private static boolean errorHasOccurred;
 
+    /** Debug option (-t, -p, -pa or -a), if any. */
+    private static String debugOption;
+
+    /** Where to place output files. */
+    private static String outputDir;
+
+    /** Whether SPIM code is to be generated. */
+    private static boolean spimOutput;
+
+    /** Register allocation scheme for SPIM code. */
+    private static String registerAllocation;
+
+    /** Number of units that may be compiled concurrently. */
+    private static int threads;
+
+    /** Format (text or json) of the per-phase statistics, if wanted. */
+    private static String statsFormat;
+
+    /** Whether only stale units are to be compiled. */
+    private static boolean incremental;
+
+    /** Index of what has been compiled into the output directory, if 
+     * compiling incrementally. */
+    private static DependencyIndex index;
+
+    /** If the program is to be run, the classes compiled (in memory) for 
+     * it. */
+    private static Map<String, byte[]> runClasses;
+
+    /** Arguments for the program to be run. */
+    private static String[] programArgs;
+
+    /** The build cache, if one is used. */
+    private static BuildCache cache;
+
+    /** The jar the class files are written to, if not to the output 
+     * directory. */
+    private static JarOutput jar;
+
+    /** If watching for changes, the loader of the classes compiled so far
+     * into the output directory. */
+    private static ClassLoader watchLoader;
+
+    /** The path library classes are read from, if they are read from class 
+     * files rather than loaded. */
+    private static CLPath libraryPath;
+
     /**
-     * Entry point.
+     * Entry point. Exits with status 1 if an error occurred.
      *
      * @param args
      *            the command-line arguments.
      */
 
     public static void main(String args[]) {
+        compile(args);
+        if (errorHasOccurred) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Compiles according to the specified command-line arguments, as
+     * {@code main} does, but without exiting, for compiling more than once in 
+     * the same JVM; {@link #errorHasOccurred} tells whether an error 
+     * occurred.
+     *
+     * @param args
+     *            the command-line arguments.
+     */
+
+    static void compile(String args[]) {
         String caller = "java jminusminus.Main";
-        String sourceFile = "";
-        String debugOption = "";
-        String outputDir = ".";
-        boolean spimOutput = false;
-        String registerAllocation = "";
+        ArrayList<String> sourceFiles = new ArrayList<String>();
+
+        // Every option is reset, since j--d compiles once per request
+        debugOption = "";
+        outputDir = ".";
+        spimOutput = false;
+        registerAllocation = "";
+        threads = 1;
+        statsFormat = "";
+        incremental = false;
+        index = null;
+        runClasses = null;
+        programArgs = new String[0];
+        cache = null;
+        watchLoader = null;
+        libraryPath = null;
+        CompilerThread.setStackSize(CompilerThread.DEFAULT_STACK_SIZE);
+        jar = null;
+        String jarFile = null;
+        boolean jarStored = false;
+        String watchDir = null;
+        String cacheDir = null;
+        long cacheSize = BuildCache.DEFAULT_MAX_SIZE;
+        NPhysicalRegister.MAX_COUNT = 8;
         errorHasOccurred = false;
-        for (int i = 0; i < args.length; i++) {
-            if (args[i].equals("j--")) {
+        ArrayList<String> arguments = null;
+        try {
+            arguments = Util.expandArgFiles(args);
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            errorHasOccurred = true;
+            return;
+        }
+        for (int i = 0; i < arguments.size(); i++) {
+            String arg = arguments.get(i);
+            if (arg.equals("--")) {
+                programArgs = arguments.subList(i + 1, arguments.size())
+                        .toArray(programArgs);
+                break;
+            } else if (arg.equals("j--")) {
                 caller = "j--";
-            } else if (args[i].endsWith(".java")) {
-                sourceFile = args[i];
-            } else if (args[i].equals("-t") || args[i].equals("-p")
-                    || args[i].equals("-pa") || args[i].equals("-a")) {
-                debugOption = args[i];
-            } else if (args[i].endsWith("-d") && (i + 1) < args.length) {
-                outputDir = args[++i];
-            } else if (args[i].endsWith("-s") && (i + 1) < args.length) {
+            } else if (arg.endsWith(".java")) {
+                sourceFiles.add(arg);
+            } else if (arg.equals("-t") || arg.equals("-p")
+                    || arg.equals("-pa") || arg.equals("-a")) {
+                debugOption = arg;
+            } else if (arg.endsWith("-d") && (i + 1) < arguments.size()) {
+                outputDir = arguments.get(++i);
+            } else if (arg.endsWith("-s") && (i + 1) < arguments.size()) {
                 spimOutput = true;
-                registerAllocation = args[++i];
+                registerAllocation = arguments.get(++i);
                 if (!registerAllocation.equals("naive") && 
                     !registerAllocation.equals("linear") && 
                     !registerAllocation.equals("graph")
@@ -75,95 +190,733 @@ public class Main {
                     printUsage(caller);
                     return;
                 }
-            } else if (args[i].endsWith("-r") && (i + 1) < args.length) {
+            } else if (arg.endsWith("-r") && (i + 1) < arguments.size()) {
                 NPhysicalRegister.MAX_COUNT = Math.min(18, Integer
-                        .parseInt(args[++i]));
+                        .parseInt(arguments.get(++i)));
                 NPhysicalRegister.MAX_COUNT = Math.max(1,
                         NPhysicalRegister.MAX_COUNT);
+            } else if (arg.equals("-j") && (i + 1) < arguments.size()) {
+                threads = Math.max(1, Integer.parseInt(arguments.get(++i)));
+            } else if (arg.equals("-stack") && (i + 1) < arguments.size()) {
+                CompilerThread.setStackSize(Math.max(1, Integer
+                        .parseInt(arguments.get(++i))));
+            } else if (arg.equals("-incremental")) {
+                incremental = true;
+            } else if (arg.equals("-Xstats") || arg.equals("-Xstats:text")) {
+                statsFormat = "text";
+            } else if (arg.equals("-Xstats:json")) {
+                statsFormat = "json";
+            } else if (arg.equals("-run")) {
+                runClasses = Collections
+                        .synchronizedMap(new LinkedHashMap<String, byte[]>());
+            } else if ((arg.equals("-jar") || arg.equals("-jar:stored"))
+                    && (i + 1) < arguments.size()) {
+                jarFile = arguments.get(++i);
+                jarStored = arg.equals("-jar:stored");
+            } else if (arg.equals("-watch") && (i + 1) < arguments.size()) {
+                watchDir = arguments.get(++i);
+            } else if (arg.equals("-cache") && (i + 1) < arguments.size()) {
+                cacheDir = arguments.get(++i);
+            } else if (arg.equals("-cachesize") 
+                    && (i + 1) < arguments.size()) {
+                cacheSize = Long.parseLong(arguments.get(++i)) * 1024 * 1024;
+            } else if ((arg.equals("-cp") || arg.equals("-classpath"))
+                    && (i + 1) < arguments.size()) {
+                libraryPath = new CLPath(arguments.get(++i), null);
             } else {
                 printUsage(caller);
                 return;
             }
         }
-        if (sourceFile.equals("")) {
+        if (sourceFiles.isEmpty() == (watchDir == null)) {
             printUsage(caller);
             return;
         }
 
+        // A program is run, and incremental compilation applies, only 
+        // when class files are generated
+        if (!debugOption.equals("") || spimOutput) {
+            runClasses = null;
+        }
+
+        // A program run in memory is compiled against the classes it runs
+        // with, those compiled before included
+        if (runClasses != null && libraryPath != null) {
+            System.err.println("Warning: -cp is ignored with -run");
+            libraryPath = null;
+        }
+
+        // Only units that are compiled through code generation are cached
+        if (cacheDir != null && debugOption.equals("")) {
+            cache = new BuildCache(cacheDir, cacheSize);
+        }
+        if (jarFile != null) {
+            if (!debugOption.equals("") || spimOutput || runClasses != null
+                    || watchDir != null || incremental) {
+                System.err.println("Warning: -jar is ignored with -run, "
+                        + "-watch, -incremental, -s and debug options");
+            } else {
+                try {
+                    jar = new JarOutput(jarFile, jarStored);
+                } catch (IOException e) {
+                    System.err.println("Error: cannot write " + jarFile);
+                    errorHasOccurred = true;
+                    return;
+                }
+            }
+        }
+        final ArrayList<String> units = sourceFiles;
+        final String dir = watchDir;
+        try {
+            CompilerThread.run(new Runnable() {
+                public void run() {
+                    errorHasOccurred |= compileOrWatch(units, dir);
+                }
+            });
+        } finally {
+            // The jars on the class path stay open while compiling
+            if (libraryPath != null) {
+                libraryPath.close();
+            }
+        }
+    }
+
+    /**
+     * Compiles the specified source files, or watches the specified directory,
+     * according to the options parsed by {@code main}; runs on a compiler 
+     * thread.
+     * 
+     * @param sourceFiles
+     *            the source files.
+     * @param watchDir
+     *            the directory to watch, or {@code null}.
+     * @return {@code true} if an error occurred and {@code false} otherwise.
+     */
+
+    private static boolean compileOrWatch(ArrayList<String> sourceFiles,
+            String watchDir) {
+        boolean errorHasOccurred = false;
+        if (jar != null) {
+            errorHasOccurred |= compileAll(sourceFiles);
+
+            // A jar missing the classes of a unit in error must not replace
+            // a complete one
+            if (errorHasOccurred) {
+                jar.discard();
+            } else {
+                try {
+                    jar.close();
+                } catch (IOException e) {
+                    System.err.println("Error: cannot write " + jar.file());
+                    errorHasOccurred = true;
+                }
+            }
+        } else if (watchDir != null) {
+            if (runClasses != null) {
+                System.err.println("Warning: -run is ignored with -watch");
+                runClasses = null;
+            }
+            errorHasOccurred |= watch(watchDir);
+        } else if (runClasses != null) {
+            errorHasOccurred |= compileAll(sourceFiles);
+            if (!errorHasOccurred) {
+                errorHasOccurred |= run(sourceFiles.get(0));
+            }
+        } else if (incremental && debugOption.equals("") && !spimOutput) {
+            errorHasOccurred |= compileIncrementally(sourceFiles);
+        } else {
+            errorHasOccurred |= compileAll(sourceFiles);
+        }
+        return errorHasOccurred;
+    }
+
+    /**
+     * Runs the program compiled (in memory) by invoking the 
+     * {@code main(String[])} method of its main class, in a fresh class 
+     * loader within this JVM. The main class is the one named after the
+     * first source file or, if that one has no main method, the first class 
+     * that has one.
+     * 
+     * @param firstSourceFile
+     *            the first source file.
+     * @return {@code true} if the program could not be run or threw an 
+     *         exception and {@code false} otherwise.
+     */
+
+    private static boolean run(String firstSourceFile) {
+        String name = new File(firstSourceFile).getName();
+        name = name.substring(0, name.length() - ".java".length());
+        ClassLoader loader = new MemoryClassLoader(runClasses, 
+                Main.class.getClassLoader());
+        Method main = null;
+        ArrayList<String> classNames;
+        synchronized (runClasses) {
+            classNames = new ArrayList<String>(runClasses.keySet());
+        }
+        for (String className : classNames) {
+            if (className.equals(name) || className.endsWith("." + name)) {
+                main = mainMethod(loader, className);
+            }
+        }
+        for (int i = 0; main == null && i < classNames.size(); i++) {
+            main = mainMethod(loader, classNames.get(i));
+        }
+        if (main == null) {
+            System.err.println("Error: no class with a main method to run");
+            return true;
+        }
+        try {
+            main.invoke(null, (Object) programArgs);
+        } catch (InvocationTargetException e) {
+            System.err.print("Exception in thread \""
+                    + Thread.currentThread().getName() + "\" ");
+            e.getCause().printStackTrace();
+            return true;
+        } catch (IllegalAccessException e) {
+            System.err.println("Error: cannot run " + main);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the {@code public static void main(String[])} method of the 
+     * specified class.
+     * 
+     * @param loader
+     *            the class loader for the class.
+     * @param className
+     *            the binary name of the class.
+     * @return the main method, or {@code null} if there is none.
+     */
+
+    private static Method mainMethod(ClassLoader loader, String className) {
+        try {
+            Method main = Class.forName(className, true, loader).getMethod(
+                    "main", String[].class);
+            int mods = main.getModifiers();
+            return Modifier.isStatic(mods) && main.getReturnType() == void.class
+                    && Modifier.isPublic(main.getDeclaringClass().getModifiers())
+                    ? main : null;
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Compiles the specified source files, one after another or concurrently;
+     * an error in one unit does not stop the compilation of the remaining 
+     * ones.
+     * 
+     * @param sourceFiles
+     *            the source files.
+     * @return {@code true} if an error occurred while compiling any of the 
+     *         units and {@code false} otherwise.
+     */
+
+    private static boolean compileAll(ArrayList<String> sourceFiles) {
+        if (threads > 1 && sourceFiles.size() > 1) {
+            return compileConcurrently(sourceFiles);
+        }
+        boolean errorHasOccurred = false;
+        for (String sourceFile : sourceFiles) {
+            errorHasOccurred |= compile(sourceFile);
+        }
+        return errorHasOccurred;
+    }
+
+    /**
+     * Compiles only those of the specified source files that are stale with
+     * respect to the index kept in the output directory: first the ones that
+     * changed, then, round by round, those referencing a class whose 
+     * signature changed, or that is no longer produced, in the previous 
+     * round. Indexed source files that no longer exist are removed from the
+     * index, along with their class files.
+     * 
+     * @param sourceFiles
+     *            the source files.
+     * @return {@code true} if an error occurred while compiling any of the 
+     *         units and {@code false} otherwise.
+     */
+
+    private static boolean compileIncrementally(ArrayList<String> sourceFiles) {
+        boolean errorHasOccurred = false;
+        index = DependencyIndex.load(outputDir);
+        index.removeMissing();
+        ArrayList<String> remaining = new ArrayList<String>(sourceFiles);
+        ArrayList<String> stale = index.staleSources(remaining);
+        while (!stale.isEmpty()) {
+            errorHasOccurred |= compileAll(stale);
+            remaining.removeAll(stale);
+            stale = index.staleSources(remaining);
+        }
+        index.save();
+        return errorHasOccurred;
+    }
+
+    /**
+     * Compiles the source files in the specified directory tree, and then, 
+     * whenever some of them change, compiles those again, all in this JVM,
+     * which so stays warm. When class files are generated, only the stale 
+     * source files are compiled, as with -incremental: those that changed, 
+     * and then those depending on a class whose signature changed. Runs 
+     * until interrupted.
+     * 
+     * @param dir
+     *            the directory.
+     * @return {@code true} if the directory cannot be watched and 
+     *         {@code false} otherwise.
+     */
+
+    private static boolean watch(String dir) {
+        SourceWatcher watcher;
+        try {
+            watcher = new SourceWatcher(dir);
+        } catch (IOException e) {
+            System.err.println("Error: cannot watch " + dir + ": "
+                    + e.getMessage());
+            return true;
+        }
+        if (debugOption.equals("") && !spimOutput) {
+            index = DependencyIndex.load(outputDir);
+            index.removeMissing();
+        }
+        System.out.println("Watching " + dir + " for changes");
+        ArrayList<String> changed = watcher.sources();
+        try {
+            while (true) {
+                long start = System.nanoTime();
+                if (index != null) {
+                    for (String sourceFile : watcher.deleted()) {
+                        index.remove(sourceFile);
+                    }
+                }
+                ArrayList<String> compiled = new ArrayList<String>();
+                boolean errors = recompile(watcher.sources(), changed, 
+                        compiled);
+                long time = (System.nanoTime() - start) / 1000000;
+                if (!compiled.isEmpty() || !watcher.deleted().isEmpty()) {
+                    System.out.printf("Compiled %d of %d source files in %d "
+                            + "ms%s\n", compiled.size(), watcher.sources()
+                            .size(), time, errors ? ", with errors" : "");
+                }
+                changed = watcher.awaitChanges();
+            }
+        } catch (InterruptedException e) {
+            return false;
+        } finally {
+            watcher.close();
+        }
+    }
+
+    /**
+     * Compiles the specified source files that changed, for -watch; with an
+     * index, only the stale ones are compiled, and then, round by round, 
+     * those of the rest that depend on a class whose signature changed in the 
+     * previous round.
+     * 
+     * @param sourceFiles
+     *            all the source files.
+     * @param changed
+     *            the source files that changed.
+     * @param compiled
+     *            where to put the source files compiled.
+     * @return {@code true} if an error occurred while compiling any of the 
+     *         units and {@code false} otherwise.
+     */
+
+    private static boolean recompile(ArrayList<String> sourceFiles, 
+            ArrayList<String> changed, ArrayList<String> compiled) {
+        boolean errorHasOccurred = false;
+        ArrayList<String> remaining = new ArrayList<String>(sourceFiles);
+        ArrayList<String> stale = index == null ? changed : index
+                .staleSources(changed);
+
+        // Sources that were only deleted may leave others depending on a
+        // class no longer produced
+        if (stale.isEmpty() && index != null) {
+            stale = index.dependentSources(remaining);
+        }
+        while (!stale.isEmpty()) {
+            watchLoader = new DirectoryClassLoader(outputDir, 
+                    Main.class.getClassLoader());
+            errorHasOccurred |= compileAll(stale);
+            compiled.addAll(stale);
+            if (index == null) {
+                break;
+            }
+            remaining.removeAll(stale);
+            stale = index.dependentSources(remaining);
+        }
+        if (index != null) {
+            index.save();
+        }
+        return errorHasOccurred;
+    }
+
+    /**
+     * Compiles the specified (independent) source files on a pool of 
+     * {@code threads} compiler threads. Whatever a unit writes to STDOUT and
+     * STDERR is held back and then written out in the order in which the 
+     * source files were given, and so are the classes bound for a jar, so the
+     * output is the same as that of a sequential run.
+     * 
+     * @param sourceFiles
+     *            the source files.
+     * @return {@code true} if an error occurred while compiling any of the 
+     *         units and {@code false} otherwise.
+     */
+
+    private static boolean compileConcurrently(ArrayList<String> sourceFiles) {
+        boolean errorHasOccurred = false;
+        PrintStream stdout = System.out;
+        PrintStream stderr = System.err;
+        PerThreadOutputStream out = new PerThreadOutputStream(stdout);
+        PerThreadOutputStream err = new PerThreadOutputStream(stderr);
+        System.setOut(new PrintStream(out, true));
+        System.setErr(new PrintStream(err, true));
+        ExecutorService pool = Executors.newFixedThreadPool(threads,
+                CompilerThread.factory("j-- compiler"));
+        try {
+            ArrayList<CompilationTask> tasks = new ArrayList<CompilationTask>();
+            ArrayList<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (String sourceFile : sourceFiles) {
+                CompilationTask task = new CompilationTask(sourceFile, out, 
+                        err);
+                tasks.add(task);
+                results.add(pool.submit(task));
+            }
+            for (int i = 0; i < tasks.size(); i++) {
+                CompilationTask task = tasks.get(i);
+                boolean error = result(results.get(i));
+                byte[] bytes = task.output();
+                stdout.write(bytes, 0, bytes.length);
+                stdout.flush();
+                bytes = task.errors();
+                stderr.write(bytes, 0, bytes.length);
+                stderr.flush();
+                if (jar != null && !error) {
+                    error = addToJar(sourceFiles.get(i), task.classes());
+                }
+                errorHasOccurred |= error;
+            }
+        } finally {
+            pool.shutdownNow();
+            System.setOut(stdout);
+            System.setErr(stderr);
+        }
+        return errorHasOccurred;
+    }
+
+    /**
+     * Waits for the specified compilation task to end, and returns its
+     * result. An exception thrown by the task is thrown again.
+     * 
+     * @param result
+     *            the pending result of the task.
+     * @return {@code true} if an error occurred while compiling the unit and
+     *         {@code false} otherwise.
+     */
+
+    private static boolean result(Future<Boolean> result) {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (RuntimeException) cause;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return true;
+        }
+    }
+
+    /**
+     * Compiles a single source file (compilation unit) according to the 
+     * options parsed by {@code main}. An internal error in the compiler is
+     * reported as an error in the unit.
+     * 
+     * @param sourceFile
+     *            the source file.
+     * @return {@code true} if an error occurred while compiling the unit and
+     *         {@code false} otherwise.
+     */
+
+    static boolean compile(String sourceFile) {
+        return compile(sourceFile, null);
+    }
+
+    /**
+     * Compiles a single source file (compilation unit) according to the 
+     * options parsed by {@code main}, holding the classes bound for the jar,
+     * if any, instead of adding them to it.
+     * 
+     * @param sourceFile
+     *            the source file.
+     * @param jarClasses
+     *            where to hold the classes bound for the jar, or {@code null}
+     *            to add them to it.
+     * @return {@code true} if an error occurred while compiling the unit and
+     *         {@code false} otherwise.
+     */
+
+    static boolean compile(String sourceFile, Map<String, byte[]> jarClasses) {
+        boolean errorHasOccurred;
+        if (!statsFormat.equals("")) {
+            Stats.begin(sourceFile);
+        }
+
+        // A program to be run is compiled in memory, each unit seeing the 
+        // classes of those compiled before it
+        ClassLoader libraryLoader = Type.libraryLoader();
+        CLPath path = Type.libraryPath();
+        if (libraryPath != null) {
+            Type.setLibraryPath(libraryPath);
+        }
+        if (runClasses != null) {
+            Type.setLibraryLoader(new MemoryClassLoader(runClasses, 
+                    Main.class.getClassLoader()));
+        } else if (watchLoader != null) {
+            Type.setLibraryLoader(watchLoader);
+        }
+        try {
+            errorHasOccurred = compileUnit(sourceFile, jarClasses);
+        } catch (RuntimeException e) {
+            System.err.println("Error: internal compiler error while "
+                    + "compiling " + sourceFile);
+            e.printStackTrace();
+            errorHasOccurred = true;
+        }
+        Type.setLibraryLoader(libraryLoader);
+        Type.setLibraryPath(path);
+        Stats stats = Stats.end();
+        if (stats != null && statsFormat.equals("json")) {
+            stats.writeJson(System.err);
+        } else if (stats != null) {
+            stats.writeText(System.err);
+        }
+
+        // A unit in error must be compiled again next time round
+        if (errorHasOccurred && index != null) {
+            index.forget(sourceFile);
+        }
+        return errorHasOccurred;
+    }
+
+    /**
+     * Compiles a single source file (compilation unit) according to the 
+     * options parsed by {@code main}.
+     * 
+     * @param sourceFile
+     *            the source file.
+     * @param jarClasses
+     *            where to hold the classes bound for the jar, or {@code null}
+     *            to add them to it.
+     * @return {@code true} if an error occurred while compiling the unit and
+     *         {@code false} otherwise.
+     */
+
+    private static boolean compileUnit(String sourceFile, 
+            Map<String, byte[]> jarClasses) {
+        boolean errorHasOccurred = false;
+
+        // Classes bound for a jar are held until the unit is compiled, or
+        // for the caller to add
+        Map<String, byte[]> classes = runClasses;
+        if (jar != null) {
+            classes = jarClasses != null ? jarClasses 
+                    : new LinkedHashMap<String, byte[]>();
+        }
+
+        // If the outputs of the unit are in the build cache, they need not
+        // be generated again
+        String cacheKey = null;
+        if (cache != null) {
+            Measurement m = Stats.start("cache", sourceFile);
+            cacheKey = cache.key(sourceFile, cacheOptions());
+            boolean restored = cacheKey != null
+                    && cache.restore(cacheKey, sourceFile, outputDir,
+                            classes, index);
+            Stats.stop(m);
+            if (restored) {
+                return jar != null && jarClasses == null 
+                        && addToJar(sourceFile, classes);
+            }
+        }
+
         LookaheadScanner scanner = null;
         try {
             scanner = new LookaheadScanner(sourceFile);
         } catch (FileNotFoundException e) {
             System.err.println("Error: file " + sourceFile + " not found.");
-            return;
+            return true;
         }
 
         if (debugOption.equals("-t")) {
             // Just tokenize input and print the tokens to STDOUT
-            TokenInfo token;
+            Measurement m = Stats.start("scan", sourceFile);
             do {
                 scanner.next();
-                token = scanner.token();
-                System.out.printf("%d\t : %s = %s\n", token.line(), token
-                        .tokenRep(), token.image());
-            } while (token.kind() != EOF);
+                System.out.printf("%d\t : %s = %s\n", scanner.line(), scanner
+                        .kind(), scanner.image());
+            } while (scanner.kind() != EOF);
+            Stats.stop(m);
             errorHasOccurred |= scanner.errorHasOccured();
-            return;
+            return errorHasOccurred;
         }
 
-        // Parse input
+        // Parse input (scanning as we go)
+        Measurement m = Stats.start("parse", sourceFile);
         Parser parser = new Parser(scanner);
         JCompilationUnit ast = parser.compilationUnit();
+        Stats.stop(m);
         errorHasOccurred |= parser.errorHasOccurred();
         if (debugOption.equals("-p")) {
             ast.writeToStdOut(new PrettyPrinter());
-            return;
+            return errorHasOccurred;
         }
         if (errorHasOccurred) {
-            return;
+            return errorHasOccurred;
         }
 
-        // Do pre-analysis
+        // Do pre-analysis; the unit being compiled is the current one
+        JAST.setCompilationUnit(ast);
+        m = Stats.start("preAnalyze", sourceFile);
         ast.preAnalyze();
-        errorHasOccurred |= JAST.compilationUnit.errorHasOccurred();
+        Stats.stop(m);
+        errorHasOccurred |= ast.errorHasOccurred();
         if (debugOption.equals("-pa")) {
             ast.writeToStdOut(new PrettyPrinter());
-            return;
+            return errorHasOccurred;
         }
         if (errorHasOccurred) {
-            return;
+            return errorHasOccurred;
         }
 
         // Do analysis
+        m = Stats.start("analyze", sourceFile);
         ast.analyze(null);
-        errorHasOccurred |= JAST.compilationUnit.errorHasOccurred();
+        Stats.stop(m);
+        errorHasOccurred |= ast.errorHasOccurred();
         if (debugOption.equals("-a")) {
             ast.writeToStdOut(new PrettyPrinter());
-            return;
+            return errorHasOccurred;
         }
         if (errorHasOccurred) {
-            return;
+            return errorHasOccurred;
         }
 
         // Generate JVM code
         CLEmitter clEmitter = new CLEmitter(!spimOutput);
         clEmitter.destinationDir(outputDir);
+        if (classes != null) {
+            clEmitter.destinationMap(classes);
+        }
+        m = Stats.start("codegen", sourceFile);
         ast.codegen(clEmitter);
+        Stats.stop(m);
         errorHasOccurred |= clEmitter.errorHasOccurred();
         if (errorHasOccurred) {
-            return;
+            return errorHasOccurred;
         }
 
         // If SPIM output was asked for, convert the in-memory
         // JVM instructions to SPIM using the specified register
         // allocation scheme.
+        String spimFile = null;
+        ByteArrayOutputStream listing = null;
         if (spimOutput) {
-            NEmitter nEmitter = new NEmitter(sourceFile, ast.clFiles(),
-                    registerAllocation);
-            nEmitter.destinationDir(outputDir);
-            nEmitter.write();
-            errorHasOccurred |= nEmitter.errorHasOccurred();
+            // The listing written to STDOUT is kept along with the .s file
+            // in the build cache
+            PerThreadOutputStream out = null;
+            if (cacheKey != null) {
+                listing = new ByteArrayOutputStream();
+                out = PerThreadOutputStream.stdout();
+                out.redirect(listing);
+            }
+            m = Stats.start("spim", sourceFile);
+            try {
+                NEmitter nEmitter = new NEmitter(sourceFile, ast.clFiles(),
+                        registerAllocation);
+                nEmitter.destinationDir(outputDir);
+                nEmitter.write();
+                errorHasOccurred |= nEmitter.errorHasOccurred();
+            } finally {
+                if (out != null) {
+                    System.out.flush();
+                    out.redirect(null);
+                    System.out.write(listing.toByteArray(), 0, listing.size());
+                    System.out.flush();
+                }
+            }
+            Stats.stop(m);
+            spimFile = new File(sourceFile).getName().replace(".java", ".s");
+        }
+        if (index != null && !errorHasOccurred) {
+            index.record(sourceFile, ast);
         }
+        if (cacheKey != null && !errorHasOccurred) {
+            cache.store(cacheKey, ast, outputDir, classes, spimFile,
+                    listing == null ? null : listing.toByteArray());
+        }
+        if (jar != null && jarClasses == null && !errorHasOccurred) {
+            errorHasOccurred |= addToJar(sourceFile, classes);
+        }
+        return errorHasOccurred;
+    }
+
+    /**
+     * Adds the classes compiled from a unit to the jar.
+     * 
+     * @param sourceFile
+     *            the source file.
+     * @param classes
+     *            maps binary class names to class files.
+     * @return {@code true} if the classes could not be added and 
+     *         {@code false} otherwise.
+     */
+
+    private static boolean addToJar(String sourceFile, 
+            Map<String, byte[]> classes) {
+        Measurement m = Stats.start("jar", sourceFile);
+        try {
+            jar.add(classes);
+        } catch (IOException e) {
+            System.err.println("Error: cannot add the classes of " 
+                    + sourceFile + " to " + jar.file() + ": " 
+                    + e.getMessage());
+            return true;
+        } finally {
+            Stats.stop(m);
+        }
+        return false;
+    }
+
+    /**
+     * Returns the options (and for SPIM code, the runtime files) that affect
+     * the outputs of a unit, as part of its key in the build cache.
+     * 
+     * @return the options.
+     */
+
+    private static String cacheOptions() {
+        if (!spimOutput) {
+            return "";
+        }
+        String options = "-s " + registerAllocation + " -r "
+                + NPhysicalRegister.MAX_COUNT;
+        for (String lib : NEmitter.RUNTIME) {
+            options += " " + lib + " "
+                    + DependencyIndex.fingerprint(new File(NEmitter
+                            .runtimeFile(lib)));
+        }
+        return options;
     }
 
     /**
@@ -186,7 +939,8 @@ public class Main {
     private static void printUsage(String caller) {
         String usage = "Usage: "
                 + caller
-                + " <options> <source file>\n"
+                + " <options> <source files | @argfiles | -watch <dir>> "
+                + "[-- <program args>]\n"
                 + "Where possible options include:\n"
                 + "  -t  Only tokenize input and print tokens to STDOUT\n"
                 + "  -p  Only parse input and print AST to STDOUT\n"
@@ -196,8 +950,138 @@ public class Main {
                 + "and print AST to STDOUT\n"
                 + "  -s  <naive|linear|graph> Generate SPIM code\n"
                 + "  -r  <num> Max. physical registers (1-18) available for allocation; default = 8\n"
-                + "  -d  <dir> Specify where to place output files; default = .";
+                + "  -d  <dir> Specify where to place output files; default = .\n"
+                + "  -j  <num> Compile up to num source files concurrently; "
+                + "default = 1\n"
+                + "  -stack <num> Stack size (in MB) of the compiler threads; "
+                + "default = 512\n"
+                + "  -run Run the program (the main method of the class named "
+                + "after the first\n"
+                + "      source file) in memory, with the arguments "
+                + "following --\n"
+                + "  -Xstats[:text|:json] Report time and allocation per "
+                + "phase, class and method\n"
+                + "      to STDERR\n"
+                + "  -incremental Compile only the source files that changed, "
+                + "or that depend\n"
+                + "      on a class whose signature changed, since the last "
+                + "compilation\n"
+                + "  -jar <file> Write the class files to a jar file instead "
+                + "of the output\n"
+                + "      directory; with -jar:stored, uncompressed\n"
+                + "  -watch <dir> Compile the source files in dir (instead of "
+                + "those given), then\n"
+                + "      compile them again as they change, until "
+                + "interrupted\n"
+                + "  -cache <dir> Copy the outputs of source files compiled "
+                + "before, with the same\n"
+                + "      options, from the build cache in dir, and keep new "
+                + "outputs there\n"
+                + "  -cachesize <num> Max. size of the build cache in MB; "
+                + "default = 256\n"
+                + "  -cp <path> Compile against the class files on path "
+                + "(directories and jars), and\n"
+                + "      the JDK's, reading only their signatures instead of "
+                + "loading the classes";
         System.out.println(usage);
     }
 
 }
+
+/**
+ * A task compiling one source file (compilation unit) on a pool of compiler
+ * threads (see {@link CompilerThread}). A unit is compiled entirely by the
+ * thread that runs its task, and what the unit writes to STDOUT and STDERR is
+ * captured by the task, as are the classes it compiles for a jar.
+ */
+
+class CompilationTask implements Callable<Boolean> {
+
+    /** The source file. */
+    private String sourceFile;
+
+    /** STDOUT as seen by the compiler threads. */
+    private PerThreadOutputStream out;
+
+    /** STDERR as seen by the compiler threads. */
+    private PerThreadOutputStream err;
+
+    /** What the unit wrote to STDOUT. */
+    private ByteArrayOutputStream output;
+
+    /** What the unit wrote to STDERR. */
+    private ByteArrayOutputStream errors;
+
+    /** The classes compiled for a jar, by binary name. */
+    private Map<String, byte[]> classes;
+
+    /**
+     * Constructs a task for compiling the specified source file.
+     * 
+     * @param sourceFile
+     *            the source file.
+     * @param out
+     *            STDOUT as seen by the compiler threads.
+     * @param err
+     *            STDERR as seen by the compiler threads.
+     */
+
+    public CompilationTask(String sourceFile, PerThreadOutputStream out,
+            PerThreadOutputStream err) {
+        this.sourceFile = sourceFile;
+        this.out = out;
+        this.err = err;
+        output = new ByteArrayOutputStream();
+        errors = new ByteArrayOutputStream();
+        classes = new LinkedHashMap<String, byte[]>();
+    }
+
+    /**
+     * Compiles the source file.
+     * 
+     * @return {@code true} if an error occurred while compiling the unit and
+     *         {@code false} otherwise.
+     */
+
+    public Boolean call() {
+        out.redirect(output);
+        err.redirect(errors);
+        try {
+            return Main.compile(sourceFile, classes);
+        } finally {
+            out.redirect(null);
+            err.redirect(null);
+        }
+    }
+
+    /**
+     * Returns what the unit wrote to STDOUT.
+     * 
+     * @return the bytes written.
+     */
+
+    public byte[] output() {
+        return output.toByteArray();
+    }
+
+    /**
+     * Returns what the unit wrote to STDERR.
+     * 
+     * @return the bytes written.
+     */
+
+    public byte[] errors() {
+        return errors.toByteArray();
+    }
+
+    /**
+     * Returns the classes the unit compiled for a jar.
+     * 
+     * @return maps binary class names to class files.
+     */
+
+    public Map<String, byte[]> classes() {
+        return classes;
+    }
+
+}
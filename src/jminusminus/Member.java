@@ -5,7 +5,12 @@ package jminusminus;
 /**
  * A wrapper for members (eg Fields, Methods, Constructors) in the Java API.
  * Members are used in message expressions, field selections, and new object
- * construction operations.
+ * construction operations. The members of the types declared in the unit
+ * being compiled have no reflected counterpart; they are symbols (see
+ * {@link MethodSymbol}, {@link FieldSymbol} and {@link ConstructorSymbol})
+ * made from their declarations. Nor do those of the library classes read from
+ * class files (see {@link ClassFileType}), which are made from their
+ * descriptors.
  */
 
 abstract class Member {
@@ -37,7 +42,7 @@ abstract class Member {
      */
 
     public boolean isStatic() {
-        return java.lang.reflect.Modifier.isStatic(member().getModifiers());
+        return java.lang.reflect.Modifier.isStatic(modifiers());
     }
 
     /**
@@ -47,7 +52,7 @@ abstract class Member {
      */
 
     public boolean isPublic() {
-        return java.lang.reflect.Modifier.isPublic(member().getModifiers());
+        return java.lang.reflect.Modifier.isPublic(modifiers());
     }
 
     /**
@@ -57,7 +62,7 @@ abstract class Member {
      */
 
     public boolean isProtected() {
-        return java.lang.reflect.Modifier.isProtected(member().getModifiers());
+        return java.lang.reflect.Modifier.isProtected(modifiers());
     }
 
     /**
@@ -67,7 +72,7 @@ abstract class Member {
      */
 
     public boolean isPrivate() {
-        return java.lang.reflect.Modifier.isPrivate(member().getModifiers());
+        return java.lang.reflect.Modifier.isPrivate(modifiers());
     }
 
     /**
@@ -77,7 +82,7 @@ abstract class Member {
      */
 
     public boolean isAbstract() {
-        return java.lang.reflect.Modifier.isAbstract(member().getModifiers());
+        return java.lang.reflect.Modifier.isAbstract(modifiers());
     }
 
     /**
@@ -90,13 +95,36 @@ abstract class Member {
      */
 
     public boolean isFinal() {
-        return java.lang.reflect.Modifier.isFinal(member().getModifiers());
+        return java.lang.reflect.Modifier.isFinal(modifiers());
+    }
+
+    /**
+     * Was this member generated by the compiler of its class, rather than
+     * declared in the source (a bridge method, for example)?
+     * 
+     * @return is the member synthetic?
+     */
+
+    public boolean isSynthetic() {
+        return (modifiers() & CLConstants.ACC_SYNTHETIC) != 0;
+    }
+
+    /**
+     * Returns the modifiers the member has been declared with, as encoded by
+     * {@link java.lang.reflect.Modifier}.
+     * 
+     * @return the modifiers.
+     */
+
+    protected int modifiers() {
+        return member().getModifiers();
     }
 
     /**
      * Returns the member's internal representation.
      * 
-     * @return the internal representation.
+     * @return the internal representation, or {@code null} for a member of a
+     *         type declared in the unit being compiled.
      */
 
     protected abstract java.lang.reflect.Member member();
@@ -164,6 +192,43 @@ class Method extends Member {
         return Type.typeFor(method.getReturnType());
     }
 
+    /**
+     * Returns the types of the method's formal parameters.
+     * 
+     * @return the parameter types.
+     */
+
+    public Type[] parameterTypes() {
+        Class<?>[] classes = method.getParameterTypes();
+        Type[] types = new Type[classes.length];
+        for (int i = 0; i < classes.length; i++) {
+            types[i] = Type.typeFor(classes[i]);
+        }
+        return types;
+    }
+
+    /**
+     * Returns the descriptors of the method's parameter types, one after the
+     * other (see {@link Type#parametersFor(Class[])}).
+     * 
+     * @return the joined descriptors.
+     */
+
+    public String parameters() {
+        return Type.parametersFor(method.getParameterTypes());
+    }
+
+    /**
+     * Is this a bridge method, generated by the compiler of its class to stand
+     * in for another?
+     * 
+     * @return is the method a bridge?
+     */
+
+    public boolean isBridge() {
+        return (modifiers() & CLConstants.ACC_BRIDGE) != 0;
+    }
+
     /**
      * Method equality is defined HERE as having override-equivalent signatures.
      * 
@@ -173,8 +238,7 @@ class Method extends Member {
      */
 
     public boolean equals(Method that) {
-        return Type.argTypesMatch(this.method.getParameterTypes(), that.method
-                .getParameterTypes());
+        return this.parameters().equals(that.parameters());
     }
 
     /**
@@ -264,6 +328,32 @@ class Constructor extends Member {
         return descriptor;
     }
 
+    /**
+     * Returns the types of the constructor's formal parameters.
+     * 
+     * @return the parameter types.
+     */
+
+    public Type[] parameterTypes() {
+        Class<?>[] classes = constructor.getParameterTypes();
+        Type[] types = new Type[classes.length];
+        for (int i = 0; i < classes.length; i++) {
+            types[i] = Type.typeFor(classes[i]);
+        }
+        return types;
+    }
+
+    /**
+     * Returns the descriptors of the constructor's parameter types, one after
+     * the other (see {@link Type#parametersFor(Class[])}).
+     * 
+     * @return the joined descriptors.
+     */
+
+    public String parameters() {
+        return Type.parametersFor(constructor.getParameterTypes());
+    }
+
     /**
      * Returns the type declaring this constructor.
      * 
@@ -283,3 +373,600 @@ class Constructor extends Member {
     }
 
 }
+
+/**
+ * A method of a type declared in the unit being compiled, as declared by its
+ * header (there being no reflected method for it until the type's class is
+ * generated).
+ */
+
+class MethodSymbol extends Method {
+
+    /** The declaring type. */
+    private Type declaringType;
+
+    /** Modifiers (see {@link java.lang.reflect.Modifier}). */
+    private int modifiers;
+
+    /** The method's name. */
+    private String name;
+
+    /** Types of the formal parameters. */
+    private Type[] parameterTypes;
+
+    /** The return type. */
+    private Type returnType;
+
+    /**
+     * Constructs a MethodSymbol.
+     * 
+     * @param declaringType
+     *            the declaring type.
+     * @param modifiers
+     *            the modifiers.
+     * @param name
+     *            the method's name.
+     * @param parameterTypes
+     *            types of the formal parameters.
+     * @param returnType
+     *            the return type.
+     */
+
+    public MethodSymbol(Type declaringType, int modifiers, String name,
+            Type[] parameterTypes, Type returnType) {
+        super(null);
+        this.declaringType = declaringType;
+        this.modifiers = modifiers;
+        this.name = name;
+        this.parameterTypes = parameterTypes;
+        this.returnType = returnType;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type declaringType() {
+        return declaringType;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String toDescriptor() {
+        return "(" + parameters() + ")" + returnType.toDescriptor();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String toString() {
+        String str = name + "(";
+        for (Type paramType : parameterTypes) {
+            str += paramType.toString();
+        }
+        str += ")";
+        return str;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type returnType() {
+        return returnType;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type[] parameterTypes() {
+        return parameterTypes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String parameters() {
+        return Type.parametersFor(parameterTypes);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    protected int modifiers() {
+        return modifiers;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    protected java.lang.reflect.Member member() {
+        return null;
+    }
+
+}
+
+/**
+ * A field of a type declared in the unit being compiled, as declared.
+ */
+
+class FieldSymbol extends Field {
+
+    /** The declaring type. */
+    private Type declaringType;
+
+    /** Modifiers (see {@link java.lang.reflect.Modifier}). */
+    private int modifiers;
+
+    /** The field's name. */
+    private String name;
+
+    /** The field's type. */
+    private Type type;
+
+    /**
+     * Constructs a FieldSymbol.
+     * 
+     * @param declaringType
+     *            the declaring type.
+     * @param modifiers
+     *            the modifiers.
+     * @param name
+     *            the field's name.
+     * @param type
+     *            the field's type.
+     */
+
+    public FieldSymbol(Type declaringType, int modifiers, String name,
+            Type type) {
+        super(null);
+        this.declaringType = declaringType;
+        this.modifiers = modifiers;
+        this.name = name;
+        this.type = type;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type declaringType() {
+        return declaringType;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type type() {
+        return type;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    protected int modifiers() {
+        return modifiers;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    protected java.lang.reflect.Member member() {
+        return null;
+    }
+
+}
+
+/**
+ * A constructor of a type declared in the unit being compiled, as declared.
+ */
+
+class ConstructorSymbol extends Constructor {
+
+    /** The declaring type. */
+    private Type declaringType;
+
+    /** Modifiers (see {@link java.lang.reflect.Modifier}). */
+    private int modifiers;
+
+    /** Types of the formal parameters. */
+    private Type[] parameterTypes;
+
+    /**
+     * Constructs a ConstructorSymbol.
+     * 
+     * @param declaringType
+     *            the declaring type.
+     * @param modifiers
+     *            the modifiers.
+     * @param parameterTypes
+     *            types of the formal parameters.
+     */
+
+    public ConstructorSymbol(Type declaringType, int modifiers,
+            Type[] parameterTypes) {
+        super(null);
+        this.declaringType = declaringType;
+        this.modifiers = modifiers;
+        this.parameterTypes = parameterTypes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String name() {
+        return declaringType.toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type declaringType() {
+        return declaringType;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String toDescriptor() {
+        return "(" + parameters() + ")V";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type[] parameterTypes() {
+        return parameterTypes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String parameters() {
+        return Type.parametersFor(parameterTypes);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    protected int modifiers() {
+        return modifiers;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    protected java.lang.reflect.Member member() {
+        return null;
+    }
+
+}
+
+/**
+ * A method of a library class read from its class file, as described there.
+ * The types in its descriptor are only looked up when asked for.
+ */
+
+class ClassFileMethod extends Method {
+
+    /** The declaring type. */
+    private Type declaringType;
+
+    /** Modifiers (the access flags in the class file). */
+    private int modifiers;
+
+    /** The method's name. */
+    private String name;
+
+    /** The method's descriptor. */
+    private String descriptor;
+
+    /**
+     * Constructs a ClassFileMethod.
+     * 
+     * @param declaringType
+     *            the declaring type.
+     * @param modifiers
+     *            the modifiers.
+     * @param name
+     *            the method's name.
+     * @param descriptor
+     *            the method's descriptor.
+     */
+
+    public ClassFileMethod(Type declaringType, int modifiers, String name,
+            String descriptor) {
+        super(null);
+        this.declaringType = declaringType;
+        this.modifiers = modifiers;
+        this.name = name;
+        this.descriptor = descriptor;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type declaringType() {
+        return declaringType;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String toDescriptor() {
+        return descriptor;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String toString() {
+        String str = name + "(";
+        for (Type paramType : parameterTypes()) {
+            str += paramType.toString();
+        }
+        str += ")";
+        return str;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type returnType() {
+        return Type.typeForDescriptor(descriptor.substring(descriptor
+                .indexOf(')') + 1));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type[] parameterTypes() {
+        return Type.typesForParameters(parameters());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String parameters() {
+        return descriptor.substring(1, descriptor.indexOf(')'));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    protected int modifiers() {
+        return modifiers;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    protected java.lang.reflect.Member member() {
+        return null;
+    }
+
+}
+
+/**
+ * A field of a library class read from its class file, as described there.
+ */
+
+class ClassFileField extends Field {
+
+    /** The declaring type. */
+    private Type declaringType;
+
+    /** Modifiers (the access flags in the class file). */
+    private int modifiers;
+
+    /** The field's name. */
+    private String name;
+
+    /** The field's descriptor. */
+    private String descriptor;
+
+    /**
+     * Constructs a ClassFileField.
+     * 
+     * @param declaringType
+     *            the declaring type.
+     * @param modifiers
+     *            the modifiers.
+     * @param name
+     *            the field's name.
+     * @param descriptor
+     *            the field's descriptor.
+     */
+
+    public ClassFileField(Type declaringType, int modifiers, String name,
+            String descriptor) {
+        super(null);
+        this.declaringType = declaringType;
+        this.modifiers = modifiers;
+        this.name = name;
+        this.descriptor = descriptor;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type declaringType() {
+        return declaringType;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type type() {
+        return Type.typeForDescriptor(descriptor);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    protected int modifiers() {
+        return modifiers;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    protected java.lang.reflect.Member member() {
+        return null;
+    }
+
+}
+
+/**
+ * A constructor of a library class read from its class file, as described
+ * there.
+ */
+
+class ClassFileConstructor extends Constructor {
+
+    /** The declaring type. */
+    private Type declaringType;
+
+    /** Modifiers (the access flags in the class file). */
+    private int modifiers;
+
+    /** The constructor's descriptor. */
+    private String descriptor;
+
+    /**
+     * Constructs a ClassFileConstructor.
+     * 
+     * @param declaringType
+     *            the declaring type.
+     * @param modifiers
+     *            the modifiers.
+     * @param descriptor
+     *            the constructor's descriptor.
+     */
+
+    public ClassFileConstructor(Type declaringType, int modifiers,
+            String descriptor) {
+        super(null);
+        this.declaringType = declaringType;
+        this.modifiers = modifiers;
+        this.descriptor = descriptor;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String name() {
+        return declaringType.toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type declaringType() {
+        return declaringType;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String toDescriptor() {
+        return descriptor;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type[] parameterTypes() {
+        return Type.typesForParameters(parameters());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String parameters() {
+        return descriptor.substring(1, descriptor.indexOf(')'));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    protected int modifiers() {
+        return modifiers;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    protected java.lang.reflect.Member member() {
+        return null;
+    }
+
+}
@@ -380,22 +380,22 @@ class NControlFlowGraph {
     private HashMap<Integer, NBasicBlock> pcToBasicBlock;
 
     /** block identifier. */
-    public static int blockId;
+    public int blockId;
 
     /** HIR instruction identifier. */
-    public static int hirId;
+    public int hirId;
 
     /** HIR instruction identifier. */
-    public static int lirId;
+    public int lirId;
 
     /** Virtual register identifier. */
-    public static int regId;
+    public int regId;
 
     /** Stack offset counter.. */
     public int offset;
 
     /** Loop identifier. */
-    public static int loopIndex;
+    public int loopIndex;
 
     /** Name of the method this cfg corresponds to. */
     public String name;
@@ -693,7 +693,7 @@ class NControlFlowGraph {
             block.isLoopHead = true;
             pred.isLoopTail = true;
             block.bwdBranches++;
-            block.loopIndex = NControlFlowGraph.loopIndex++;
+            block.loopIndex = loopIndex++;
         }
     }
 
@@ -1472,7 +1472,7 @@ class NControlFlowGraph {
                 args.add(a.locals[i]);
                 args.add(b.locals[i]);
                 NHIRInstruction ins = new NHIRPhiFunction(a,
-                        NControlFlowGraph.hirId++, args, i);
+                        a.cfg.hirId++, args, i);
                 a.locals[i] = ins.id;
                 a.hir.add(ins.id);
                 a.cfg.hirMap.put(ins.id, ins);
@@ -13,7 +13,7 @@ import java.io.PrintWriter;
 
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 
 /**
  * A class for generating native SPIM code.
@@ -26,9 +26,14 @@ public class NEmitter {
 
     /**
      * Map of maps, one per class in the compilation unit. Each one of them maps
-     * methods in a class to their control flow graph.
+     * methods in a class to their control flow graph. Both preserve 
+     * declaration order, so that the SPIM output is deterministic.
      */
-    private HashMap<CLFile, HashMap<CLMethodInfo, NControlFlowGraph>> classes;
+    private LinkedHashMap<CLFile, 
+                          LinkedHashMap<CLMethodInfo, NControlFlowGraph>> classes;
+
+    /** SPIM runtime code appended to the output; just SPIM.s for now. */
+    static final String[] RUNTIME = { "SPIM.s" };
 
     /** Destination directory for the native SPIM code. */
     private String destDir;
@@ -53,11 +58,12 @@ public class NEmitter {
     public NEmitter(String sourceFile, ArrayList<CLFile> clFiles, String ra) {
         this.sourceFile = sourceFile.substring(sourceFile
                 .lastIndexOf(File.separator) + 1);
-        classes = new HashMap<CLFile, HashMap<CLMethodInfo, NControlFlowGraph>>();
+        classes = new LinkedHashMap<CLFile, 
+                LinkedHashMap<CLMethodInfo, NControlFlowGraph>>();
         for (CLFile clFile : clFiles) {
             CLConstantPool cp = clFile.constantPool;
-            HashMap<CLMethodInfo, NControlFlowGraph> methods = 
-                                    new HashMap<CLMethodInfo, NControlFlowGraph>();
+            LinkedHashMap<CLMethodInfo, NControlFlowGraph> methods = 
+                              new LinkedHashMap<CLMethodInfo, NControlFlowGraph>();
 
             for (int i = 0; i < clFile.methodsCount; i++) {
                 CLMethodInfo m = clFile.methods.get(i);
@@ -66,6 +72,10 @@ public class NEmitter {
                 // Each block in the cfg, at the end of this step,
                 // has the JVM bytecode translated into tuple
                 // representation.
+                Measurement measurement = Stats.start("spim",
+                        new String(((CLConstantUtf8Info) cp.cpItem(m.nameIndex)).b)
+                        + new String(((CLConstantUtf8Info) cp
+                                .cpItem(m.descriptorIndex)).b));
                 NControlFlowGraph cfg = new NControlFlowGraph(cp, m);
 
                 // Write the tuples in cfg to STDOUT.
@@ -148,6 +158,7 @@ public class NEmitter {
 
                     regAllocator.writeSetsToStdOut(p);
                 }
+                Stats.stop(measurement);
             }
 
             // Store the cfgs for the methods in this class in a map.
@@ -195,7 +206,7 @@ public class NEmitter {
 
             // Translate classes and their methods to SPIM.
             for (CLFile clFile : classes.keySet()) {
-                HashMap<CLMethodInfo, NControlFlowGraph> aClass = classes
+                LinkedHashMap<CLMethodInfo, NControlFlowGraph> aClass = classes
                         .get(clFile);
                 CLConstantPool cp = clFile.constantPool;
                 int nameIndex = ((CLConstantClassInfo) cp
@@ -246,12 +257,10 @@ public class NEmitter {
                 }
             }
 
-            // Emit SPIM runtime code; just SPIM.s for now.
-            String[] libs = { "SPIM.s" };
+            // Emit SPIM runtime code
             out.printf("# SPIM Runtime\n\n");
-            for (String lib : libs) {
-                file = System.getenv("j") + File.separator + "src"
-                        + File.separator + "spim" + File.separator + lib;
+            for (String lib : RUNTIME) {
+                file = runtimeFile(lib);
                 BufferedReader in = new BufferedReader(new FileReader(file));
                 String line;
                 while ((line = in.readLine()) != null) {
@@ -268,6 +277,21 @@ public class NEmitter {
         }
     }
 
+    /**
+     * Returns the path of the specified SPIM runtime file, which is found 
+     * under the j-- installation directory (the {@code j} environment 
+     * variable).
+     * 
+     * @param lib
+     *            name of the runtime file.
+     * @return the path.
+     */
+
+    static String runtimeFile(String lib) {
+        return System.getenv("j") + File.separator + "src" + File.separator
+                + "spim" + File.separator + lib;
+    }
+
     /**
      * Report any error that occurs while creating/writing the spim file, to
      * STDERR.
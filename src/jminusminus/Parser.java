@@ -28,6 +28,38 @@ public class Parser {
     /** Whether we have recovered from a parser error. */
     private boolean isRecovered;
 
+    /** Precedences of the binary operators, from lowest to highest. */
+    private final static int LOGICAL_OR = 1, LOGICAL_AND = 2, 
+            INCLUSIVE_OR = 3, EXCLUSIVE_OR = 4, BITWISE_AND = 5, EQUALITY = 6,
+            RELATIONAL = 7, SHIFT = 8, ADDITIVE = 9, MULTIPLICATIVE = 10;
+
+    /** Precedence of each token kind as a binary operator (0 if none). */
+    private final static int[] PRECEDENCE = 
+        new int[TokenKind.values().length];
+
+    static {
+        PRECEDENCE[LOR.ordinal()] = LOGICAL_OR;
+        PRECEDENCE[LAND.ordinal()] = LOGICAL_AND;
+        PRECEDENCE[INCL.ordinal()] = INCLUSIVE_OR;
+        PRECEDENCE[EXCL.ordinal()] = EXCLUSIVE_OR;
+        PRECEDENCE[AND.ordinal()] = BITWISE_AND;
+        PRECEDENCE[EQUAL.ordinal()] = EQUALITY;
+        PRECEDENCE[NOTEQUAL.ordinal()] = EQUALITY;
+        PRECEDENCE[GT.ordinal()] = RELATIONAL;
+        PRECEDENCE[LE.ordinal()] = RELATIONAL;
+        PRECEDENCE[GE.ordinal()] = RELATIONAL;
+        PRECEDENCE[LT.ordinal()] = RELATIONAL;
+        PRECEDENCE[INSTANCEOF.ordinal()] = RELATIONAL;
+        PRECEDENCE[LS.ordinal()] = SHIFT;
+        PRECEDENCE[RS.ordinal()] = SHIFT;
+        PRECEDENCE[LRS.ordinal()] = SHIFT;
+        PRECEDENCE[PLUS.ordinal()] = ADDITIVE;
+        PRECEDENCE[MINUS.ordinal()] = ADDITIVE;
+        PRECEDENCE[STAR.ordinal()] = MULTIPLICATIVE;
+        PRECEDENCE[DIV.ordinal()] = MULTIPLICATIVE;
+        PRECEDENCE[REM.ordinal()] = MULTIPLICATIVE;
+    }
+
     /**
      * Constructs a parser from the given lexical analyzer.
      * 
@@ -65,7 +97,7 @@ public class Parser {
      */
 
     private boolean see(TokenKind sought) {
-        return (sought == scanner.token().kind());
+        return (sought == scanner.kind());
     }
 
     /**
@@ -102,13 +134,13 @@ public class Parser {
      */
 
     private void mustBe(TokenKind sought) {
-        if (scanner.token().kind() == sought) {
+        if (scanner.kind() == sought) {
             scanner.next();
             isRecovered = true;
         } else if (isRecovered) {
             isRecovered = false;
-            reportParserError("%s found where %s sought", scanner.token()
-                    .image(), sought.image());
+            reportParserError("%s found where %s sought", scanner.image(),
+                    sought.image());
         } else {
             // Do not report the (possibly spurious) error,
             // but rather attempt to recover by forcing a match.
@@ -152,7 +184,7 @@ public class Parser {
         isInError = true;
         isRecovered = false;
         System.err
-                .printf("%s:%d: ", scanner.fileName(), scanner.token().line());
+                .printf("%s:%d: ", scanner.fileName(), scanner.line());
         System.err.printf(message, args);
         System.err.println();
     }
@@ -189,39 +221,39 @@ public class Parser {
 
     private boolean seeCast() {
         scanner.recordPosition();
+        boolean result = scanCast();
+        scanner.returnToPosition();
+        return result;
+    }
+
+    /**
+     * Scans what might be the start of a cast, in lookahead.
+     * 
+     * @return true iff it is the start of a cast; false otherwise.
+     */
+
+    private boolean scanCast() {
         if (!have(LPAREN)) {
-            scanner.returnToPosition();
             return false;
         }
         if (seeBasicType()) {
-            scanner.returnToPosition();
             return true;
         }
-        if (!see(IDENTIFIER)) {
-            scanner.returnToPosition();
+        if (!have(IDENTIFIER)) {
             return false;
-        } else {
-            scanner.next(); // Scan the IDENTIFIER
-            // A qualified identifier is ok
-            while (have(DOT)) {
-                if (!have(IDENTIFIER)) {
-                    scanner.returnToPosition();
-                    return false;
-                }
+        }
+        // A qualified identifier is ok
+        while (have(DOT)) {
+            if (!have(IDENTIFIER)) {
+                return false;
             }
         }
         while (have(LBRACK)) {
             if (!have(RBRACK)) {
-                scanner.returnToPosition();
                 return false;
             }
         }
-        if (!have(RPAREN)) {
-            scanner.returnToPosition();
-            return false;
-        }
-        scanner.returnToPosition();
-        return true;
+        return have(RPAREN);
     }
 
     /**
@@ -239,37 +271,45 @@ public class Parser {
 
     private boolean seeLocalVariableDeclaration() {
         scanner.recordPosition();
+        boolean result = scanLocalVariableDeclaration();
+        scanner.returnToPosition();
+        return result;
+    }
+
+    /**
+     * Scans what might be the start of a local variable declaration, in 
+     * lookahead.
+     * 
+     * @return true iff it is the start of a local variable declaration; false
+     *         otherwise.
+     */
+
+    private boolean scanLocalVariableDeclaration() {
         if (have(IDENTIFIER)) {
             // A qualified identifier is ok
             while (have(DOT)) {
                 if (!have(IDENTIFIER)) {
-                    scanner.returnToPosition();
                     return false;
                 }
             }
         } else if (seeBasicType()) {
             scanner.next();
         } else {
-            scanner.returnToPosition();
             return false;
         }
         while (have(LBRACK)) {
             if (!have(RBRACK)) {
-                scanner.returnToPosition();
                 return false;
             }
         }
         if (!have(IDENTIFIER)) {
-            scanner.returnToPosition();
             return false;
         }
         while (have(LBRACK)) {
             if (!have(RBRACK)) {
-                scanner.returnToPosition();
                 return false;
             }
         }
-        scanner.returnToPosition();
         return true;
     }
 
@@ -302,18 +342,23 @@ public class Parser {
     private boolean seeReferenceType() {
         if (see(IDENTIFIER)) {
             return true;
-        } else {
-            scanner.recordPosition();
-            if (have(BOOLEAN) || have(CHAR) || have(INT) ||
-                have(LONG) || have(DOUBLE)) {
-                if (have(LBRACK) && see(RBRACK)) {
-                    scanner.returnToPosition();
-                    return true;
-                }
-            }
-            scanner.returnToPosition();
         }
-        return false;
+        scanner.recordPosition();
+        boolean result = scanBasicArrayType();
+        scanner.returnToPosition();
+        return result;
+    }
+
+    /**
+     * Scans what might be the start of an array type with basic elements, 
+     * in lookahead.
+     * 
+     * @return true iff it is; false otherwise.
+     */
+
+    private boolean scanBasicArrayType() {
+        return (have(BOOLEAN) || have(CHAR) || have(INT) || have(LONG) 
+                || have(DOUBLE)) && have(LBRACK) && see(RBRACK);
     }
 
     /**
@@ -324,11 +369,21 @@ public class Parser {
 
     private boolean seeDims() {
         scanner.recordPosition();
-        boolean result = have(LBRACK) && see(RBRACK);
+        boolean result = scanDims();
         scanner.returnToPosition();
         return result;
     }
 
+    /**
+     * Scans what might be a [] pair, in lookahead.
+     * 
+     * @return true iff it is; false otherwise.
+     */
+
+    private boolean scanDims() {
+        return have(LBRACK) && see(RBRACK);
+    }
+
     // ////////////////////////////////////////////////
     // Parser Proper /////////////////////////////////
     // ////////////////////////////////////////////////
@@ -348,7 +403,7 @@ public class Parser {
      */
 
     public JCompilationUnit compilationUnit() {
-        int line = scanner.token().line();
+        int line = scanner.line();
         TypeName packageName = null; // Default
         if (have(PACKAGE)) {
             packageName = qualifiedIdentifier();
@@ -367,6 +422,7 @@ public class Parser {
             }
         }
         mustBe(EOF);
+        Stats.count("lookahead tokens scanned", scanner.lookaheadTokens());
         return new JCompilationUnit(scanner.fileName(),
                                     line, packageName,
                                     imports, typeDeclarations);
@@ -383,12 +439,12 @@ public class Parser {
      */
 
     private TypeName qualifiedIdentifier() {
-        int line = scanner.token().line();
+        int line = scanner.line();
         mustBe(IDENTIFIER);
-        String qualifiedIdentifier = scanner.previousToken().image();
+        String qualifiedIdentifier = scanner.previousImage();
         while (have(DOT)) {
             mustBe(IDENTIFIER);
-            qualifiedIdentifier += "." + scanner.previousToken().image();
+            qualifiedIdentifier += "." + scanner.previousImage();
         }
         return new TypeName(line, qualifiedIdentifier);
     }
@@ -500,11 +556,11 @@ public class Parser {
      */
 
     private JClassDeclaration classDeclaration(ArrayList<String> mods) {
-        int line = scanner.token().line();
+        int line = scanner.line();
          ArrayList<TypeName> list = new ArrayList<TypeName>();
         mustBe(CLASS);
         mustBe(IDENTIFIER);
-        String name = scanner.previousToken().image();
+        String name = scanner.previousImage();
         Type superClass;
         if (have(EXTENDS)) {
             superClass = qualifiedIdentifier();
@@ -525,11 +581,11 @@ public class Parser {
 //*** interface body
 ////////
     private JInterfaceDeclaration interfaceDeclaration(ArrayList<String> mods) {
-        int line = scanner.token().line();
+        int line = scanner.line();
         mustBe(INTERFACE);
         mustBe(IDENTIFIER);
         ArrayList<TypeName> list = new ArrayList<TypeName>();
-        String name = scanner.previousToken().image();
+        String name = scanner.previousImage();
            
         if(have(EXTENDS)){
                 do {
@@ -601,13 +657,13 @@ public class Parser {
      */
 
     private JMember memberDecl(ArrayList<String> mods) {
-        int line = scanner.token().line();
+        int line = scanner.line();
         JMember memberDecl = null;
         if (seeIdentLParen()) {
             // A constructor
             
             mustBe(IDENTIFIER);
-            String name = scanner.previousToken().image();
+            String name = scanner.previousImage();
             ArrayList<JFormalParameter> params = formalParameters();
             
             //throws part
@@ -628,7 +684,7 @@ public class Parser {
                 // void method
                 type = Type.VOID;
                 mustBe(IDENTIFIER);
-                String name = scanner.previousToken().image();
+                String name = scanner.previousImage();
                 ArrayList<JFormalParameter> params = formalParameters();
                 //throws part
                  ArrayList<TypeName> list = new ArrayList<TypeName>();
@@ -647,7 +703,7 @@ public class Parser {
                 if (seeIdentLParen()) {
                     // Non void method
                     mustBe(IDENTIFIER);
-                    String name = scanner.previousToken().image();
+                    String name = scanner.previousImage();
                     ArrayList<JFormalParameter> params = formalParameters();
                     //check for throws
                     ArrayList<TypeName> list = new ArrayList<TypeName>();
@@ -675,14 +731,14 @@ public class Parser {
 ////////
 
  private JMember interfaceMemberDecl(ArrayList<String> mods) {
-        int line = scanner.token().line();
+        int line = scanner.line();
         JMember memberDecl = null;
         Type type = null;
             if (have(VOID)) {
                 // void method
                 type = Type.VOID;
                 mustBe(IDENTIFIER);
-                String name = scanner.previousToken().image();
+                String name = scanner.previousImage();
                 ArrayList<JFormalParameter> params = formalParameters();
                 //throws part
                  ArrayList<TypeName> list = new ArrayList<TypeName>();
@@ -699,7 +755,7 @@ public class Parser {
                 if (seeIdentLParen()) {
                     // Non void method
                     mustBe(IDENTIFIER);
-                    String name = scanner.previousToken().image();
+                    String name = scanner.previousImage();
                     ArrayList<JFormalParameter> params = formalParameters();
                     //check for throws
                     ArrayList<TypeName> list = new ArrayList<TypeName>();
@@ -727,7 +783,7 @@ public class Parser {
      */
 
     private JBlock block() {
-        int line = scanner.token().line();
+        int line = scanner.line();
         ArrayList<JStatement> statements = new ArrayList<JStatement>();
         mustBe(LCURLY);
         while (!see(RCURLY) && !see(EOF)) {
@@ -772,7 +828,7 @@ public class Parser {
      */
 
     private JStatement statement() {
-        int line = scanner.token().line();
+        int line = scanner.line();
         
         if (see(LCURLY)) {
             return block();
@@ -949,10 +1005,10 @@ public class Parser {
      */
 
     private JFormalParameter formalParameter() {
-        int line = scanner.token().line();
+        int line = scanner.line();
         Type type = type();
         mustBe(IDENTIFIER);
-        String name = scanner.previousToken().image();
+        String name = scanner.previousImage();
         return new JFormalParameter(line, name, type);
     }
 
@@ -976,7 +1032,7 @@ public class Parser {
     //ForInt
     
     private ArrayList<JStatement> forInit(){
-     int line = scanner.token().line();
+     int line = scanner.line();
     ArrayList <JStatement> stexp = new ArrayList<JStatement>();
      if (seeBasicType() || seeReferenceType()){
      
@@ -1006,7 +1062,7 @@ public class Parser {
     //******
     //SwitchBlockStatementGroup
     private JStatement switchBlockStatementGroup () {
-        int line = scanner.token().line();
+        int line = scanner.line();
         ArrayList<JExpression> switchLabels = new ArrayList<JExpression>();
         ArrayList<JStatement> blockStatement = new ArrayList<JStatement>();
        do {
@@ -1022,7 +1078,7 @@ public class Parser {
     //******
     //Switch Label
     private JExpression switchLabel() {
-        int line = scanner.token().line();
+        int line = scanner.line();
         JExpression caseName;
         if (have (CASE)) {
             caseName = expression();
@@ -1052,7 +1108,7 @@ public class Parser {
      */
 
     private JVariableDeclaration localVariableDeclarationStatement() {
-        int line = scanner.token().line();
+        int line = scanner.line();
         ArrayList<String> mods = new ArrayList<String>();
         ArrayList<JVariableDeclarator> vdecls = variableDeclarators(type());
         mustBe(SEMI);
@@ -1097,9 +1153,9 @@ public class Parser {
      */
 
     private JVariableDeclarator variableDeclarator(Type type) {
-        int line = scanner.token().line();
+        int line = scanner.line();
         mustBe(IDENTIFIER);
-        String name = scanner.previousToken().image();
+        String name = scanner.previousImage();
         JExpression initial = have(ASSIGN) ? variableInitializer(type) : null;
         return new JVariableDeclarator(line, name, type, initial);
     }
@@ -1140,7 +1196,7 @@ public class Parser {
      */
 
     private JArrayInitializer arrayInitializer(Type type) {
-        int line = scanner.token().line();
+        int line = scanner.line();
         ArrayList<JExpression> initials = new ArrayList<JExpression>();
         mustBe(LCURLY);
         if (have(RCURLY)) {
@@ -1218,8 +1274,7 @@ public class Parser {
         } else if (have(DOUBLE)) {
             return Type.DOUBLE;
         }  else {
-            reportParserError("Type sought where %s found", scanner.token()
-                    .image());
+            reportParserError("Type sought where %s found", scanner.image());
             return Type.ANY;
         }
     }
@@ -1265,7 +1320,7 @@ public class Parser {
      */
 
     private JStatement statementExpression() {
-        int line = scanner.token().line();
+        int line = scanner.line();
         JExpression expr = expression();
         if (expr instanceof JAssignment || expr instanceof JPreIncrementOp
                                         || expr instanceof JPostDecrementOp
@@ -1316,7 +1371,7 @@ public class Parser {
      */
 
     private JExpression assignmentExpression() {
-        int line = scanner.token().line();
+        int line = scanner.line();
         JExpression lhs = conditionalExpression();
         if (have(ASSIGN)) {
             return new JAssignOp(line, lhs, assignmentExpression());
@@ -1348,10 +1403,10 @@ public class Parser {
     }
 //conditional 
 private JExpression conditionalExpression() {
-    int line = scanner.token().line();
+    int line = scanner.line();
    String question = "?";
     
-    JExpression condition = conditionalOrExpression(); 
+    JExpression condition = binaryExpression(LOGICAL_OR); 
       if (have(QUESTION)) {
        JExpression trueBranch = assignmentExpression();
          mustBe(COLON);
@@ -1364,265 +1419,123 @@ private JExpression conditionalExpression() {
             }
 }
 
-//Conditional Or
-    private JExpression conditionalOrExpression() {
-        int line = scanner.token().line();
-        boolean more = true;
-        JExpression lhs = conditionalAndExpression();
-        while (more) {
-            if (have(LOR)) {
-                lhs = new JLogicalOrOp(line, lhs, conditionalAndExpression());
-            } else {
-                more = false;
-            }
-        }
-        return lhs;
-}
     /**
-     * Parse a conditional-and expression.
+     * Parse a binary expression whose operators have at least the specified
+     * precedence, by precedence climbing rather than by descending through a
+     * method per level; a chain of operators at the same level is parsed by a
+     * loop, so the depth of recursion is bounded by the number of levels.
      * 
      * <pre>
-     *   conditionalAndExpression ::= equalityExpression // level 10
-     *                                  {LAND equalityExpression}
-     * </pre>
-     * 
-     * @return an AST for a conditionalExpression.
-     */
-     
-
-    private JExpression conditionalAndExpression() {
-        int line = scanner.token().line();
-        boolean more = true;
-        JExpression lhs = inclusiveOrExpression();
-        while (more) {
-            if (have(LAND)) {
-                lhs = new JLogicalAndOp(line, lhs, inclusiveOrExpression());
-            } else {
-                more = false;
-            }
-        }
-        return lhs;
-    }
-    
-    // Inclusive
-    //
-    
-    private JExpression inclusiveOrExpression() {
-        int line = scanner.token().line();
-        boolean more = true;
-        JExpression lhs = exclusiveOrExpression();
-            while (more) {
-            if (have(INCL)) {
-                lhs = new JInclusiveOrOp(line, lhs, exclusiveOrExpression());
-            }
-            else {
-                more = false;
-            }
-        }
-        return lhs;
-    }
-    
-    // Exclusive
-    //
-    private JExpression exclusiveOrExpression() {
-        int line = scanner.token().line();
-        boolean more = true;
-        JExpression lhs = andExpression();
-            while (more) {
-        
-            if (have(EXCL)) {
-                lhs = new JExclusiveOrOp(line, lhs, andExpression());
-            }
-            else {
-                more = false;
-              
-            }
-        }
-        return lhs;
-    }
-    
-    // And
-    //
-    private JExpression andExpression() {
-        int line = scanner.token().line();
-        boolean more = true;
-        JExpression lhs = equalityExpression();
-            while (more) {
-        
-            if (have(AND)) {
-                lhs = new JAndOp(line, lhs, equalityExpression());
-            }
-            else {
-                more = false;
-              
-            }
-        }
-        return lhs;
-    }
-   
-    
-
-    /**
-     * Parse an equality expression.
-     * 
-     * <pre>
-     *   equalityExpression ::= relationalExpression  // level 6
-     *                            {EQUAL relationalExpression}
-     * </pre>
-     * 
-     * @return an AST for an equalityExpression.
-     */
-
-    private JExpression equalityExpression() {
-        int line = scanner.token().line();
-        boolean more = true;
-        JExpression lhs = relationalExpression();
-        while (more) {
-            if (have(EQUAL)) {
-                lhs = new JEqualOp(line, lhs, relationalExpression());
-            } else if (have(NOTEQUAL)) {
-                lhs =new JNotEqualOp(line,lhs, relationalExpression());
-            } else {
-                more = false;
-            }
-        }
-        return lhs;
-    }
-
-    /**
-     * Parse a relational expression.
-     * 
-     * <pre>
-     *   relationalExpression ::= additiveExpression  // level 5
-     *                              [(GT | LE) additiveExpression 
+     *   conditionalOrExpression ::= conditionalAndExpression
+     *                                 {LOR conditionalAndExpression}
+     *   conditionalAndExpression ::= inclusiveOrExpression
+     *                                  {LAND inclusiveOrExpression}
+     *   inclusiveOrExpression ::= exclusiveOrExpression
+     *                               {INCL exclusiveOrExpression}
+     *   exclusiveOrExpression ::= andExpression
+     *                               {EXCL andExpression}
+     *   andExpression ::= equalityExpression
+     *                       {AND equalityExpression}
+     *   equalityExpression ::= relationalExpression
+     *                            {(EQUAL | NOTEQUAL) relationalExpression}
+     *   relationalExpression ::= shiftExpression
+     *                              [(GT | LE | GE | LT) shiftExpression
      *                              | INSTANCEOF referenceType]
+     *   shiftExpression ::= additiveExpression
+     *                         {(LS | RS | LRS) additiveExpression}
+     *   additiveExpression ::= multiplicativeExpression
+     *                            {(PLUS | MINUS) multiplicativeExpression}
+     *   multiplicativeExpression ::= unaryExpression
+     *                                  {(STAR | DIV | REM) unaryExpression}
      * </pre>
      * 
-     * @return an AST for a relationalExpression.
+     * @param minPrecedence
+     *            the least precedence (LOGICAL_OR to MULTIPLICATIVE) of the 
+     *            operators to parse.
+     * @return an AST for a binary expression.
      */
 
-    private JExpression relationalExpression() {
-        int line = scanner.token().line();
-        JExpression lhs = shiftExpression();
-       
-        if (have(GT)) {
-            return new JGreaterThanOp(line, lhs, shiftExpression());
-        } else if (have(LE)) {
-            return new JLessEqualOp(line, lhs, shiftExpression());
-        } else if (have(GE)) {
-            return new JGreaterEqualOp(line, lhs, shiftExpression());
-        }  else if (have(LT)) {
-            return new JLessThanOp(line, lhs, shiftExpression());
-        } else if (have(INSTANCEOF)) {
-            return new JInstanceOfOp(line, lhs, referenceType());
-        } else {
-            return lhs;
-        }
-    }
-    
-    // Shift
-    //
-     private JExpression shiftExpression() {
-        int line = scanner.token().line();
-        boolean more = true;
-        JExpression lhs = additiveExpression();
-            while (more) {
-        
-            if (have(LS)) {
-                lhs = new JLeftShiftOp(line, lhs, additiveExpression());
-                
-            } else if (have(RS)) {
-                lhs = new JRightShiftOp(line, lhs, additiveExpression());
-                
-            } else if (have(LRS)) {
-                lhs = new JLogicalRightShiftOp(line, lhs, additiveExpression());
-            } 
-            else {
-                more = false;
-              
+    private JExpression binaryExpression(int minPrecedence) {
+        int line = scanner.line();
+        JExpression lhs = unaryExpression();
+        int maxPrecedence = MULTIPLICATIVE;
+        while (true) {
+            TokenKind operator = scanner.kind();
+            int precedence = PRECEDENCE[operator.ordinal()];
+            if (precedence < minPrecedence || precedence > maxPrecedence) {
+                return lhs;
             }
-        }
-        return lhs;
-    }
-
-    /**
-     * Parse an additive expression.
-     * 
-     * <pre>
-     *   additiveExpression ::= multiplicativeExpression // level 3
-     *                            {MINUS multiplicativeExpression}
-     * </pre>
-     * 
-     * @return an AST for an additiveExpression.
-     */
-
-    private JExpression additiveExpression() {
-        int line = scanner.token().line();
-        boolean more = true;
-        JExpression lhs = multiplicativeExpression();
-        while (more) {
-            if (have(MINUS)) {
-                lhs = new JSubtractOp(line, lhs, multiplicativeExpression());
-            } else if (have(PLUS)) {
-                lhs = new JPlusOp(line, lhs, multiplicativeExpression());
+            scanner.next();
+            if (operator == INSTANCEOF) {
+                lhs = new JInstanceOfOp(line, lhs, referenceType());
             } else {
-                more = false;
+                lhs = binaryOperation(operator, line, lhs,
+                        binaryExpression(precedence + 1));
             }
+            // An operator of higher precedence can only follow if it was
+            // refused by the operand just parsed; relational operators 
+            // don't associate, so can't follow one another either
+            maxPrecedence = precedence == RELATIONAL ? precedence - 1
+                    : precedence;
         }
-        return lhs;
     }
 
     /**
-     * Parse a multiplicative expression.
+     * Constructs the AST for a binary operation.
      * 
-     * <pre>
-     *   multiplicativeExpression ::= unaryExpression  // level 2
-     *                                  {STAR unaryExpression}
-     * </pre>
-     * 
-     * @return an AST for a multiplicativeExpression.
+     * @param operator
+     *            the operator.
+     * @param line
+     *            line in which the operation occurs in the source file.
+     * @param lhs
+     *            the lhs operand.
+     * @param rhs
+     *            the rhs operand.
+     * @return an AST for the binary operation.
      */
 
-    private JExpression multiplicativeExpression() {
-        int line = scanner . token (). line ();
-        boolean more = true ;
-        JExpression lhs = unaryExpression();
-        while ( more ) {
-            if ( have ( STAR )) {
-            lhs = new JMultiplyOp ( line , lhs ,
-                            unaryExpression());
-            }
-            else if ( have ( DIV )) {
-            lhs = new JDivideOp ( line , lhs ,
-                            unaryExpression());
-            }
-            else if (have (REM)){
-            lhs = new JRemainOp (line, lhs, unaryExpression());
-            }
-            
-            
-        else {
-        more = false ;
-}
-}
-return lhs ;
-    
-    
-    
-    
-    /*
-        int line = scanner.token().line();
-        boolean more = true;
-        JExpression lhs = unaryExpression();
-        while (more) {
-            if (have(STAR)) {
-                lhs = new JMultiplyOp(line, lhs, unaryExpression());
-            } else {
-                more = false;
-            }
+    private JExpression binaryOperation(TokenKind operator, int line,
+            JExpression lhs, JExpression rhs) {
+        switch (operator) {
+        case LOR:
+            return new JLogicalOrOp(line, lhs, rhs);
+        case LAND:
+            return new JLogicalAndOp(line, lhs, rhs);
+        case INCL:
+            return new JInclusiveOrOp(line, lhs, rhs);
+        case EXCL:
+            return new JExclusiveOrOp(line, lhs, rhs);
+        case AND:
+            return new JAndOp(line, lhs, rhs);
+        case EQUAL:
+            return new JEqualOp(line, lhs, rhs);
+        case NOTEQUAL:
+            return new JNotEqualOp(line, lhs, rhs);
+        case GT:
+            return new JGreaterThanOp(line, lhs, rhs);
+        case LE:
+            return new JLessEqualOp(line, lhs, rhs);
+        case GE:
+            return new JGreaterEqualOp(line, lhs, rhs);
+        case LT:
+            return new JLessThanOp(line, lhs, rhs);
+        case LS:
+            return new JLeftShiftOp(line, lhs, rhs);
+        case RS:
+            return new JRightShiftOp(line, lhs, rhs);
+        case LRS:
+            return new JLogicalRightShiftOp(line, lhs, rhs);
+        case PLUS:
+            return new JPlusOp(line, lhs, rhs);
+        case MINUS:
+            return new JSubtractOp(line, lhs, rhs);
+        case STAR:
+            return new JMultiplyOp(line, lhs, rhs);
+        case DIV:
+            return new JDivideOp(line, lhs, rhs);
+        default:
+            return new JRemainOp(line, lhs, rhs);
         }
-        return lhs;
-        */
     }
 
     /**
@@ -1638,7 +1551,7 @@ return lhs ;
      */
 
     private JExpression unaryExpression() {
-        int line = scanner.token().line();
+        int line = scanner.line();
         if (have(INC)) {
             return new JPreIncrementOp(line, unaryExpression());
         } else if (have(DEC)) {
@@ -1670,7 +1583,7 @@ return lhs ;
      */
 
     private JExpression simpleUnaryExpression() {
-        int line = scanner.token().line();
+        int line = scanner.line();
         
        if (have (COMPL)){
         return new JComplementOp (line, unaryExpression());
@@ -1701,7 +1614,7 @@ return lhs ;
      */
 
     private JExpression postfixExpression() {
-        int line = scanner.token().line();
+        int line = scanner.line();
         JExpression primaryExpr = primary();
         while (see(DOT) || see(LBRACK)) {
             primaryExpr = selector(primaryExpr);
@@ -1729,11 +1642,11 @@ return lhs ;
      */
 
     private JExpression selector(JExpression target) {
-        int line = scanner.token().line();
+        int line = scanner.line();
         if (have(DOT)) {
             // Target . selector
             mustBe(IDENTIFIER);
-            String name = scanner.previousToken().image();
+            String name = scanner.previousImage();
             if (see(LPAREN)) {
                 ArrayList<JExpression> args = arguments();
                 return new JMessageExpression(line, target, name, args);
@@ -1766,7 +1679,7 @@ return lhs ;
      */
 
     private JExpression primary() {
-        int line = scanner.token().line();
+        int line = scanner.line();
         if (see(LPAREN)) {
             return parExpression();
         } else if (have(THIS)) {
@@ -1780,7 +1693,7 @@ return lhs ;
                 return new JSuperConstruction(line, arguments());
             } else {
                 mustBe(IDENTIFIER);
-                String name = scanner.previousToken().image();
+                String name = scanner.previousImage();
                 JExpression newTarget = new JSuper(line);
                 if (see(LPAREN)) {
                     return new JMessageExpression(line, newTarget, null, name,
@@ -1825,7 +1738,7 @@ return lhs ;
      */
 
     private JExpression creator() {
-        int line = scanner.token().line();
+        int line = scanner.line();
         Type type = seeBasicType() ? basicType() : qualifiedIdentifier();
         if (see(LPAREN)) {
             ArrayList<JExpression> args = arguments();
@@ -1841,7 +1754,7 @@ return lhs ;
             } else
                 return newArrayDeclarator(line, type);
         } else {
-            reportParserError("( or [ sought where %s found", scanner.token()
+            reportParserError("( or [ sought where %s found", scanner
                     .image());
             return new JWildExpression(line);
         }
@@ -1899,13 +1812,13 @@ return lhs ;
      */
 
     private JExpression literal() {
-        int line = scanner.token().line();
+        int line = scanner.line();
         if (have(INT_LITERAL)) {
-            return new JLiteralInt(line, scanner.previousToken().image());
+            return new JLiteralInt(line, scanner.previousImage());
         } else if (have(CHAR_LITERAL)) {
-            return new JLiteralChar(line, scanner.previousToken().image());
+            return new JLiteralChar(line, scanner.previousImage());
         } else if (have(STRING_LITERAL)) {
-            return new JLiteralString(line, scanner.previousToken().image());
+            return new JLiteralString(line, scanner.previousImage());
         } else if (have(TRUE)) {
             return new JLiteralTrue(line);
         } else if (have(FALSE)) {
@@ -1913,12 +1826,11 @@ return lhs ;
         } else if (have(NULL)) {
             return new JLiteralNull(line);
         } else if (have(DOUBLE_LITERAL)) {
-            return new JLiteralDouble(line, scanner.previousToken().image());
+            return new JLiteralDouble(line, scanner.previousImage());
         } else if (have(LONG_LITERAL)) {
-            return new JLiteralLong(line, scanner.previousToken().image());
+            return new JLiteralLong(line, scanner.previousImage());
         } else {
-            reportParserError("Literal sought where %s found", scanner.token()
-                    .image());
+            reportParserError("Literal sought where %s found", scanner.image());
             return new JWildExpression(line);
         }
     }
@@ -1929,7 +1841,7 @@ return lhs ;
     // private void trace( String message )
     // {
     // System.err.println( "["
-    // + scanner.token().line()
+    // + scanner.line()
     // + ": "
     // + message
     // + ", looking at a: "
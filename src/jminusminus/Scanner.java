@@ -2,12 +2,16 @@
 
 package jminusminus;
 
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.LineNumberReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 
-import java.util.Hashtable;
+import java.util.Arrays;
 
 import static jminusminus.TokenKind.*;
 
@@ -29,11 +33,79 @@ class Scanner {
     public final static char EOFCH = CharReader.EOFCH;
 
     /** Keywords in j--. */
-    private Hashtable<String, TokenKind> reserved;
+    final static TokenKind[] RESERVED_WORDS = { ABSTRACT, BOOLEAN, CHAR, 
+            CLASS, ELSE, EXTENDS, FALSE, IF, IMPORT, INSTANCEOF, INT, NEW, 
+            NULL, PACKAGE, PRIVATE, PROTECTED, PUBLIC, RETURN, STATIC, SUPER,
+            THIS, TRUE, VOID, WHILE,
+            //adding a new rule for new reserved keyword
+            BREAK, CASE, CATCH, CONTINUE, DEFAULT, DO, DOUBLE, FINAL, FINALLY,
+            FOR, IMPLEMENTS, INTERFACE, LONG, SWITCH, THROW, THROWS, TRY };
+
+    /**
+     * Perfect hash table of the keywords: a keyword is at index 
+     * {@code reservedHash} of its characters, and no two keywords share an
+     * index.
+     */
+    private final static TokenKind[] RESERVED_TABLE;
+
+    /** Multiplier of the first character in reservedHash. */
+    private final static int RESERVED_FIRST;
+
+    /** Multiplier of the second character in reservedHash. */
+    private final static int RESERVED_SECOND;
+
+    /** Length of the shortest keyword. */
+    private final static int MIN_RESERVED_LENGTH;
+
+    /** Length of the longest keyword. */
+    private final static int MAX_RESERVED_LENGTH;
+
+    // Build the perfect hash table. The table size and multipliers below were
+    // found by the search that follows, which is run again (at some cost to 
+    // start-up) only if the keywords change and collide under them.
+    static {
+        char[][] images = new char[RESERVED_WORDS.length][];
+        int min = Integer.MAX_VALUE, max = 0;
+        for (int k = 0; k < images.length; k++) {
+            images[k] = RESERVED_WORDS[k].image().toCharArray();
+            min = Math.min(min, images[k].length);
+            max = Math.max(max, images[k].length);
+        }
+        MIN_RESERVED_LENGTH = min;
+        MAX_RESERVED_LENGTH = max;
+        int first = 18, second = 74;
+        TokenKind[] table = reservedTable(images, 128, first, second);
+        search: for (int size = Integer.highestOneBit(
+                2 * images.length - 1); table == null; size *= 2) {
+            for (first = 1; first < size; first++) {
+                for (second = 1; second < size; second++) {
+                    table = reservedTable(images, size, first, second);
+                    if (table != null) {
+                        break search;
+                    }
+                }
+            }
+        }
+        RESERVED_TABLE = table;
+        RESERVED_FIRST = first;
+        RESERVED_SECOND = second;
+    }
 
     /** Source characters. */
     private CharReader input;
 
+    /** The source, as loaded by the CharReader. */
+    private char[] buffer;
+
+    /** Number of characters in the source. */
+    private int limit;
+
+    /** Position of ch in the source (limit at the end of file). */
+    private int position;
+
+    /** Where the tokens go, if not returned as TokenInfo objects. */
+    private TokenStream tokens;
+
     /** Next unscanned character. */
     private char ch;
 
@@ -56,72 +128,85 @@ class Scanner {
      */
 
     public Scanner(String fileName) throws FileNotFoundException {
-        this.input = new CharReader(fileName);
-        this.fileName = fileName;
-        isInError = false;
+        this(new CharReader(fileName));
+    }
+
+    /**
+     * Constructs a Scanner object reading the source from the specified 
+     * reader.
+     * 
+     * @param fileName
+     *            the name by which the source is known (in error messages).
+     * @param source
+     *            the reader supplying the source.
+     */
 
-        // Keywords in j--
-        reserved = new Hashtable<String, TokenKind>();
-        reserved.put(ABSTRACT.image(), ABSTRACT);
-        reserved.put(BOOLEAN.image(), BOOLEAN);
-        reserved.put(CHAR.image(), CHAR);
-        reserved.put(CLASS.image(), CLASS);
-        reserved.put(ELSE.image(), ELSE);
-        reserved.put(EXTENDS.image(), EXTENDS);
-        reserved.put(FALSE.image(), FALSE);
-        reserved.put(IF.image(), IF);
-        reserved.put(IMPORT.image(), IMPORT);
-        reserved.put(INSTANCEOF.image(), INSTANCEOF);
-        reserved.put(INT.image(), INT);
-        reserved.put(NEW.image(), NEW);
-        reserved.put(NULL.image(), NULL);
-        reserved.put(PACKAGE.image(), PACKAGE);
-        reserved.put(PRIVATE.image(), PRIVATE);
-        reserved.put(PROTECTED.image(), PROTECTED);
-        reserved.put(PUBLIC.image(), PUBLIC);
-        reserved.put(RETURN.image(), RETURN);
-        reserved.put(STATIC.image(), STATIC);
-        reserved.put(SUPER.image(), SUPER);
-        reserved.put(THIS.image(), THIS);
-        reserved.put(TRUE.image(), TRUE);
-        reserved.put(VOID.image(), VOID);
-        reserved.put(WHILE.image(), WHILE);
-        //adding a new rule for new reserved keyword
-        reserved.put(BREAK.image(), BREAK);
-        reserved.put(CASE.image(), CASE);
-        reserved.put(CATCH.image(), CATCH);
-        reserved.put(CONTINUE.image(), CONTINUE);
-        reserved.put(DEFAULT.image(), DEFAULT);
-        reserved.put(DO.image(), DO);
-        reserved.put(DOUBLE.image(), DOUBLE);
-        reserved.put(FINAL.image(), FINAL);
-        reserved.put(FINALLY.image(), FINALLY);
-        reserved.put(FOR.image(), FOR);
-        reserved.put(IMPLEMENTS.image(), IMPLEMENTS);
-        reserved.put(INTERFACE.image(), INTERFACE);
-        reserved.put(LONG.image(), LONG);
-        reserved.put(SWITCH.image(), SWITCH);
-        reserved.put(THROW.image(), THROW);
-        reserved.put(THROWS.image(), THROWS);
-        reserved.put(TRY.image(), TRY);
+    public Scanner(String fileName, Reader source) {
+        this(new CharReader(fileName, source));
+    }
+
+    /**
+     * Constructs a Scanner object reading the source from the specified 
+     * CharReader.
+     * 
+     * @param input
+     *            the source characters.
+     */
+
+    private Scanner(CharReader input) {
+        this.input = input;
+        this.fileName = input.fileName();
+        isInError = false;
+        buffer = input.buffer();
+        limit = input.length();
+        position = -1;
+        line = 1;
+        if (input.errorHasOccurred()) {
+            reportScannerError("Unable to read characters from input");
+        }
 
         // Prime the pump.
         nextCh();
     }
 
+    /**
+     * Makes the scanner write the tokens it scans to the specified token 
+     * stream, rather than returning them; {@code getNextToken} then returns 
+     * null.
+     * 
+     * @param tokens
+     *            the token stream.
+     */
+
+    public void streamTo(TokenStream tokens) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * Returns the source characters (those that the token images lie in).
+     * 
+     * @return the source.
+     */
+
+    public char[] source() {
+        return buffer;
+    }
+
     /**
      * Scans the next token from input.
      * 
-     * @return the next scanned token.
+     * @return the next scanned token (null if streaming to a TokenStream).
      */
 
     public TokenInfo getNextToken() {
-        StringBuffer buffer;
+        int start;
+        StringBuffer image;
         boolean moreWhiteSpace = true;
         while (moreWhiteSpace) {
             while (isWhitespace(ch)) {
                 nextCh();
             }
+            line = input.line(position);
             if (ch == '/') {
                 nextCh();
                 
@@ -132,7 +217,7 @@ class Scanner {
                     }
                 } else if (ch == '=') { //division assignment
                     nextCh();
-                    return new TokenInfo(DIV_ASSIGN, line);
+                    return token(DIV_ASSIGN, line);
                 } else if (ch == '*') {  //multiline comment
                     //the start of the multiline comment
                      //nextCh();
@@ -150,180 +235,179 @@ class Scanner {
                             
                 } else { 
                    // nextCh(); I have to remove this to avoid jumping line. 
-                    return new TokenInfo(DIV, line);
+                    return token(DIV, line);
                 }
                      
             } else {
                 moreWhiteSpace = false;
             }
         } 
-        line = input.line();
         switch (ch) {
         case '(':
             nextCh();
-            return new TokenInfo(LPAREN, line);
+            return token(LPAREN, line);
         case ')':
             nextCh();
-            return new TokenInfo(RPAREN, line);
+            return token(RPAREN, line);
         case '{':
             nextCh();
-            return new TokenInfo(LCURLY, line);
+            return token(LCURLY, line);
         case '}':
             nextCh();
-            return new TokenInfo(RCURLY, line);
+            return token(RCURLY, line);
         case '[':
             nextCh();
-            return new TokenInfo(LBRACK, line);
+            return token(LBRACK, line);
         case ']':
             nextCh();
-            return new TokenInfo(RBRACK, line);
+            return token(RBRACK, line);
         case ';':
             nextCh();
-            return new TokenInfo(SEMI, line);
+            return token(SEMI, line);
         case ':':
             nextCh();
-            return new TokenInfo(COLON, line);
+            return token(COLON, line);
         case ',':
             nextCh();
-            return new TokenInfo(COMMA, line);
+            return token(COMMA, line);
         case '=':
             nextCh();
             if (ch == '=') {
                 nextCh();
-                return new TokenInfo(EQUAL, line);
+                return token(EQUAL, line);
             } else {
                
-                return new TokenInfo(ASSIGN, line);
+                return token(ASSIGN, line);
             }
         case '!':
             nextCh();
             if (ch == '=') {
                 nextCh();
-                return new TokenInfo(NOTEQUAL, line);
+                return token(NOTEQUAL, line);
             }
             else {
                
-                return new TokenInfo(LNOT, line);
+                return token(LNOT, line);
             }
         case '*':
             nextCh();
             if (ch == '=') {
                 nextCh();
-                return new TokenInfo(MUL_ASSIGN, line);
+                return token(MUL_ASSIGN, line);
             }
             else {
           
-            return new TokenInfo(STAR, line);
+            return token(STAR, line);
             }
         
         case '%':
             nextCh();
             if (ch == '=') {
                 nextCh();
-                return new TokenInfo(REM_ASSIGN, line);
+                return token(REM_ASSIGN, line);
             }
             else {
             
-            return new TokenInfo(REM,line);
+            return token(REM, line);
             }
         case '+':
             nextCh();
             if (ch == '=') {
                 nextCh();
-                return new TokenInfo(PLUS_ASSIGN, line);
+                return token(PLUS_ASSIGN, line);
             } else if (ch == '+') {
                 nextCh();
-                return new TokenInfo(INC, line);
+                return token(INC, line);
             } else {
                 
-                return new TokenInfo(PLUS, line);
+                return token(PLUS, line);
             }
         case '-':
             nextCh();
             if (ch == '=') {
                 nextCh();
-                return new TokenInfo(MINUS_ASSIGN, line);
+                return token(MINUS_ASSIGN, line);
             }
             else if (ch == '-') {
                 nextCh();
-                return new TokenInfo(DEC, line);
+                return token(DEC, line);
             } else {
                 
-                return new TokenInfo(MINUS, line);
+                return token(MINUS, line);
             }
         case '|':
             nextCh();
             if (ch == '=') {
                 nextCh();
-                return new TokenInfo(INCL_ASSIGN, line);
+                return token(INCL_ASSIGN, line);
             }
             else if (ch == '|') {
                 nextCh();
-                return new TokenInfo(LOR, line);
+                return token(LOR, line);
             }
             else {
                
-                return new TokenInfo (INCL, line);
+                return token(INCL, line);
             }
         case '^':
             nextCh();
             if (ch == '=') {
                 nextCh();
-                return new TokenInfo(EXCL_ASSIGN, line);
+                return token(EXCL_ASSIGN, line);
             }
             else {
                
-                return new TokenInfo (EXCL, line);
+                return token(EXCL, line);
             }
         case '~':
             nextCh();
-            return new TokenInfo (COMPL, line);
+            return token(COMPL, line);
         case '?':
             nextCh();
-            return new TokenInfo (QUESTION, line);
+            return token(QUESTION, line);
         case '&':
             nextCh();
             if (ch == '=') {
                 nextCh();
-                return new TokenInfo(AND_ASSIGN, line);
+                return token(AND_ASSIGN, line);
             }
             else if (ch == '&') {
                 nextCh();
-                return new TokenInfo(LAND, line);
+                return token(LAND, line);
             } else {
                 
-                return new TokenInfo (AND, line);
+                return token(AND, line);
             }
         case '>':
             nextCh();
             if (ch == '=') {
                 nextCh();
-                return new TokenInfo(GE, line);
+                return token(GE, line);
             } else if (ch == '>'){
                 nextCh();
                  if (ch == '=') {
                     nextCh();
-                    return new TokenInfo(RS_ASSIGN, line);
+                    return token(RS_ASSIGN, line);
                  }
                  else if (ch == '>'){
                     nextCh();
                         if (ch == '=') {
                             nextCh();
-                            return new TokenInfo(LRS_ASSIGN, line);
+                            return token(LRS_ASSIGN, line);
                         } else {
                             nextCh();
-                            return new TokenInfo (LRS , line);
+                            return token(LRS , line);
                           }
                 }
                 else {
                     
-                    return new TokenInfo (RS , line);
+                    return token(RS , line);
                 }
                 
             }
            else {
            
-            return new TokenInfo(GT, line);
+            return token(GT, line);
             }
         case '<':
             nextCh();
@@ -331,54 +415,82 @@ class Scanner {
                 nextCh();
                 if (ch == '=') {
                     nextCh();
-                    return new TokenInfo(LS_ASSIGN, line);
+                    return token(LS_ASSIGN, line);
                 }
                 else {
                     
-                    return new TokenInfo (LS , line);
+                    return token(LS , line);
                 }
             } else if (ch == '=') {
                     nextCh();
-                    return new TokenInfo (LE, line);
+                    return token(LE, line);
              } else {
                 
-                return new TokenInfo(LT, line);
+                return token(LT, line);
             }
         case '\'':
-            buffer = new StringBuffer();
-            buffer.append('\'');
+            start = position;
+            image = null;
             nextCh();
             if (ch == '\\') {
+                int escapeStart = position;
                 nextCh();
-                buffer.append(escape());
+                String escaped = escape();
+                if (escaped.length() != position - escapeStart) {
+                    // Not the source text as is (\")
+                    image = new StringBuffer();
+                    image.append('\'');
+                    image.append(escaped);
+                }
             } else {
-                buffer.append(ch);
                 nextCh();
             }
             if (ch == '\'') {
-                buffer.append('\'');
                 nextCh();
-                return new TokenInfo(CHAR_LITERAL, buffer.toString(), line);
+                if (image != null) {
+                    image.append('\'');
+                    return token(CHAR_LITERAL, image.toString(), line);
+                }
+                return token(CHAR_LITERAL, start, position
+                        - start, line);
             } else {
                 // Expected a ' ; report error and try to
                 // recover.
                 reportScannerError(ch
                         + " found by scanner where closing ' was expected.");
+                int end = position;
                 while (ch != '\'' && ch != ';' && ch != '\n') {
                     nextCh();
                 }
-                return new TokenInfo(CHAR_LITERAL, buffer.toString(), line);
+                if (image != null) {
+                    return token(CHAR_LITERAL, image.toString(), line);
+                }
+                return token(CHAR_LITERAL, start, end - start,
+                        line);
             }
         case '"':
-            buffer = new StringBuffer();
-            buffer.append("\"");
+            start = position;
+            image = null;
             nextCh();
             while (ch != '"' && ch != '\n' && ch != EOFCH) {
                 if (ch == '\\') {
+                    int escapeStart = position;
                     nextCh();
-                    buffer.append(escape());
+                    String escaped = escape();
+                    if (image == null
+                            && escaped.length() != position - escapeStart) {
+                        // Not the source text as is (\" or a bad escape), so
+                        // the image is built from here on
+                        image = new StringBuffer();
+                        image.append(buffer, start, escapeStart - start);
+                    }
+                    if (image != null) {
+                        image.append(escaped);
+                    }
                 } else {
-                    buffer.append(ch);
+                    if (image != null) {
+                        image.append(ch);
+                    }
                     nextCh();
                 }
             }
@@ -389,48 +501,49 @@ class Scanner {
             } else {
                 // Scan the closing "
                 nextCh();
-                buffer.append("\"");
+                if (image != null) {
+                    image.append("\"");
+                }
             }
-            return new TokenInfo(STRING_LITERAL, buffer.toString(), line);
+            if (image != null) {
+                return token(STRING_LITERAL, image.toString(), line);
+            }
+            return token(STRING_LITERAL, start, position
+                    - start, line);
         case '.':
-            buffer = new StringBuffer();
-            buffer.append(ch);
+            start = position;
             nextCh();
             //checking double literal starting with . digit exponent suffix
            if (isDigit (ch)) {
                 while (isDigit(ch)) {
-                     buffer.append(ch);
                      nextCh();
                  }
                     if (ch == 'e' || ch == 'E') {
-                        buffer.append(ch);
                         nextCh();
                             if (ch == '+' || ch == '-') {
-                                buffer.append (ch);
                                 nextCh();
                             }
                             while (isDigit(ch)) {
-                                buffer.append(ch);
                                 nextCh();
                             }
                       }
                      // nextCh();
                        if (ch == 'D' || ch == 'd') {
-                        buffer.append (ch);
                         nextCh();
                      }
-                return new TokenInfo (DOUBLE_LITERAL, buffer.toString(), line);
+                return token(DOUBLE_LITERAL, start, position
+                        - start, line);
  
             } else {
             
-            return new TokenInfo(DOT, line);
+            return token(DOT, line);
             }
         case EOFCH:
-            return new TokenInfo(EOF, line);
+            return token(EOF, line);
         case '0':
             // Handle only simple decimal integers for now.
             //nextCh();
-           // return new TokenInfo(INT_LITERAL, "0", line);
+           // return token(INT_LITERAL, "0", line);
         case '1':
         case '2':
         case '3':
@@ -440,90 +553,78 @@ class Scanner {
         case '7':
         case '8':
         case '9':
-            buffer = new StringBuffer();
+            start = position;
             while (isDigit(ch)) {
-                buffer.append(ch);
                 nextCh();
             }
             //checking Double literal : digits . digits exponent suffix
             
              if (ch == '.') {
-                buffer.append(ch);
                 nextCh();
             
                 while (isDigit(ch)) {
-                     buffer.append(ch);
                      nextCh();
                  }
                 if (ch == 'e' || ch == 'E') {
-                    buffer.append(ch);
                     nextCh();
                             if (ch == '+' || ch == '-') {
-                                buffer.append (ch);
                                 nextCh();
                             }
                             while (isDigit(ch)) {
-                                buffer.append(ch);
                                 nextCh();
                             }
                     }
                              
                 if (ch == 'D' || ch == 'd') {
-                        buffer.append (ch);
                         nextCh();
                  }
-return new TokenInfo (DOUBLE_LITERAL, buffer.toString(), line);
+return token(DOUBLE_LITERAL, start, position - start, line);
                                       
             } 
             //checking Double Literal: <digit> <exponent> [<suffix>]
             else if (ch == 'e' || ch == 'E') {
-                    buffer.append(ch);
                     nextCh();
                             if (ch == '+' || ch == '-') {
-                                buffer.append (ch);
                                 nextCh();
                             }
                             while (isDigit(ch)) {
-                                buffer.append(ch);
                                 nextCh();
                             }
                             
                             if (ch == 'D' || ch == 'd') {
-                                buffer.append (ch);
                                 nextCh();
                             }
-return new TokenInfo (DOUBLE_LITERAL, buffer.toString(), line);
+return token(DOUBLE_LITERAL, start, position - start, line);
             }
                //checking Double Literal: <digit> [<exponent> [<suffix>]              
             else if (ch == 'D' || ch == 'd') {
-                        buffer.append (ch);
                         nextCh();
             
-return new TokenInfo (DOUBLE_LITERAL, buffer.toString(), line);
+return token(DOUBLE_LITERAL, start, position - start, line);
             }  
              //check for Long Literal
             else if (ch == 'l' || ch == 'L') {
-                buffer.append(ch);
                 nextCh();
-                return new TokenInfo(LONG_LITERAL, buffer.toString(),line);
+                return token(LONG_LITERAL, start, position
+                        - start, line);
             }
             else {
                // nextCh();
-                return new TokenInfo(INT_LITERAL, buffer.toString(), line);
+                return token(INT_LITERAL, start, position
+                        - start, line);
             }
         default:
             if (isIdentifierStart(ch)) {
-                buffer = new StringBuffer();
+                start = position;
                 while (isIdentifierPart(ch)) {
-                    buffer.append(ch);
                     nextCh();
                 }
-                String identifier = buffer.toString();
-                if (reserved.containsKey(identifier)) {
-                    return new TokenInfo(reserved.get(identifier), line);
-                } else {
-                    return new TokenInfo(IDENTIFIER, identifier, line);
+                TokenKind kind = reserved(buffer, start, position - start);
+                if (kind != null) {
+                    return token(kind, line);
                 }
+                return token(IDENTIFIER, start, position
+                        - start, line);
             } else {
                 reportScannerError("Unidentified input token: '%c'", ch);
                 nextCh();
@@ -532,6 +633,68 @@ return new TokenInfo (DOUBLE_LITERAL, buffer.toString(), line);
         }
     }
 
+    /**
+     * Returns a token with no semantic text, or adds it to the token stream.
+     * 
+     * @param kind
+     *            the token's kind.
+     * @param line
+     *            the line in which the token occurs.
+     * @return the token (null if streaming to a TokenStream).
+     */
+
+    private TokenInfo token(TokenKind kind, int line) {
+        if (tokens != null) {
+            tokens.add(kind, line, -1, kind.image().length());
+            return null;
+        }
+        return new TokenInfo(kind, line);
+    }
+
+    /**
+     * Returns a token whose image lies in the source, or adds it to the token
+     * stream.
+     * 
+     * @param kind
+     *            the token's kind.
+     * @param start
+     *            offset of the image in the source.
+     * @param length
+     *            length of the image.
+     * @param line
+     *            the line in which the token occurs.
+     * @return the token (null if streaming to a TokenStream).
+     */
+
+    private TokenInfo token(TokenKind kind, int start, int length, int line) {
+        if (tokens != null) {
+            tokens.add(kind, line, start, length);
+            return null;
+        }
+        return new TokenInfo(kind, buffer, start, length, line);
+    }
+
+    /**
+     * Returns a token whose image is not in the source as is, or adds it to
+     * the token stream.
+     * 
+     * @param kind
+     *            the token's kind.
+     * @param image
+     *            the image.
+     * @param line
+     *            the line in which the token occurs.
+     * @return the token (null if streaming to a TokenStream).
+     */
+
+    private TokenInfo token(TokenKind kind, String image, int line) {
+        if (tokens != null) {
+            tokens.add(kind, line, image);
+            return null;
+        }
+        return new TokenInfo(kind, image, line);
+    }
+
     /**
      * Scans and returns an escaped character.
      * 
@@ -572,17 +735,103 @@ return new TokenInfo (DOUBLE_LITERAL, buffer.toString(), line);
     }
 
     /**
-     * Advances ch to the next character from input, and updates the line 
-     * number.
+     * Returns the keyword spelled by the specified characters, or null if
+     * they don't spell a keyword. Looks in the perfect hash table, so no
+     * more than one keyword is compared.
+     * 
+     * @param s
+     *            the characters.
+     * @param start
+     *            offset of the first character.
+     * @param length
+     *            number of characters.
+     * @return the keyword, or null.
+     */
+
+    static TokenKind reserved(char[] s, int start, int length) {
+        if (length < MIN_RESERVED_LENGTH || length > MAX_RESERVED_LENGTH) {
+            return null;
+        }
+        TokenKind kind = RESERVED_TABLE[reservedHash(s, start, length,
+                RESERVED_FIRST, RESERVED_SECOND)
+                & (RESERVED_TABLE.length - 1)];
+        if (kind == null) {
+            return null;
+        }
+        String image = kind.image();
+        if (image.length() != length) {
+            return null;
+        }
+        for (int i = 0; i < length; i++) {
+            if (image.charAt(i) != s[start + i]) {
+                return null;
+            }
+        }
+        return kind;
+    }
+
+    /**
+     * Returns a hash table of the keywords of the specified size, using the
+     * specified multipliers, or null if two keywords collide.
+     * 
+     * @param images
+     *            the keywords' characters, in the order of RESERVED_WORDS.
+     * @param size
+     *            size of the table (a power of 2).
+     * @param first
+     *            multiplier of the first character.
+     * @param second
+     *            multiplier of the second character.
+     * @return the table, or null.
+     */
+
+    private static TokenKind[] reservedTable(char[][] images, int size,
+            int first, int second) {
+        TokenKind[] table = new TokenKind[size];
+        for (int k = 0; k < images.length; k++) {
+            int i = reservedHash(images[k], 0, images[k].length, first, 
+                    second) & (size - 1);
+            if (table[i] != null) {
+                return null;
+            }
+            table[i] = RESERVED_WORDS[k];
+        }
+        return table;
+    }
+
+    /**
+     * Hashes a (candidate) keyword of at least two characters on its first, 
+     * second and last characters and its length.
+     * 
+     * @param s
+     *            the characters.
+     * @param start
+     *            offset of the first character.
+     * @param length
+     *            number of characters.
+     * @param first
+     *            multiplier of the first character.
+     * @param second
+     *            multiplier of the second character.
+     * @return the hash.
+     */
+
+    private static int reservedHash(char[] s, int start, int length,
+            int first, int second) {
+        return s[start] * first + s[start + 1] * second
+                + s[start + length - 1] + length;
+    }
+
+    /**
+     * Advances ch to the next character from input. The line number is 
+     * looked up only at the start of each token.
      */
 
     private void nextCh() {
-        line = input.line();
-        try {
-            ch = input.nextChar();
-        } catch (Exception e) {
-            reportScannerError("Unable to read characters from input");
+        if (position < limit) {
+            position++;
         }
+        ch = position < limit ? buffer[position] : EOFCH;
     }
 
     /**
@@ -677,9 +926,11 @@ return new TokenInfo (DOUBLE_LITERAL, buffer.toString(), line);
 }
 
 /**
- * A buffered character reader. Abstracts out differences between platforms,
- * mapping all new lines to '\n'. Also, keeps track of line numbers where the
- * first line is numbered 1.
+ * A character reader that loads the whole source at once into an array, which
+ * the {@link Scanner} indexes directly. Abstracts out differences between
+ * platforms, mapping all new lines to '\n'. Also, keeps a table of where the
+ * new lines are, from which the line number (where the first line is
+ * numbered 1) of any position in the source is computed.
  */
 
 class CharReader {
@@ -687,14 +938,40 @@ class CharReader {
     /** A representation of the end of file as a character. */
     public final static char EOFCH = (char) -1;
 
-    /** The underlying reader records line numbers. */
-    private LineNumberReader lineNumberReader;
+    /** The source, with all new lines mapped to '\n'. */
+    private char[] buffer;
+
+    /** Number of characters in the source. */
+    private int length;
+
+    /** Positions of the new lines in the source, in increasing order. */
+    private int[] newLines;
+
+    /** Number of new lines in the source. */
+    private int newLineCount;
+
+    /**
+     * Line number of the end of file; a source that does not end in a new
+     * line ends as if it did, as with a {@code LineNumberReader}.
+     */
+    private int endLine;
+
+    /** Position whose line number was looked up last. */
+    private int lastPosition;
+
+    /** Number of new lines before lastPosition. */
+    private int lastNewLines;
 
     /** Name of the file that is being read. */
     private String fileName;
 
+    /** Whether the source could not be read (entirely). */
+    private boolean isInError;
+
     /**
-     * Constructs a CharReader from a file name.
+     * Constructs a CharReader from a file name. The file is read in bulk
+     * through its channel, and decoded (in the platform's default charset)
+     * in one go.
      * 
      * @param fileName
      *            the name of the input file.
@@ -703,31 +980,145 @@ class CharReader {
      */
 
     public CharReader(String fileName) throws FileNotFoundException {
-        lineNumberReader = new LineNumberReader(new FileReader(fileName));
         this.fileName = fileName;
+        FileInputStream in = new FileInputStream(fileName);
+        CharBuffer chars = CharBuffer.allocate(0);
+        try {
+            FileChannel channel = in.getChannel();
+            ByteBuffer bytes = ByteBuffer.allocate((int) Math.min(channel
+                    .size(), Integer.MAX_VALUE));
+            while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+            }
+            bytes.flip();
+            chars = Charset.defaultCharset().decode(bytes);
+        } catch (IOException e) {
+            isInError = true;
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // Everything has been read
+            }
+        }
+        char[] source = new char[chars.remaining()];
+        chars.get(source);
+        load(source, source.length);
+    }
+
+    /**
+     * Constructs a CharReader from a reader, which is read to the end and
+     * closed.
+     * 
+     * @param fileName
+     *            the name by which the input is known.
+     * @param reader
+     *            the reader supplying the input.
+     */
+
+    public CharReader(String fileName, Reader reader) {
+        this.fileName = fileName;
+        char[] source = new char[8192];
+        int n = 0;
+        try {
+            int count;
+            while ((count = reader.read(source, n, source.length - n)) >= 0) {
+                n += count;
+                if (n == source.length) {
+                    source = Arrays.copyOf(source, 2 * n);
+                }
+            }
+            reader.close();
+        } catch (IOException e) {
+            isInError = true;
+        }
+        load(source, n);
+    }
+
+    /**
+     * Takes the specified characters as the source, mapping new lines
+     * ("\r\n" and "\r" as well as "\n") to '\n' in place, and noting
+     * where they are.
+     * 
+     * @param source
+     *            the characters.
+     * @param n
+     *            number of characters.
+     */
+
+    private void load(char[] source, int n) {
+        newLines = new int[16];
+        int j = 0;
+        for (int i = 0; i < n; i++) {
+            char c = source[i];
+            if (c == '\r') {
+                c = '\n';
+                if (i + 1 < n && source[i + 1] == '\n') {
+                    i++;
+                }
+            }
+            if (c == '\n') {
+                if (newLineCount == newLines.length) {
+                    newLines = Arrays.copyOf(newLines, 2 * newLineCount);
+                }
+                newLines[newLineCount++] = j;
+            }
+            source[j++] = c;
+        }
+        buffer = source;
+        length = j;
+        endLine = j > 0 && source[j - 1] != '\n' ? newLineCount + 2
+                : newLineCount + 1;
     }
 
     /**
-     * Scans the next character.
+     * Returns the source, with all new lines mapped to '\n'; only the first
+     * {@link #length()} characters are meaningful.
      * 
-     * @return the character scanned.
-     * @exception IOException
-     *                if an I/O error occurs.
+     * @return the source.
      */
 
-    public char nextChar() throws IOException {
-        return (char) lineNumberReader.read();
+    public char[] buffer() {
+        return buffer;
     }
 
     /**
-     * Returns the current line number in the source file, starting at 1.
+     * Returns the number of characters in the source.
      * 
-     * @return the current line number.
+     * @return the number of characters.
      */
 
-    public int line() {
-        // LineNumberReader counts lines from 0.
-        return lineNumberReader.getLineNumber() + 1;
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Returns the line number of the specified position in the source,
+     * starting at 1; a new line belongs to the line it ends. Looking up
+     * positions in increasing order, as a scanner does, takes constant time
+     * (amortized).
+     * 
+     * @param position
+     *            the position (length for the end of file).
+     * @return the line number.
+     */
+
+    public int line(int position) {
+        if (position >= length) {
+            return endLine;
+        }
+        if (position < lastPosition) {
+            lastNewLines = Arrays.binarySearch(newLines, 0, newLineCount,
+                    position);
+            if (lastNewLines < 0) {
+                lastNewLines = -(lastNewLines + 1);
+            }
+        }
+        while (lastNewLines < newLineCount 
+                && newLines[lastNewLines] < position) {
+            lastNewLines++;
+        }
+        lastPosition = position;
+        return lastNewLines + 1;
     }
 
     /**
@@ -741,14 +1132,14 @@ class CharReader {
     }
 
     /**
-     * Closes the file.
+     * Has an error occurred while reading the source? If so, the source is
+     * what could be read.
      * 
-     * @exception IOException
-     *                if an I/O error occurs.
+     * @return {@code true} if an error occurred and {@code false} otherwise.
      */
 
-    public void close() throws IOException {
-        lineNumberReader.close();
+    public boolean errorHasOccurred() {
+        return isInError;
     }
 
 }
@@ -0,0 +1,330 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a directory tree (-watch) for changes to the j-- source files in it,
+ * using the file system's {@code WatchService}. A burst of changes, such as an
+ * editor saving several files or a version control checkout, is reported as
+ * one batch, once the tree has been quiet for a short while.
+ */
+
+class SourceWatcher {
+
+    /**
+     * Time (in milliseconds) the tree must be quiet for before a batch of
+     * changes is reported.
+     */
+    private static final long DEBOUNCE = 50;
+
+    /** The root of the tree. */
+    private Path root;
+
+    /** The watch service. */
+    private WatchService service;
+
+    /** Maps the watch keys to the directories they watch. */
+    private Hashtable<WatchKey, Path> directories;
+
+    /** The source files in the tree. */
+    private TreeSet<String> sources;
+
+    /** The source files deleted in the last batch. */
+    private ArrayList<String> deleted;
+
+    /**
+     * Constructs a SourceWatcher for the tree rooted at the specified
+     * directory, and starts watching it.
+     *
+     * @param dir
+     *            the root of the tree.
+     * @throws IOException
+     *             if the tree cannot be read or watched.
+     */
+
+    public SourceWatcher(String dir) throws IOException {
+        root = new File(dir).toPath();
+        if (!Files.isDirectory(root)) {
+            throw new IOException(dir + " is not a directory");
+        }
+        service = FileSystems.getDefault().newWatchService();
+        directories = new Hashtable<WatchKey, Path>();
+        sources = new TreeSet<String>();
+        deleted = new ArrayList<String>();
+        register(root, null);
+    }
+
+    /**
+     * Returns the source files in the tree, in order of their paths.
+     *
+     * @return the source files.
+     */
+
+    public ArrayList<String> sources() {
+        return new ArrayList<String>(sources);
+    }
+
+    /**
+     * Returns the source files deleted in the last batch of changes.
+     *
+     * @return the source files.
+     */
+
+    public ArrayList<String> deleted() {
+        return deleted;
+    }
+
+    /**
+     * Waits for the source files in the tree to change, and returns those
+     * that were created or modified; those that were deleted are then given
+     * by {@link #deleted}. If the watch service lost track of some changes,
+     * every source file in the tree is returned.
+     *
+     * @return the source files created or modified.
+     * @throws InterruptedException
+     *             if interrupted while waiting.
+     */
+
+    public ArrayList<String> awaitChanges() throws InterruptedException {
+        TreeSet<String> changed = new TreeSet<String>();
+        deleted = new ArrayList<String>();
+        boolean overflowed = false;
+        while (changed.isEmpty() && deleted.isEmpty() && !overflowed) {
+            WatchKey key = service.take();
+            TreeSet<Path> touched = new TreeSet<Path>();
+
+            // Gather the rest of the burst, until the tree is quiet
+            while (key != null) {
+                overflowed |= poll(key, touched);
+                key = service.poll(DEBOUNCE, TimeUnit.MILLISECONDS);
+            }
+
+            // A file may have been touched more than once; what counts is
+            // whether it exists now
+            for (Path path : touched) {
+                String sourceFile = path.toString();
+                if (Files.isDirectory(path)) {
+                    try {
+                        register(path, changed);
+                    } catch (IOException e) {
+                        overflowed = true;
+                    }
+                } else if (!sourceFile.endsWith(".java")) {
+                    continue;
+                } else if (Files.exists(path)) {
+                    sources.add(sourceFile);
+                    changed.add(sourceFile);
+                } else if (sources.remove(sourceFile)) {
+                    deleted.add(sourceFile);
+                }
+            }
+        }
+        if (overflowed) {
+            rescan();
+            return sources();
+        }
+        return new ArrayList<String>(changed);
+    }
+
+    /**
+     * Stops watching the tree.
+     */
+
+    public void close() {
+        try {
+            service.close();
+        } catch (IOException e) {
+            // Nothing more to do
+        }
+    }
+
+    /**
+     * Takes the events from the specified watch key, noting the paths they
+     * touch, and resets it.
+     *
+     * @param key
+     *            the watch key.
+     * @param touched
+     *            where to note the paths.
+     * @return {@code true} if some events were lost, and {@code false}
+     *         otherwise.
+     */
+
+    private boolean poll(WatchKey key, TreeSet<Path> touched) {
+        boolean overflowed = false;
+        Path dir = directories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW || dir == null) {
+                overflowed = true;
+            } else {
+                touched.add(dir.resolve((Path) event.context()));
+            }
+        }
+
+        // A key that is no longer valid watched a directory that is gone
+        if (!key.reset()) {
+            directories.remove(key);
+            if (dir != null) {
+                String prefix = dir.toString() + File.separator;
+                for (String sourceFile : new ArrayList<String>(sources)) {
+                    if (sourceFile.startsWith(prefix)) {
+                        touched.add(new File(sourceFile).toPath());
+                    }
+                }
+            }
+        }
+        return overflowed;
+    }
+
+    /**
+     * Watches every directory in the tree rooted at the specified directory,
+     * and notes the source files in it.
+     *
+     * @param dir
+     *            the root of the tree.
+     * @param found
+     *            where to also put the source files found, or {@code null}.
+     * @throws IOException
+     *             if the tree cannot be read or watched.
+     */
+
+    private void register(Path dir, final TreeSet<String> found)
+            throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            public FileVisitResult preVisitDirectory(Path dir,
+                    BasicFileAttributes attrs) throws IOException {
+                if (!directories.containsValue(dir)) {
+                    directories.put(dir.register(service, ENTRY_CREATE,
+                            ENTRY_DELETE, ENTRY_MODIFY), dir);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            public FileVisitResult visitFile(Path file,
+                    BasicFileAttributes attrs) {
+                String sourceFile = file.toString();
+                if (sourceFile.endsWith(".java") && attrs.isRegularFile()) {
+                    sources.add(sourceFile);
+                    if (found != null) {
+                        found.add(sourceFile);
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Notes the source files in the tree afresh, after changes were lost.
+     */
+
+    private void rescan() {
+        TreeSet<String> previous = sources;
+        sources = new TreeSet<String>();
+        try {
+            register(root, null);
+        } catch (IOException e) {
+            // The files that could be seen are noted
+        }
+        previous.removeAll(sources);
+        deleted.addAll(previous);
+        Collections.sort(deleted);
+    }
+
+}
+
+/**
+ * A class loader for the class files in a directory (the output directory,
+ * for -watch). Classes found there take precedence over any of the same name
+ * that the parent loader can find, so that a class compiled again is seen as
+ * it is now, by a new DirectoryClassLoader.
+ */
+
+class DirectoryClassLoader extends ClassLoader {
+
+    /** The directory. */
+    private File dir;
+
+    /**
+     * Constructs a DirectoryClassLoader.
+     *
+     * @param dir
+     *            the directory.
+     * @param parent
+     *            the parent class loader.
+     */
+
+    public DirectoryClassLoader(String dir, ClassLoader parent) {
+        super(parent);
+        this.dir = new File(dir);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    protected Class<?> loadClass(String name, boolean resolve)
+            throws ClassNotFoundException {
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> cls = findLoadedClass(name);
+            if (cls == null && classFile(name).isFile()) {
+                cls = findClass(name);
+            }
+            if (cls == null) {
+                return super.loadClass(name, resolve);
+            }
+            if (resolve) {
+                resolveClass(cls);
+            }
+            return cls;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        try {
+            byte[] bytes = Files.readAllBytes(classFile(name).toPath());
+            return defineClass(name, bytes, 0, bytes.length);
+        } catch (IOException e) {
+            throw new ClassNotFoundException(name);
+        }
+    }
+
+    /**
+     * Returns the class file for the specified class.
+     *
+     * @param name
+     *            binary name of the class.
+     * @return the class file.
+     */
+
+    private File classFile(String name) {
+        return new File(dir, name.replace('.', File.separatorChar) + ".class");
+    }
+
+}
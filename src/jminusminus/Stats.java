@@ -0,0 +1,376 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-phase compiler statistics (-Xstats). For each compilation unit, the
+ * wall time, CPU time and bytes allocated are measured for every phase of
+ * the compiler, and within the phases, for each class and each method. A
+ * phase is measured as follows:
+ *
+ * <pre>
+ *   Measurement m = Stats.start("analyze", name);
+ *   ...
+ *   Stats.stop(m);
+ * </pre>
+ *
+ * Measurements are kept per thread (a unit is compiled entirely by one
+ * thread), and only while statistics are being gathered for a unit; otherwise
+ * {@code start} returns {@code null} and {@code stop} does nothing. Bytes
+ * allocated are reported only where the JVM can measure them per thread.
+ * Besides the measurements, a phase may report named counts of the work it
+ * did, through {@code count}. A measurement that is never stopped, because the
+ * phase threw an exception, is left out of the report, along with its parts.
+ */
+
+class Stats {
+
+    /** Statistics being gathered by the current thread, if any. */
+    private static ThreadLocal<Stats> current = new ThreadLocal<Stats>();
+
+    /** For measuring CPU time and allocation. */
+    private static ThreadMXBean threadBean = ManagementFactory
+            .getThreadMXBean();
+
+    /** The source file (compilation unit). */
+    private String sourceFile;
+
+    /** Measurements, in the order in which they were started. */
+    private ArrayList<Measurement> measurements;
+
+    /** Nesting depth of the next measurement. */
+    private int depth;
+
+    /** Counts, in the order in which they were first reported. */
+    private Map<String, Long> counters;
+
+    /**
+     * Constructs a Stats object for the specified source file.
+     *
+     * @param sourceFile
+     *            the source file.
+     */
+
+    private Stats(String sourceFile) {
+        this.sourceFile = sourceFile;
+        measurements = new ArrayList<Measurement>();
+        depth = 0;
+        counters = new LinkedHashMap<String, Long>();
+    }
+
+    /**
+     * Starts gathering statistics, on the current thread, for the compilation
+     * of the specified source file.
+     *
+     * @param sourceFile
+     *            the source file.
+     */
+
+    public static void begin(String sourceFile) {
+        current.set(new Stats(sourceFile));
+    }
+
+    /**
+     * Stops gathering statistics on the current thread.
+     *
+     * @return the statistics gathered.
+     */
+
+    public static Stats end() {
+        Stats stats = current.get();
+        current.remove();
+        if (stats != null) {
+            stats.dropUnstopped();
+        }
+        return stats;
+    }
+
+    /**
+     * Removes the measurements that were never stopped, and those nested in
+     * them.
+     */
+
+    private void dropUnstopped() {
+        ArrayList<Measurement> stopped = new ArrayList<Measurement>();
+        int i = 0;
+        while (i < measurements.size()) {
+            Measurement m = measurements.get(i++);
+            if (m.stopped) {
+                stopped.add(m);
+            } else {
+                while (i < measurements.size()
+                        && measurements.get(i).depth > m.depth) {
+                    i++;
+                }
+            }
+        }
+        measurements = stopped;
+    }
+
+    /**
+     * Starts measuring a phase, or a part of one.
+     *
+     * @param phase
+     *            the phase.
+     * @param subject
+     *            what the phase works on (the unit, a class or a method).
+     * @return the measurement, or {@code null} if statistics are not being
+     *         gathered.
+     */
+
+    public static Measurement start(String phase, String subject) {
+        Stats stats = current.get();
+        if (stats == null) {
+            return null;
+        }
+        Measurement m = new Measurement(phase, subject, stats.depth++);
+        stats.measurements.add(m);
+        m.wallTime = -System.nanoTime();
+        m.cpuTime = -cpuTime();
+        m.allocated = -allocated();
+        return m;
+    }
+
+    /**
+     * Stops measuring a phase.
+     *
+     * @param m
+     *            the measurement returned by {@code start}, or {@code null}.
+     */
+
+    public static void stop(Measurement m) {
+        if (m == null) {
+            return;
+        }
+        m.allocated += allocated();
+        m.cpuTime += cpuTime();
+        m.wallTime += System.nanoTime();
+        m.stopped = true;
+        current.get().depth--;
+    }
+
+    /**
+     * Adds to a count, if statistics are being gathered.
+     *
+     * @param counter
+     *            name of the count.
+     * @param n
+     *            what to add.
+     */
+
+    public static void count(String counter, long n) {
+        Stats stats = current.get();
+        if (stats == null) {
+            return;
+        }
+        Long count = stats.counters.get(counter);
+        stats.counters.put(counter, count == null ? n : count + n);
+    }
+
+    /**
+     * Returns the CPU time used by the current thread, in nanoseconds.
+     *
+     * @return CPU time, or 0 if it can't be measured.
+     */
+
+    private static long cpuTime() {
+        return threadBean.isCurrentThreadCpuTimeSupported() ? threadBean
+                .getCurrentThreadCpuTime() : 0;
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread.
+     *
+     * @return bytes allocated, or 0 if it can't be measured.
+     */
+
+    private static long allocated() {
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threadBean)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    /**
+     * Writes the statistics, as human-readable text, to the specified stream.
+     *
+     * @param out
+     *            the stream.
+     */
+
+    public void writeText(PrintStream out) {
+        out.printf("Statistics for %s\n", sourceFile);
+        out.printf("  %-48s %10s %10s %12s\n", "phase", "wall (ms)",
+                "cpu (ms)", "alloc (KB)");
+        for (Measurement m : measurements) {
+            String name = indent(m.depth) + m.phase + " " + m.subject;
+            out.printf("  %-48s %10.3f %10.3f %12d\n", name,
+                    m.wallTime / 1e6, m.cpuTime / 1e6, m.allocated / 1024);
+        }
+        if (!counters.isEmpty()) {
+            out.printf("  %-48s %10s\n", "counter", "count");
+            for (Map.Entry<String, Long> counter : counters.entrySet()) {
+                out.printf("  %-48s %10d\n", counter.getKey(), counter
+                        .getValue());
+            }
+        }
+    }
+
+    /**
+     * Writes the statistics, as a JSON object, to the specified stream. Nested
+     * measurements (for the classes and methods of a phase) are listed as the
+     * "parts" of the enclosing one, and counts as the "counters" object.
+     *
+     * @param out
+     *            the stream.
+     */
+
+    public void writeJson(PrintStream out) {
+        StringBuffer b = new StringBuffer();
+        b.append("{\"sourceFile\": ").append(quote(sourceFile));
+        b.append(", \"phases\": ");
+        writeJson(b, 0, 0);
+        if (!counters.isEmpty()) {
+            b.append(", \"counters\": {");
+            boolean first = true;
+            for (Map.Entry<String, Long> counter : counters.entrySet()) {
+                b.append(first ? "" : ", ");
+                first = false;
+                b.append(quote(counter.getKey())).append(": ").append(
+                        counter.getValue());
+            }
+            b.append("}");
+        }
+        b.append("}");
+        out.println(b);
+    }
+
+    /**
+     * Appends, as a JSON array, the measurements at the specified depth
+     * starting at the specified index and ending at the first shallower
+     * one.
+     *
+     * @param b
+     *            where to append.
+     * @param i
+     *            the index.
+     * @param depth
+     *            the depth.
+     * @return the index of the first measurement not appended.
+     */
+
+    private int writeJson(StringBuffer b, int i, int depth) {
+        b.append("[");
+        boolean first = true;
+        while (i < measurements.size() && measurements.get(i).depth >= depth) {
+            Measurement m = measurements.get(i++);
+            b.append(first ? "" : ", ");
+            first = false;
+            b.append("{\"phase\": ").append(quote(m.phase));
+            b.append(", \"subject\": ").append(quote(m.subject));
+            b.append(", \"wallNanos\": ").append(m.wallTime);
+            b.append(", \"cpuNanos\": ").append(m.cpuTime);
+            b.append(", \"allocatedBytes\": ").append(m.allocated);
+            if (i < measurements.size() && measurements.get(i).depth > depth) {
+                b.append(", \"parts\": ");
+                i = writeJson(b, i, depth + 1);
+            }
+            b.append("}");
+        }
+        b.append("]");
+        return i;
+    }
+
+    /**
+     * Returns a string for indenting to the specified depth.
+     *
+     * @param depth
+     *            the depth.
+     * @return the indentation.
+     */
+
+    private static String indent(int depth) {
+        String s = "";
+        for (int i = 0; i < depth; i++) {
+            s += "  ";
+        }
+        return s;
+    }
+
+    /**
+     * Returns the specified string as a JSON string literal.
+     *
+     * @param s
+     *            the string.
+     * @return the literal.
+     */
+
+    private static String quote(String s) {
+        StringBuffer b = new StringBuffer("\"");
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                b.append('\\').append(c);
+            } else if (c < ' ') {
+                b.append(String.format("\\u%04x", (int) c));
+            } else {
+                b.append(c);
+            }
+        }
+        return b.append('"').toString();
+    }
+
+}
+
+/**
+ * The measurement of one phase, or part of a phase, of the compiler.
+ */
+
+class Measurement {
+
+    /** The phase. */
+    public String phase;
+
+    /** What the phase works on. */
+    public String subject;
+
+    /** Nesting depth. */
+    public int depth;
+
+    /** Wall time, in nanoseconds. */
+    public long wallTime;
+
+    /** CPU time, in nanoseconds. */
+    public long cpuTime;
+
+    /** Bytes allocated. */
+    public long allocated;
+
+    /** Whether the measurement was stopped. */
+    public boolean stopped;
+
+    /**
+     * Constructs a Measurement.
+     *
+     * @param phase
+     *            the phase.
+     * @param subject
+     *            what the phase works on.
+     * @param depth
+     *            nesting depth.
+     */
+
+    public Measurement(String phase, String subject, int depth) {
+        this.phase = phase;
+        this.subject = subject;
+        this.depth = depth;
+    }
+
+}
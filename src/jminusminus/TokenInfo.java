@@ -91,6 +91,10 @@ enum TokenKind {
  * {@link Scanner#getNextToken() getNextToken}. A token has a kind identifying 
  * what kind of token it is, an image for providing any semantic text, and the 
  * line in which it occurred in the source file.
+ * <p>
+ * A token scanned straight from the source keeps its image as an offset and a
+ * length into the (shared) source characters; the image is only made a 
+ * String when it is asked for.
  */
 
 class TokenInfo {
@@ -106,6 +110,15 @@ class TokenInfo {
      */
     private String image;
 
+    /** Source characters holding the image (if not yet made a String). */
+    private char[] source;
+
+    /** Offset of the image in the source characters. */
+    private int start;
+
+    /** Length of the image in the source characters. */
+    private int length;
+
     /** Line in which the token occurs in the source file. */
     private int line;
 
@@ -124,6 +137,33 @@ class TokenInfo {
     public TokenInfo(TokenKind kind, String image, int line) {
         this.kind = kind;
         this.image = image;
+        this.start = -1;
+        this.length = image.length();
+        this.line = line;
+    }
+
+    /**
+     * Constructs a TokenInfo given its kind, where the semantic text forming
+     * the token lies in the source, and its line number.
+     * 
+     * @param kind
+     *            the token's kind.
+     * @param source
+     *            the source characters.
+     * @param start
+     *            offset of the semantic text in the source.
+     * @param length
+     *            length of the semantic text.
+     * @param line
+     *            the line in which the token occurs in the source file.
+     */
+
+    public TokenInfo(TokenKind kind, char[] source, int start, int length,
+            int line) {
+        this.kind = kind;
+        this.source = source;
+        this.start = start;
+        this.length = length;
         this.line = line;
     }
 
@@ -158,9 +198,35 @@ class TokenInfo {
      */
 
     public String image() {
+        if (image == null) {
+            image = new String(source, start, length);
+            source = null;
+        }
         return image;
     }
 
+    /**
+     * Returns the offset of the semantic text in the source, or -1 if the 
+     * token's image is not taken from the source as is (for example, one 
+     * with no semantic text).
+     * 
+     * @return the offset.
+     */
+
+    public int start() {
+        return start;
+    }
+
+    /**
+     * Returns the length of the semantic text.
+     * 
+     * @return the length.
+     */
+
+    public int length() {
+        return length;
+    }
+
     /**
      * Returns the line number associated with the token.
      * 
@@ -188,7 +254,7 @@ class TokenInfo {
      */
 
     public String toString() {
-        return image;
+        return image();
     }
 
 }
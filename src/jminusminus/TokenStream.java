@@ -0,0 +1,267 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package jminusminus;
+
+/**
+ * The tokens of a source file, held in parallel arrays of ints rather than as
+ * {@link TokenInfo} objects: for each token, its kind (ordinal), its line, and
+ * the offset and length of its image in the source. Tokens are numbered from 0
+ * and walked by index (see {@link LookaheadScanner}). The {@link Scanner}
+ * writes the tokens straight into the arrays, as they are asked for, so
+ * scanning (and lexical errors) keep pace with parsing, and no object is made
+ * per token.
+ * <p>
+ * The arrays are a ring buffer: token i is kept at i modulo their length, and
+ * only the tokens from the first one still wanted (see {@link #release(int)})
+ * on are kept. The buffer grows when it is full of wanted tokens, so it is as
+ * long as the deepest lookahead needs, not as long as the file.
+ */
+
+class TokenStream {
+
+    /** Token kinds, by ordinal. */
+    private final static TokenKind[] KINDS = TokenKind.values();
+
+    /** The underlying hand-written scanner. */
+    private Scanner scanner;
+
+    /** The source characters the images are in. */
+    private char[] source;
+
+    /** Token kinds (ordinals). */
+    private int[] kinds;
+
+    /** Lines of the tokens. */
+    private int[] lines;
+
+    /**
+     * Offsets of the images in the source. An image that is not in the source
+     * as is has offset -1 if it is simply the kind's image, and offset -2 if
+     * it is in images.
+     */
+    private int[] starts;
+
+    /** Lengths of the images in the source. */
+    private int[] lengths;
+
+    /** Images that are not in the source as is. */
+    private String[] images;
+
+    /** Length of the arrays less 1 (their length is a power of 2). */
+    private int mask;
+
+    /** Index of the first token kept. */
+    private int first;
+
+    /** Number of tokens scanned so far. */
+    private int size;
+
+    /**
+     * Constructs a TokenStream of the tokens scanned by the specified scanner.
+     *
+     * @param scanner
+     *            the scanner.
+     */
+
+    public TokenStream(Scanner scanner) {
+        this.scanner = scanner;
+        source = scanner.source();
+        kinds = new int[64];
+        lines = new int[64];
+        starts = new int[64];
+        lengths = new int[64];
+        images = new String[64];
+        mask = 63;
+        scanner.streamTo(this);
+    }
+
+    /**
+     * Adds a token (called by the scanner).
+     *
+     * @param kind
+     *            the token's kind.
+     * @param line
+     *            the line in which the token occurs.
+     * @param start
+     *            offset of the image in the source, or -1 if it is the kind's
+     *            image.
+     * @param length
+     *            length of the image.
+     */
+
+    void add(TokenKind kind, int line, int start, int length) {
+        if (size - first == kinds.length) {
+            grow();
+        }
+        int slot = size & mask;
+        kinds[slot] = kind.ordinal();
+        lines[slot] = line;
+        starts[slot] = start;
+        lengths[slot] = length;
+        images[slot] = null;
+        size++;
+    }
+
+    /**
+     * Adds a token whose image is not in the source as is (called by the
+     * scanner).
+     *
+     * @param kind
+     *            the token's kind.
+     * @param line
+     *            the line in which the token occurs.
+     * @param image
+     *            the image.
+     */
+
+    void add(TokenKind kind, int line, String image) {
+        add(kind, line, -2, image.length());
+        images[(size - 1) & mask] = image;
+    }
+
+    /**
+     * Doubles the length of the arrays, keeping the tokens from first on.
+     */
+
+    private void grow() {
+        int length = 2 * kinds.length;
+        int[] newKinds = new int[length];
+        int[] newLines = new int[length];
+        int[] newStarts = new int[length];
+        int[] newLengths = new int[length];
+        String[] newImages = new String[length];
+        for (int i = first; i < size; i++) {
+            int slot = i & mask, newSlot = i & (length - 1);
+            newKinds[newSlot] = kinds[slot];
+            newLines[newSlot] = lines[slot];
+            newStarts[newSlot] = starts[slot];
+            newLengths[newSlot] = lengths[slot];
+            newImages[newSlot] = images[slot];
+        }
+        kinds = newKinds;
+        lines = newLines;
+        starts = newStarts;
+        lengths = newLengths;
+        images = newImages;
+        mask = length - 1;
+    }
+
+    /**
+     * Lets go of the tokens before the specified one: they won't be asked for
+     * again, so their room may be taken by tokens yet to be scanned.
+     *
+     * @param i
+     *            index of the first token still wanted.
+     */
+
+    public void release(int i) {
+        if (i > first) {
+            first = i;
+        }
+    }
+
+    /**
+     * Scans up to (and including) the specified token. The scanner returns
+     * EOF over and over at the end of the file, so any token can be scanned.
+     *
+     * @param i
+     *            the token's index.
+     */
+
+    private void scanTo(int i) {
+        while (size <= i) {
+            scanner.getNextToken();
+        }
+    }
+
+    /**
+     * Returns the kind of the specified token.
+     *
+     * @param i
+     *            the token's index.
+     * @return the kind.
+     */
+
+    public TokenKind kind(int i) {
+        if (i >= size) {
+            scanTo(i);
+        }
+        return KINDS[kinds[i & mask]];
+    }
+
+    /**
+     * Returns the line of the specified token.
+     *
+     * @param i
+     *            the token's index.
+     * @return the line.
+     */
+
+    public int line(int i) {
+        if (i >= size) {
+            scanTo(i);
+        }
+        return lines[i & mask];
+    }
+
+    /**
+     * Returns the image of the specified token.
+     *
+     * @param i
+     *            the token's index.
+     * @return the image.
+     */
+
+    public String image(int i) {
+        if (i >= size) {
+            scanTo(i);
+        }
+        int slot = i & mask;
+        int start = starts[slot];
+        if (start >= 0) {
+            return new String(source, start, lengths[slot]);
+        }
+        return start == -1 ? KINDS[kinds[slot]].image() : images[slot];
+    }
+
+    /**
+     * Returns the specified token as a TokenInfo.
+     *
+     * @param i
+     *            the token's index.
+     * @return the token.
+     */
+
+    public TokenInfo token(int i) {
+        if (i >= size) {
+            scanTo(i);
+        }
+        int slot = i & mask;
+        if (starts[slot] >= 0) {
+            return new TokenInfo(KINDS[kinds[slot]], source, starts[slot],
+                    lengths[slot], lines[slot]);
+        }
+        return new TokenInfo(KINDS[kinds[slot]], image(i), lines[slot]);
+    }
+
+    /**
+     * Has an error occurred up to now in lexical analysis?
+     *
+     * @return {@code true} if an error occurred and {@code false} otherwise.
+     */
+
+    public boolean errorHasOccurred() {
+        return scanner.errorHasOccurred();
+    }
+
+    /**
+     * Returns the name of the source file.
+     *
+     * @return name of the source file.
+     */
+
+    public String fileName() {
+        return scanner.fileName();
+    }
+
+}
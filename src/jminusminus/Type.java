@@ -7,13 +7,21 @@ import java.lang.reflect.Modifier;
 
 import java.util.Arrays;
 import java.util.ArrayList;
-import java.util.Hashtable;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 /**
  * For representing j-- types. All types are represented underneath (in the
  * classRep field) by Java objects of type {@code Class}. These objects 
  * represent types in Java, so this should ease our interfacing with existing 
- * Java classes.
+ * Java classes. The exception is the types declared in the unit being 
+ * compiled, which have no class until code generation; they are represented 
+ * by their symbols instead (see {@link DeclaredType}). Library classes, too,
+ * may be compiled against without being loaded, by reading their class files
+ * (see {@link #setLibraryPath(CLPath)} and {@link ClassFileType}).
  * <p>
  * Class types (reference types that are represented by the identifiers
  * introduced in class declarations) are represented using {@link TypeName}. So 
@@ -23,6 +31,14 @@ import java.util.Hashtable;
  * IdentifierTypes must be "resolved" at some point, so that all Types having
  * the same name refer to the same Type object. The {@code resolve} method does 
  * this.
+ * <p>
+ * The Types of JDK classes are interned in a registry shared by all 
+ * compilations, and are never changed once made. The Types of other classes
+ * (those declared in the unit being compiled, and those it uses from the 
+ * class path) are interned per compilation unit, so that concurrent or
+ * successive compilations never see each other's. Likewise, the Types read 
+ * from the class files of the JDK are interned in a registry of their own, 
+ * and those read from the class path per unit.
  */
 
 class Type {
@@ -30,8 +46,41 @@ class Type {
     /** The Type's internal (Java) representation. * */
     private Class<?> classRep;
 
-    /** Maps type names to their Type representations. */
-    private static Hashtable<String, Type> types = new Hashtable<String, Type>();
+    /** Index of the members of classRep, built when first needed. */
+    private volatile MemberIndex memberIndex;
+
+    /** Maps (the classes of) JDK types to their Type representations. */
+    private final static ConcurrentHashMap<Class<?>, Type> jdkTypes = 
+        new ConcurrentHashMap<Class<?>, Type>();
+
+    /** Makes the Type of a JDK class, for the registry. */
+    private final static Function<Class<?>, Type> NEW_JDK_TYPE = 
+        new Function<Class<?>, Type>() {
+            public Type apply(Class<?> classRep) {
+                return new Type(classRep);
+            }
+        };
+
+    /**
+     * Loader of the (library) classes referenced by name, per thread; if not
+     * set, they are loaded from the class path.
+     */
+    private static ThreadLocal<ClassLoader> libraryLoader = 
+        new ThreadLocal<ClassLoader>();
+
+    /**
+     * Path of the class files of the (library) classes referenced by name,
+     * per thread, if they are read from there rather than loaded.
+     */
+    private static ThreadLocal<CLPath> libraryPath = 
+        new ThreadLocal<CLPath>();
+
+    /** 
+     * Maps the descriptors of the types read from the class files of the JDK
+     * (and of the types of arrays of them) to those types.
+     */
+    private final static ConcurrentHashMap<String, Type> systemTypes = 
+        new ConcurrentHashMap<String, Type>();
 
     /** The primitive type, int. */
     public final static Type INT = typeFor(int.class);
@@ -59,9 +108,9 @@ class Type {
     /** java.lang.Boolean. */
     public final static Type BOXED_BOOLEAN = typeFor(java.lang.Boolean.class);
     /** The type java.lang.String. */
-    public static Type STRING = typeFor(java.lang.String.class);
+    public final static Type STRING = typeFor(java.lang.String.class);
     /** The type java.lang.Object. */
-    public static Type OBJECT = typeFor(java.lang.Object.class);
+    public final static Type OBJECT = typeFor(java.lang.Object.class);
     /** The void type. */
     public final static Type VOID = typeFor(void.class);
 
@@ -76,6 +125,20 @@ class Type {
     /** The "any" type (denotes wild expressions). */
     public final static Type ANY = new Type(null);
 
+    /**
+     * The types above that are part of the language, by descriptor; they
+     * stand for their classes even when library classes are read from class
+     * files, since the compiler tells them apart by identity.
+     */
+    private final static HashMap<String, Type> coreTypes = 
+        new HashMap<String, Type>();
+    static {
+        for (Type type : new Type[] { OBJECT, STRING, BOXED_BOOLEAN,
+                BOXED_CHAR, BOXED_INT, BOXED_LONG, BOXED_DOUBLE }) {
+            coreTypes.put(type.toDescriptor(), type);
+        }
+    }
+
     /**
      * Constructs a Type representation for a type from its Java (Class)
      * representation. Use typeFor() -- that maps types having like classReps to
@@ -105,10 +168,300 @@ class Type {
      */
 
     public static Type typeFor(Class<?> classRep) {
-        if (types.get(descriptorFor(classRep)) == null) {
-            types.put(descriptorFor(classRep), new Type(classRep));
+        // Note the reference, for incremental compilation
+        JCompilationUnit unit = JAST.compilationUnit();
+        if (unit != null) {
+            unit.addReferencedType(classRep);
+        }
+
+        // Outside of any compilation, every Type goes in the registry
+        if (unit == null || isJdkClass(classRep)) {
+            Type type = jdkTypes.get(classRep);
+            return type != null ? type : jdkTypes.computeIfAbsent(classRep,
+                    NEW_JDK_TYPE);
+        }
+
+        // Other types are told apart by name (a class declared in the unit
+        // is made anew as pre-analysis goes on)
+        Map<String, Type> types = unit.types();
+        String descriptor = descriptorFor(classRep);
+        Type type = types.get(descriptor);
+        if (type == null) {
+            type = new Type(classRep);
+            types.put(descriptor, type);
+        }
+        return type;
+    }
+
+    /**
+     * Is the specified class (or the element class of the specified array
+     * class) a JDK class, that is, one loaded by the bootstrap loader?
+     * Primitive types count as JDK classes.
+     * 
+     * @param classRep
+     *            the class.
+     * @return {@code true} if the class is a JDK class, and {@code false}
+     *         otherwise.
+     */
+
+    private static boolean isJdkClass(Class<?> classRep) {
+        while (classRep.isArray()) {
+            classRep = classRep.getComponentType();
+        }
+        return classRep.getClassLoader() == null;
+    }
+
+    /**
+     * Returns the Type of the class with the specified name declared in the
+     * unit being compiled, making it if need be. A type is made with no
+     * members, and with Object for its superclass; pre-analysis completes it
+     * (see {@link DeclaredType#setSymbol(ClassSymbol)}).
+     * 
+     * @param name
+     *            the fully qualified name of the class, in internal form.
+     * @param mods
+     *            the class' modifiers.
+     * @return the Type of the class.
+     */
+
+    public static DeclaredType declaredTypeFor(String name,
+            ArrayList<String> mods) {
+        Map<String, Type> types = JAST.compilationUnit().types();
+        String descriptor = "L" + name + ";";
+        Type type = types.get(descriptor);
+        if (!(type instanceof DeclaredType)) {
+            type = new DeclaredType(name, mods);
+            types.put(descriptor, type);
+        }
+        return (DeclaredType) type;
+    }
+
+    /**
+     * Returns the Type of arrays of the specified component type.
+     * 
+     * @param componentType
+     *            the component type.
+     * @return the array type.
+     */
+
+    public static Type arrayTypeFor(Type componentType) {
+        if (componentType == Type.ANY) {
+            return Type.ANY;
+        }
+        if (componentType.classRep() != null) {
+            // The API forces us to make an instance and get its
+            // type.
+            return typeFor(Array.newInstance(componentType.classRep(), 0)
+                    .getClass());
+        }
+
+        // An array of a type with no class has no class either; it is
+        // interned along with its component type
+        Type elementType = componentType;
+        while (elementType.isArray()) {
+            elementType = elementType.componentType();
+        }
+        Map<String, Type> types = elementType instanceof ClassFileType
+                && ((ClassFileType) elementType).isSystem() ? systemTypes
+                : JAST.compilationUnit().types();
+        String descriptor = "[" + componentType.toDescriptor();
+        Type type = types.get(descriptor);
+        if (type == null) {
+            type = new DeclaredArrayType(componentType);
+            Type previous = types.putIfAbsent(descriptor, type);
+            if (previous != null) {
+                type = previous;
+            }
+        }
+        return type;
+    }
+
+    /**
+     * Returns the Type of the (library) class with the specified fully 
+     * qualified name: the Type of its class, or, if library classes are read
+     * from class files, the Type read from its class file.
+     * 
+     * @param name
+     *            the name of the class.
+     * @return the Type of the class.
+     * @throws ClassNotFoundException
+     *             if the class cannot be found.
+     */
+
+    public static Type libraryTypeFor(String name)
+            throws ClassNotFoundException {
+        if (libraryPath.get() == null) {
+            return typeFor(classFor(name));
+        }
+        Type type = classFileTypeFor(name.replace('.', '/'));
+        if (type instanceof ClassFileType
+                && !((ClassFileType) type).exists()) {
+            throw new ClassNotFoundException(name);
+        }
+        return type;
+    }
+
+    /**
+     * Returns the Type of the class with the specified name, as read from its
+     * class file on the library path, making it if need be; its class file is
+     * only read when the Type is first asked about more than its name. The
+     * types that are part of the language, and those declared in the unit 
+     * being compiled, are what they always are.
+     * 
+     * @param name
+     *            the fully qualified name of the class, in internal form.
+     * @return the Type of the class.
+     */
+
+    static Type classFileTypeFor(String name) {
+        String descriptor = "L" + name + ";";
+        Type type = coreTypes.get(descriptor);
+        if (type == null) {
+            type = systemTypes.get(descriptor);
+        }
+        JCompilationUnit unit = JAST.compilationUnit();
+        if (type == null && unit != null) {
+            type = unit.types().get(descriptor);
+        }
+        if (type == null) {
+            CLPath path = libraryPath.get();
+            boolean system = path.isSystemClass(name);
+            type = new ClassFileType(name, path, system);
+            if (system) {
+                Type previous = systemTypes.putIfAbsent(descriptor, type);
+                if (previous != null) {
+                    type = previous;
+                }
+            } else if (unit != null) {
+                unit.types().put(descriptor, type);
+            }
+        }
+        return type;
+    }
+
+    /**
+     * Returns the Type with the specified (field) descriptor; classes are
+     * read from their class files (see {@link #classFileTypeFor(String)}).
+     * 
+     * @param descriptor
+     *            the descriptor.
+     * @return the Type.
+     */
+
+    static Type typeForDescriptor(String descriptor) {
+        switch (descriptor.charAt(0)) {
+        case 'B':
+            return typeFor(byte.class);
+        case 'C':
+            return CHAR;
+        case 'D':
+            return DOUBLE;
+        case 'F':
+            return typeFor(float.class);
+        case 'I':
+            return INT;
+        case 'J':
+            return LONG;
+        case 'S':
+            return typeFor(short.class);
+        case 'Z':
+            return BOOLEAN;
+        case 'V':
+            return VOID;
+        case '[':
+            return arrayTypeFor(typeForDescriptor(descriptor.substring(1)));
+        default:
+            return classFileTypeFor(descriptor.substring(1, descriptor
+                    .length() - 1));
+        }
+    }
+
+    /**
+     * Returns the Types with the specified descriptors, given one after the
+     * other (see {@link #parametersFor(Type[])}).
+     * 
+     * @param parameters
+     *            the joined descriptors.
+     * @return the Types.
+     */
+
+    static Type[] typesForParameters(String parameters) {
+        ArrayList<Type> types = new ArrayList<Type>();
+        int start = 0;
+        while (start < parameters.length()) {
+            int end = start;
+            while (parameters.charAt(end) == '[') {
+                end++;
+            }
+            end = parameters.charAt(end) == 'L' ? parameters.indexOf(';',
+                    end) + 1 : end + 1;
+            types.add(typeForDescriptor(parameters.substring(start, end)));
+            start = end;
         }
-        return types.get(descriptorFor(classRep));
+        return types.toArray(new Type[types.size()]);
+    }
+
+    /**
+     * Sets the loader of the (library) classes referenced by name, for the 
+     * current thread.
+     * 
+     * @param loader
+     *            the class loader, or {@code null} for the class path.
+     */
+
+    public static void setLibraryLoader(ClassLoader loader) {
+        libraryLoader.set(loader);
+    }
+
+    /**
+     * Returns the loader of the (library) classes referenced by name, for the
+     * current thread.
+     * 
+     * @return the class loader, or {@code null} for the class path.
+     */
+
+    public static ClassLoader libraryLoader() {
+        return libraryLoader.get();
+    }
+
+    /**
+     * Sets the path of the class files of the (library) classes referenced by
+     * name, for the current thread, if they are to be read from there rather
+     * than loaded. The JDK's classes are read from those of the running JDK.
+     * 
+     * @param path
+     *            the path, or {@code null} for loading the classes.
+     */
+
+    public static void setLibraryPath(CLPath path) {
+        libraryPath.set(path);
+    }
+
+    /**
+     * Returns the path of the class files of the (library) classes 
+     * referenced by name, for the current thread.
+     * 
+     * @return the path, or {@code null} if the classes are loaded.
+     */
+
+    public static CLPath libraryPath() {
+        return libraryPath.get();
+    }
+
+    /**
+     * Returns the (library) class with the specified fully qualified name.
+     * 
+     * @param name
+     *            the name of the class.
+     * @return the class.
+     * @throws ClassNotFoundException
+     *             if the class cannot be found.
+     */
+
+    public static Class<?> classFor(String name) throws ClassNotFoundException {
+        ClassLoader loader = libraryLoader.get();
+        return loader == null ? Class.forName(name) : Class.forName(name, true,
+                loader);
     }
 
     /**
@@ -123,16 +476,32 @@ class Type {
     }
 
     /**
-     * This setter is used by {@link JCompilationUnit#preAnalyze()} to set this
-     * {@code classRep} to the specified partial class, computed during 
-     * pre-analysis.
+     * Forgets the index of the members of this type, so that it is built
+     * anew when next needed. It is only used on the Types of declared 
+     * classes, as pre-analysis completes them; the Types of JDK classes are 
+     * never changed.
+     */
+
+    protected void forgetMemberIndex() {
+        memberIndex = null;
+    }
+
+    /**
+     * Returns the index of the members of this type, building it if need be.
+     * The index is immutable once built, so a type shared by concurrently
+     * compiled units may (rarely) have its index built twice, but is never
+     * seen with half an index.
      * 
-     * @param classRep
-     *            the partial class.
+     * @return the member index.
      */
 
-    public void setClassRep(Class<?> classRep) {
-        this.classRep = classRep;
+    private MemberIndex memberIndex() {
+        MemberIndex index = memberIndex;
+        if (index == null) {
+            index = new MemberIndex(this);
+            memberIndex = index;
+        }
+        return index;
     }
 
     /**
@@ -180,6 +549,23 @@ class Type {
                 : typeFor(classRep.getSuperclass());
     }
 
+    /**
+     * Returns the interfaces this type directly implements (or, for an
+     * interface, extends).
+     * 
+     * @return the interfaces.
+     */
+
+    ArrayList<Type> interfaces() {
+        ArrayList<Type> interfaces = new ArrayList<Type>();
+        if (classRep != null) {
+            for (Class<?> superInterface : classRep.getInterfaces()) {
+                interfaces.add(typeFor(superInterface));
+            }
+        }
+        return interfaces;
+    }
+
     /**
      * Is this a primitive type?
      * 
@@ -197,7 +583,7 @@ class Type {
      */
 
     public boolean isInterface() {
-        return classRep.isInterface();
+        return Modifier.isInterface(modifiers());
     }
 
     /**
@@ -210,6 +596,17 @@ class Type {
         return !isPrimitive();
     }
 
+    /**
+     * Returns the modifiers this type is declared with, as encoded by
+     * {@link Modifier}.
+     * 
+     * @return the modifiers.
+     */
+
+    protected int modifiers() {
+        return classRep.getModifiers();
+    }
+
     /**
      * Is this type declared final?
      * 
@@ -217,7 +614,7 @@ class Type {
      */
 
     public boolean isFinal() {
-        return Modifier.isFinal(classRep.getModifiers());
+        return Modifier.isFinal(modifiers());
     }
 
     /**
@@ -227,7 +624,7 @@ class Type {
      */
 
     public boolean isAbstract() {
-        return Modifier.isAbstract(classRep.getModifiers());
+        return Modifier.isAbstract(modifiers());
     }
 
     /**
@@ -240,7 +637,29 @@ class Type {
      */
 
     public boolean isJavaAssignableFrom(Type that) {
-        return this.classRep.isAssignableFrom(that.classRep);
+        if (this.classRep != null && that.classRep != null) {
+            return this.classRep.isAssignableFrom(that.classRep);
+        }
+
+        // A type with no class is a supertype only of itself and of its
+        // subtypes; up the superclasses there's a class
+        if (this == Type.OBJECT) {
+            return that.isReference();
+        }
+        for (Type type = that; type != null; type = type.superClass()) {
+            if (type.equals(this)) {
+                return true;
+            }
+            if (this.classRep != null && type.classRep != null) {
+                return this.classRep.isAssignableFrom(type.classRep);
+            }
+            for (Type superInterface : type.interfaces()) {
+                if (isJavaAssignableFrom(superInterface)) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     /**
@@ -279,9 +698,9 @@ class Type {
 
     private ArrayList<Method> declaredAbstractMethods() {
         ArrayList<Method> declaredAbstractMethods = new ArrayList<Method>();
-        for (java.lang.reflect.Method method : classRep.getDeclaredMethods()) {
-            if (Modifier.isAbstract(method.getModifiers())) {
-                declaredAbstractMethods.add(new Method(method));
+        for (Method method : declaredMethods()) {
+            if (method.isAbstract()) {
+                declaredAbstractMethods.add(method);
             }
         }
         return declaredAbstractMethods;
@@ -295,14 +714,97 @@ class Type {
 
     private ArrayList<Method> declaredConcreteMethods() {
         ArrayList<Method> declaredConcreteMethods = new ArrayList<Method>();
-        for (java.lang.reflect.Method method : classRep.getDeclaredMethods()) {
-            if (!Modifier.isAbstract(method.getModifiers())) {
-                declaredConcreteMethods.add(new Method(method));
+        for (Method method : declaredMethods()) {
+            if (!method.isAbstract()) {
+                declaredConcreteMethods.add(method);
             }
         }
         return declaredConcreteMethods;
     }
 
+    /**
+     * Returns the fields declared in this type (not those it inherits).
+     * 
+     * @return the declared fields.
+     */
+
+    ArrayList<Field> declaredFields() {
+        ArrayList<Field> fields = new ArrayList<Field>();
+        if (classRep != null) {
+            for (java.lang.reflect.Field field : classRep.getDeclaredFields()) {
+                fields.add(new Field(field));
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Returns the methods declared in this type (not those it inherits), in
+     * the order the reflection API lists them, less those source code can't
+     * see (see {@link #sourceMethods}).
+     * 
+     * @return the declared methods.
+     */
+
+    ArrayList<Method> declaredMethods() {
+        ArrayList<Method> methods = new ArrayList<Method>();
+        if (classRep != null) {
+            for (java.lang.reflect.Method method : classRep
+                    .getDeclaredMethods()) {
+                methods.add(new Method(method));
+            }
+        }
+        return sourceMethods(methods);
+    }
+
+    /**
+     * Returns those of the specified methods, declared in one type, that
+     * source code can see, in the same order. Synthetic methods are left 
+     * out, and so are bridges to a method declared with the same parameters 
+     * (and a more specific return type), so that a call selects that method 
+     * however the methods are ordered. Bridges standing alone are kept: they 
+     * make the public methods of a superclass that is not accessible 
+     * accessible through the type.
+     * 
+     * @param methods
+     *            the declared methods.
+     * @return the methods source code can see.
+     */
+
+    static ArrayList<Method> sourceMethods(ArrayList<Method> methods) {
+        HashSet<String> declared = new HashSet<String>();
+        for (Method method : methods) {
+            if (!method.isSynthetic()) {
+                declared.add(method.name() + method.parameters());
+            }
+        }
+        ArrayList<Method> visible = new ArrayList<Method>();
+        for (Method method : methods) {
+            if (!method.isSynthetic() || method.isBridge()
+                    && !declared.contains(method.name() + method.parameters())) {
+                visible.add(method);
+            }
+        }
+        return visible;
+    }
+
+    /**
+     * Returns the constructors declared in this type.
+     * 
+     * @return the declared constructors.
+     */
+
+    ArrayList<Constructor> declaredConstructors() {
+        ArrayList<Constructor> constructors = new ArrayList<Constructor>();
+        if (classRep != null) {
+            for (java.lang.reflect.Constructor<?> constructor : classRep
+                    .getDeclaredConstructors()) {
+                constructors.add(new Constructor(constructor));
+            }
+        }
+        return constructors;
+    }
+
     /**
      * An assertion that this type matches one of the specified types. If there
      * is no match, an error message is returned.
@@ -321,7 +823,7 @@ class Type {
                 return;
             }
         }
-        JAST.compilationUnit.reportSemanticError(line,
+        JAST.compilationUnit().reportSemanticError(line,
                 "Type %s doesn't match any of the expected types %s", this,
                 Arrays.toString(expectedTypes));
     }
@@ -338,7 +840,7 @@ class Type {
 
     public void mustMatchExpected(int line, Type expectedType) {
         if (!matchesExpected(expectedType)) {
-            JAST.compilationUnit.reportSemanticError(line,
+            JAST.compilationUnit().reportSemanticError(line,
                     "Type %s doesn't match type %s", this, expectedType);
         }
     }
@@ -475,7 +977,7 @@ class Type {
     public String packageName() {
         String name = toString();
         return name.lastIndexOf('.') == -1 ? "" : name.substring(0, name
-                .lastIndexOf('.') - 1);
+                .lastIndexOf('.'));
     }
 
     /**
@@ -504,25 +1006,8 @@ class Type {
      */
 
     public Method methodFor(String name, Type[] argTypes) {
-        Class[] classes = new Class[argTypes.length];
-        for (int i = 0; i < argTypes.length; i++) {
-            classes[i] = argTypes[i].classRep;
-        }
-        Class cls = classRep;
-
         // Search this class and all superclasses
-        while (cls != null) {
-            java.lang.reflect.Method[] methods = cls.getDeclaredMethods();
-            for (java.lang.reflect.Method method : methods) {
-                if (method.getName().equals(name)
-                        && Type.argTypesMatch(classes, method
-                                .getParameterTypes())) {
-                    return new Method(method);
-                }
-            }
-            cls = cls.getSuperclass();
-        }
-        return null;
+        return memberIndex().methodFor(name, parametersFor(argTypes));
     }
 
     /**
@@ -537,20 +1022,8 @@ class Type {
      */
 
     public Constructor constructorFor(Type[] argTypes) {
-        Class[] classes = new Class[argTypes.length];
-        for (int i = 0; i < argTypes.length; i++) {
-            classes[i] = argTypes[i].classRep;
-        }
-
         // Search only this class (we don't inherit constructors)
-        java.lang.reflect.Constructor[] constructors = classRep
-                .getDeclaredConstructors();
-        for (java.lang.reflect.Constructor constructor : constructors) {
-            if (argTypesMatch(classes, constructor.getParameterTypes())) {
-                return new Constructor(constructor);
-            }
-        }
-        return null;
+        return memberIndex().constructorFor(parametersFor(argTypes));
     }
 
     /**
@@ -562,17 +1035,42 @@ class Type {
      */
 
     public Field fieldFor(String name) {
-        Class<?> cls = classRep;
-        while (cls != null) {
-            java.lang.reflect.Field[] fields = cls.getDeclaredFields();
-            for (java.lang.reflect.Field field : fields) {
-                if (field.getName().equals(name)) {
-                    return new Field(field);
-                }
-            }
-            cls = cls.getSuperclass();
+        return memberIndex().fieldFor(name);
+    }
+
+    /**
+     * Returns the descriptors of the specified argument types, one after the
+     * other; two lists of types match (see {@link #argTypesMatch}) iff their
+     * descriptors so joined are equal.
+     * 
+     * @param argTypes
+     *            the argument types.
+     * @return the joined descriptors.
+     */
+
+    static String parametersFor(Type[] argTypes) {
+        StringBuffer parameters = new StringBuffer();
+        for (int i = 0; i < argTypes.length; i++) {
+            parameters.append(argTypes[i].toDescriptor());
+        }
+        return parameters.toString();
+    }
+
+    /**
+     * Returns the descriptors of the specified parameter types, one after the
+     * other.
+     * 
+     * @param parameterTypes
+     *            the parameter types.
+     * @return the joined descriptors.
+     */
+
+    static String parametersFor(Class<?>[] parameterTypes) {
+        StringBuffer parameters = new StringBuffer();
+        for (Class<?> parameterType : parameterTypes) {
+            parameters.append(descriptorFor(parameterType));
         }
-        return null;
+        return parameters.toString();
     }
 
     /**
@@ -610,7 +1108,7 @@ class Type {
      */
 
     public boolean checkAccess(int line, Member member) {
-        if (!checkAccess(line, classRep, member.declaringType().classRep)) {
+        if (!checkAccess(line, member.declaringType())) {
             return false;
         }
 
@@ -618,31 +1116,24 @@ class Type {
         if (member.isPublic()) {
             return true;
         }
-        java.lang.Package p1 = classRep.getPackage();
-        java.lang.Package p2 = member.declaringType().classRep.getPackage();
-        if ((p1 == null ? "" : p1.getName()).equals((p2 == null ? "" : p2
-                .getName()))) {
+        if (packageName().equals(member.declaringType().packageName())) {
             return true;
         }
         if (member.isProtected()) {
-            if (classRep.getPackage().getName().equals(
-                    member.declaringType().classRep.getPackage().getName())
-                    || typeFor(member.getClass().getDeclaringClass())
-                            .isJavaAssignableFrom(this)) {
+            if (member.declaringType().isJavaAssignableFrom(this)) {
                 return true;
             } else {
-                JAST.compilationUnit.reportSemanticError(line,
+                JAST.compilationUnit().reportSemanticError(line,
                         "The protected member, " + member.name()
                                 + ", is not accessible.");
                 return false;
             }
         }
         if (member.isPrivate()) {
-            if (descriptorFor(classRep).equals(
-                    descriptorFor(member.member().getDeclaringClass()))) {
+            if (toDescriptor().equals(member.declaringType().toDescriptor())) {
                 return true;
             } else {
-                JAST.compilationUnit.reportSemanticError(line,
+                JAST.compilationUnit().reportSemanticError(line,
                         "The private member, " + member.name()
                                 + ", is not accessible.");
                 return false;
@@ -653,7 +1144,7 @@ class Type {
         if (packageName().equals(member.declaringType().packageName())) {
             return true;
         } else {
-            JAST.compilationUnit.reportSemanticError(line, "The member, "
+            JAST.compilationUnit().reportSemanticError(line, "The member, "
                     + member.name()
                     + ", is not accessible because it's in a different "
                     + "package.");
@@ -678,33 +1169,12 @@ class Type {
         if (targetType.isArray()) {
             return this.checkAccess(line, targetType.componentType());
         }
-        return checkAccess(line, classRep, targetType.classRep);
-    }
-
-    /**
-     * Checks the accessibility of a type.
-     * 
-     * @param line
-     *            the line in which the access occurs.
-     * @param referencingType
-     *            the type attempting the access.
-     * @param type
-     *            the type that we want to access.
-     * @return {@code true} if access is valid; {@code false} otherwise.
-     */
-
-    public static boolean checkAccess(int line, Class referencingType,
-            Class type) {
-        java.lang.Package p1 = referencingType.getPackage();
-        java.lang.Package p2 = type.getPackage();
-        if (Modifier.isPublic(type.getModifiers())
-                || (p1 == null ? "" : p1.getName()).equals((p2 == null ? ""
-                        : p2.getName()))) {
+        if (Modifier.isPublic(targetType.modifiers())
+                || packageName().equals(targetType.packageName())) {
             return true;
         } else {
-            JAST.compilationUnit.reportSemanticError(line, "The type, "
-                    + type.getCanonicalName() + ", is not accessible from "
-                    + referencingType.getCanonicalName());
+            JAST.compilationUnit().reportSemanticError(line, "The type, "
+                    + targetType + ", is not accessible from " + this);
             return false;
         }
     }
@@ -845,13 +1315,13 @@ class TypeName extends Type {
         if (resolvedType == null) {
             // Try loading a type with the give fullname
             try {
-                resolvedType = typeFor(Class.forName(name));
+                resolvedType = libraryTypeFor(name);
                 context.addType(line, resolvedType);
                 // context.compilationUnitContext().addEntry(line,
                 // resolvedType.toString(),
                 // new TypeNameDefn(resolvedType));
             } catch (Exception e) {
-                JAST.compilationUnit.reportSemanticError(line,
+                JAST.compilationUnit().reportSemanticError(line,
                         "Unable to locate a type named %s", name);
                 resolvedType = Type.ANY;
             }
@@ -859,8 +1329,7 @@ class TypeName extends Type {
         if (resolvedType != Type.ANY) {
             Type referencingType = ((JTypeDecl) (context.classContext
                     .definition())).thisType();
-            Type.checkAccess(line, referencingType.classRep(), resolvedType
-                    .classRep());
+            referencingType.checkAccess(line, resolvedType);
         }
         return resolvedType;
     }
@@ -929,12 +1398,721 @@ class ArrayTypeName extends Type {
 
     public Type resolve(Context context) {
         componentType = componentType.resolve(context);
+        return Type.arrayTypeFor(componentType);
+    }
+
+}
+
+/**
+ * The type of a class declared in the unit being compiled. It has no class
+ * (until code generation, which is too late); it is represented by its
+ * symbol instead, which pre-analysis builds from the class' declaration. Until
+ * then, the symbol has only the class' modifiers, and Object for its
+ * superclass.
+ */
+
+class DeclaredType extends Type {
+
+    /** The fully qualified name, in internal form. */
+    private String name;
+
+    /** The class' symbol. */
+    private ClassSymbol symbol;
+
+    /**
+     * Constructs the type of a declared class, with no members. Use
+     * {@link Type#declaredTypeFor(String, ArrayList)}, so that each declared
+     * class has a unique type.
+     * 
+     * @param name
+     *            the fully qualified name of the class, in internal form.
+     * @param mods
+     *            the class' modifiers.
+     */
+
+    DeclaredType(String name, ArrayList<String> mods) {
+        this.name = name;
+        symbol = new ClassSymbol(this, mods, Type.OBJECT);
+    }
 
-        // The API forces us to make an instance and get its
-        // type.
-        Class classRep = Array.newInstance(componentType().classRep(), 0)
-                .getClass();
-        return Type.typeFor(classRep);
+    /**
+     * Returns the class' symbol.
+     * 
+     * @return the symbol.
+     */
+
+    public ClassSymbol symbol() {
+        return symbol;
+    }
+
+    /**
+     * Makes the specified symbol, computed during pre-analysis, the
+     * representation of this type.
+     * 
+     * @param symbol
+     *            the symbol.
+     */
+
+    public void setSymbol(ClassSymbol symbol) {
+        this.symbol = symbol;
+        forgetMemberIndex();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean isArray() {
+        return false;
+    }
+
+    /**
+     * Returns the type's superclass; as with reflection, an interface has
+     * none.
+     * 
+     * @return the superclass, or {@code null} if there is none.
+     */
+
+    public Type superClass() {
+        return isInterface() ? null : symbol.superType();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean isPrimitive() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    protected int modifiers() {
+        return symbol.modifiers();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    ArrayList<Field> declaredFields() {
+        return new ArrayList<Field>(symbol.fields());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    ArrayList<Method> declaredMethods() {
+        return new ArrayList<Method>(symbol.methods());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    ArrayList<Constructor> declaredConstructors() {
+        return new ArrayList<Constructor>(symbol.constructors());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String simpleName() {
+        return name.substring(name.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String toString() {
+        return name.replace('/', '.');
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String toDescriptor() {
+        return "L" + name + ";";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String jvmName() {
+        return name;
+    }
+
+}
+
+/**
+ * The type of arrays of a type with no class (a declared type, or one read
+ * from a class file), or of arrays of them, and so on, which have no class
+ * either. Like the types of arrays of classes, it has no
+ * members of its own, and Object for its superclass.
+ */
+
+class DeclaredArrayType extends Type {
+
+    /** The component type. */
+    private Type componentType;
+
+    /**
+     * Constructs the type of arrays of the specified type. Use
+     * {@link Type#arrayTypeFor(Type)}, so that each array type is unique.
+     * 
+     * @param componentType
+     *            the component type.
+     */
+
+    DeclaredArrayType(Type componentType) {
+        this.componentType = componentType;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean isArray() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type componentType() {
+        return componentType;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public Type superClass() {
+        return Type.OBJECT;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean isPrimitive() {
+        return false;
+    }
+
+    /**
+     * Returns the modifiers of this array type, which are those reflection
+     * gives for the classes of arrays: the access modifier of the component
+     * type, final and abstract.
+     * 
+     * @return the modifiers.
+     */
+
+    protected int modifiers() {
+        return componentType.modifiers()
+                & (Modifier.PUBLIC | Modifier.PROTECTED | Modifier.PRIVATE)
+                | Modifier.FINAL | Modifier.ABSTRACT;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String simpleName() {
+        return componentType.simpleName() + "[]";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String toString() {
+        return componentType.toString() + "[]";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String toDescriptor() {
+        return "[" + componentType.toDescriptor();
+    }
+
+}
+
+/**
+ * The type of a library class as read from its class file (see 
+ * {@link CLPath}), rather than from its class: compiling against a class so
+ * doesn't load, link or initialize it, and the class need not be on the 
+ * class path the compiler runs on. The class file is read when the type is 
+ * first asked about more than its name, and then only for its signature (see
+ * {@link CLAbsorber}): the constant pool, the class' modifiers and
+ * supertypes, and the names, modifiers and descriptors of its members, which
+ * are indexed when first looked up (see {@link MemberIndex}). A class whose 
+ * class file cannot be found or read has no members, and Object for its 
+ * superclass.
+ */
+
+class ClassFileType extends Type {
+
+    /** The fully qualified name, in internal form. */
+    private String name;
+
+    /** The path the class file is read from. */
+    private CLPath path;
+
+    /** Whether the class is one of the JDK's. */
+    private boolean system;
+
+    /** Whether the class file has been read. */
+    private volatile boolean read;
+
+    /** Whether the class file was found (and could be read). */
+    private boolean exists;
+
+    /** The class' modifiers. */
+    private int modifiers;
+
+    /** Name of the superclass, in internal form, if any. */
+    private String superName;
+
+    /** Names of the interfaces, in internal form. */
+    private ArrayList<String> interfaceNames;
+
+    /** The fields, in the order in the class file. */
+    private ArrayList<Field> fields;
+
+    /** The methods, in the order in the class file. */
+    private ArrayList<Method> methods;
+
+    /** The constructors, in the order in the class file. */
+    private ArrayList<Constructor> constructors;
+
+    /**
+     * Constructs the type of the class with the specified name, to be read 
+     * from its class file. Use {@link Type#classFileTypeFor(String)}, so that
+     * each class has a unique type.
+     * 
+     * @param name
+     *            the fully qualified name of the class, in internal form.
+     * @param path
+     *            the path the class file is read from.
+     * @param system
+     *            whether the class is one of the JDK's.
+     */
+
+    ClassFileType(String name, CLPath path, boolean system) {
+        this.name = name;
+        this.path = path;
+        this.system = system;
+    }
+
+    /**
+     * Is the class one of the JDK's? 
+     * 
+     * @return true or false.
+     */
+
+    public boolean isSystem() {
+        return system;
+    }
+
+    /**
+     * Has the class file been read (because the type has been asked about)?
+     * 
+     * @return true or false.
+     */
+
+    public boolean isRead() {
+        return read;
+    }
+
+    /**
+     * Was the class file found?
+     * 
+     * @return true or false.
+     */
+
+    public boolean exists() {
+        read();
+        return exists;
+    }
+
+    /**
+     * Reads the signature of the class from its class file, unless it has
+     * been read already. The types of JDK classes are shared by concurrent 
+     * compilations, so the class file is read (once) under a lock, and 
+     * published once read.
+     */
+
+    private void read() {
+        if (read) {
+            return;
+        }
+        synchronized (this) {
+            if (read) {
+                return;
+            }
+            superName = "java/lang/Object";
+            interfaceNames = new ArrayList<String>();
+            fields = new ArrayList<Field>();
+            methods = new ArrayList<Method>();
+            constructors = new ArrayList<Constructor>();
+            CLInputStream in = path.loadClass(name);
+            CLFile classFile = null;
+            if (in != null) {
+                CLAbsorber absorber = new CLAbsorber(name, in, true);
+                classFile = absorber.errorHasOccurred() ? null : absorber
+                        .classFile();
+            }
+            if (classFile != null && classFile.constantPool != null) {
+                exists = true;
+                readSignature(classFile);
+            }
+            read = true;
+        }
+    }
+
+    /**
+     * Takes the signature of the class from the specified class file. The
+     * modifiers are those reflection gives for the class: the access flags
+     * without super, and with abstract for an interface (as the JVM makes
+     * them for class files older than version 52).
+     * 
+     * @param classFile
+     *            the class file.
+     */
+
+    private void readSignature(CLFile classFile) {
+        CLConstantPool cp = classFile.constantPool;
+        modifiers = classFile.accessFlags & ~CLConstants.ACC_SUPER;
+        if ((modifiers & CLConstants.ACC_INTERFACE) != 0) {
+            modifiers |= CLConstants.ACC_ABSTRACT;
+        }
+        superName = classFile.superClass == 0 ? null : className(cp,
+                classFile.superClass);
+        for (int index : classFile.interfaces) {
+            interfaceNames.add(className(cp, index));
+        }
+        for (CLFieldInfo field : classFile.fields) {
+            fields.add(new ClassFileField(this, field.accessFlags, utf8(cp,
+                    field.nameIndex), utf8(cp, field.descriptorIndex)));
+        }
+        for (CLMethodInfo method : classFile.methods) {
+            String methodName = utf8(cp, method.nameIndex);
+            String descriptor = utf8(cp, method.descriptorIndex);
+            if (methodName.equals("<init>")) {
+                constructors.add(new ClassFileConstructor(this,
+                        method.accessFlags, descriptor));
+            } else if (!methodName.equals("<clinit>")) {
+                methods.add(new ClassFileMethod(this, method.accessFlags,
+                        methodName, descriptor));
+            }
+        }
+        methods = sourceMethods(methods);
+    }
+
+    /**
+     * Returns the string at the specified index in the constant pool.
+     * 
+     * @param cp
+     *            the constant pool.
+     * @param index
+     *            index of a CONSTANT_Utf8_info item.
+     * @return the string.
+     */
+
+    private static String utf8(CLConstantPool cp, int index) {
+        return new String(((CLConstantUtf8Info) cp.cpItem(index)).b);
+    }
+
+    /**
+     * Returns the name of the class at the specified index in the constant
+     * pool.
+     * 
+     * @param cp
+     *            the constant pool.
+     * @param index
+     *            index of a CONSTANT_Class_info item.
+     * @return the class name, in internal form.
+     */
+
+    private static String className(CLConstantPool cp, int index) {
+        return utf8(cp, ((CLConstantClassInfo) cp.cpItem(index)).nameIndex);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean isArray() {
+        return false;
+    }
+
+    /**
+     * Returns the type's superclass; as with reflection, an interface has
+     * none.
+     * 
+     * @return the superclass, or {@code null} if there is none.
+     */
+
+    public Type superClass() {
+        read();
+        return superName == null || isInterface() ? null
+                : classFileTypeFor(superName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    ArrayList<Type> interfaces() {
+        read();
+        ArrayList<Type> interfaces = new ArrayList<Type>();
+        for (String interfaceName : interfaceNames) {
+            interfaces.add(classFileTypeFor(interfaceName));
+        }
+        return interfaces;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public boolean isPrimitive() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    protected int modifiers() {
+        read();
+        return modifiers;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    ArrayList<Field> declaredFields() {
+        read();
+        return new ArrayList<Field>(fields);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    ArrayList<Method> declaredMethods() {
+        read();
+        return new ArrayList<Method>(methods);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    ArrayList<Constructor> declaredConstructors() {
+        read();
+        return new ArrayList<Constructor>(constructors);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String simpleName() {
+        return name.substring(name.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String toString() {
+        return name.replace('/', '.');
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String toDescriptor() {
+        return "L" + name + ";";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public String jvmName() {
+        return name;
+    }
+
+}
+
+/**
+ * An index of the members of a type: its methods and fields, and those it
+ * inherits from its superclasses, by name, and its constructors. Looking a
+ * member up by reflection copies the class' members, and their parameter
+ * types, on every call; the index is built from them once instead, and each
+ * part of it only when first asked for. Overloads are kept in the order the
+ * reflection API lists them (or, for declared types, in the order declared),
+ * the type's own before those of its superclasses, so the member found is the
+ * one a search by reflection would find first. Parameter types are kept as
+ * joined descriptors (see {@link Type#parametersFor(Class[])}), so that they
+ * are matched with one comparison.
+ */
+
+class MemberIndex {
+
+    /** The type indexed. */
+    private Type type;
+
+    /** Methods by name, built when first needed. */
+    private volatile HashMap<String, ArrayList<Method>> methods;
+
+    /** Parameters (joined descriptors) of the methods, in the same order. */
+    private volatile HashMap<String, ArrayList<String>> methodParameters;
+
+    /** The constructors, built when first needed. */
+    private volatile ArrayList<Constructor> constructors;
+
+    /** Parameters (joined descriptors) of the constructors, in order. */
+    private volatile ArrayList<String> constructorParameters;
+
+    /** Fields by name (the first one found), built when first needed. */
+    private volatile HashMap<String, Field> fields;
+
+    /**
+     * Constructs an (empty) index of the members of the specified type.
+     * 
+     * @param type
+     *            the type.
+     */
+
+    public MemberIndex(Type type) {
+        this.type = type;
+    }
+    /**
+     * Returns the method with the specified name and parameters, declared in
+     * the type or a superclass.
+     * 
+     * @param name
+     *            the method name.
+     * @param parameters
+     *            the parameter types (joined descriptors).
+     * @return the method, or {@code null}.
+     */
+
+    public Method methodFor(String name, String parameters) {
+        if (methods == null) {
+            indexMethods();
+        }
+        ArrayList<Method> overloads = methods.get(name);
+        if (overloads == null) {
+            return null;
+        }
+        int i = methodParameters.get(name).indexOf(parameters);
+        return i < 0 ? null : overloads.get(i);
+    }
+
+    /**
+     * Returns the constructor with the specified parameters.
+     * 
+     * @param parameters
+     *            the parameter types (joined descriptors).
+     * @return the constructor, or {@code null}.
+     */
+
+    public Constructor constructorFor(String parameters) {
+        if (constructors == null) {
+            indexConstructors();
+        }
+        int i = constructorParameters.indexOf(parameters);
+        return i < 0 ? null : constructors.get(i);
+    }
+
+    /**
+     * Returns the field with the specified name, declared in the class or a
+     * superclass.
+     * 
+     * @param name
+     *            the field name.
+     * @return the field, or {@code null}.
+     */
+
+    public Field fieldFor(String name) {
+        if (fields == null) {
+            indexFields();
+        }
+        return fields.get(name);
+    }
+
+    /**
+     * Indexes the methods. The parameters are published before the methods,
+     * which are what the lookup tests for.
+     */
+
+    private void indexMethods() {
+        HashMap<String, ArrayList<Method>> methods = 
+            new HashMap<String, ArrayList<Method>>();
+        HashMap<String, ArrayList<String>> parameters = 
+            new HashMap<String, ArrayList<String>>();
+        for (Type t = type; t != null; t = t.superClass()) {
+            for (Method method : t.declaredMethods()) {
+                ArrayList<Method> overloads = methods.get(method.name());
+                if (overloads == null) {
+                    overloads = new ArrayList<Method>();
+                    methods.put(method.name(), overloads);
+                    parameters.put(method.name(), new ArrayList<String>());
+                }
+                overloads.add(method);
+                parameters.get(method.name()).add(method.parameters());
+            }
+        }
+        methodParameters = parameters;
+        this.methods = methods;
+    }
+
+    /**
+     * Indexes the constructors.
+     */
+
+    private void indexConstructors() {
+        ArrayList<Constructor> constructors = new ArrayList<Constructor>();
+        ArrayList<String> parameters = new ArrayList<String>();
+        for (Constructor constructor : type.declaredConstructors()) {
+            constructors.add(constructor);
+            parameters.add(constructor.parameters());
+        }
+        constructorParameters = parameters;
+        this.constructors = constructors;
+    }
+
+    /**
+     * Indexes the fields.
+     */
+
+    private void indexFields() {
+        HashMap<String, Field> fields = new HashMap<String, Field>();
+        for (Type t = type; t != null; t = t.superClass()) {
+            for (Field field : t.declaredFields()) {
+                if (!fields.containsKey(field.name())) {
+                    fields.put(field.name(), field);
+                }
+            }
+        }
+        this.fields = fields;
     }
 
 }
@@ -2,6 +2,21 @@
 
 package jminusminus;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import java.util.ArrayList;
+import java.util.StringTokenizer;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * This class defines helper functions.
  */
@@ -78,6 +93,119 @@ class Util {
         return b.toString();
     }
 
+    /**
+     * Expands the command-line arguments, replacing each argument of the form
+     * {@code @argfile} by the (white space separated) arguments listed in that
+     * file. Argument files are not expanded recursively.
+     * 
+     * @param args
+     *            the command-line arguments.
+     * @return the expanded list of arguments.
+     * @exception IOException
+     *                if an argument file cannot be read.
+     */
+
+    public static ArrayList<String> expandArgFiles(String[] args)
+            throws IOException {
+        ArrayList<String> expanded = new ArrayList<String>();
+        for (String arg : args) {
+            if (arg.startsWith("@") && arg.length() > 1) {
+                BufferedReader in = new BufferedReader(new FileReader(arg
+                        .substring(1)));
+                String line;
+                while ((line = in.readLine()) != null) {
+                    StringTokenizer tokens = new StringTokenizer(line);
+                    while (tokens.hasMoreTokens()) {
+                        expanded.add(tokens.nextToken());
+                    }
+                }
+                in.close();
+            } else {
+                expanded.add(arg);
+            }
+        }
+        return expanded;
+    }
+
+    /**
+     * Writes the specified bytes to the specified file through a temporary
+     * file in the same directory, which is then renamed over the file, so 
+     * that no one ever sees the file partly written.
+     * 
+     * @param file
+     *            the file.
+     * @param bytes
+     *            the contents of the file.
+     * @param ownerOnly
+     *            whether the file is to be readable and writable by its owner
+     *            alone, rather than as the umask has it.
+     * @exception IOException
+     *                if the file cannot be written.
+     */
+
+    public static void writeFile(File file, byte[] bytes, boolean ownerOnly)
+            throws IOException {
+        File temp = createTempFile(file, ownerOnly);
+        try {
+            Files.write(temp.toPath(), bytes);
+            moveIntoPlace(temp, file);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Creates a temporary file in the directory of the specified file (which
+     * is created if need be), to be renamed over the file with 
+     * {@link #moveIntoPlace}.
+     * 
+     * @param file
+     *            the file.
+     * @param ownerOnly
+     *            whether the temporary file is to be readable and writable by
+     *            its owner alone, rather than as the umask has it.
+     * @return the temporary file.
+     * @exception IOException
+     *                if the temporary file cannot be created.
+     */
+
+    public static File createTempFile(File file, boolean ownerOnly)
+            throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        dir.mkdirs();
+
+        // Files.createTempFile makes a file that only its owner can read and
+        // write, on systems with POSIX permissions; File.createTempFile
+        // leaves its permissions to the umask
+        if (ownerOnly) {
+            return Files.createTempFile(dir.toPath(), file.getName(), ".tmp")
+                    .toFile();
+        }
+        return File.createTempFile(file.getName(), ".tmp", dir);
+    }
+
+    /**
+     * Renames the specified temporary file (or directory) over the specified
+     * file, atomically unless the file system cannot do so.
+     * 
+     * @param temp
+     *            the temporary file, in the same directory as the file.
+     * @param file
+     *            the file.
+     * @exception IOException
+     *                if the temporary file cannot be renamed.
+     */
+
+    public static void moveIntoPlace(File temp, File file) throws IOException {
+        try {
+            Files.move(temp.toPath(), file.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
 }
 
 /**
@@ -188,3 +316,234 @@ class PrettyPrinter {
     }
 
 }
+
+/**
+ * An output stream that sends whatever a thread writes to a stream of that 
+ * thread's choosing (see {@link #redirect(OutputStream)}), and to a default 
+ * stream otherwise. This lets units compiled concurrently each collect their
+ * own output.
+ */
+
+class PerThreadOutputStream extends OutputStream {
+
+    /** STDOUT as installed by this class. */
+    private static PrintStream installedOut;
+
+    /** The per-thread stream beneath installedOut. */
+    private static PerThreadOutputStream out;
+
+    /** STDERR as installed by this class. */
+    private static PrintStream installedErr;
+
+    /** The per-thread stream beneath installedErr. */
+    private static PerThreadOutputStream err;
+
+    /** The stream written to by threads that have not redirected. */
+    private OutputStream defaultStream;
+
+    /** The stream each thread writes to. */
+    private ThreadLocal<OutputStream> stream;
+
+    /**
+     * Constructs a PerThreadOutputStream given the default stream.
+     * 
+     * @param defaultStream
+     *            the stream written to by threads that have not redirected.
+     */
+
+    public PerThreadOutputStream(OutputStream defaultStream) {
+        this.defaultStream = defaultStream;
+        stream = new ThreadLocal<OutputStream>();
+    }
+
+    /**
+     * Returns the stream through which whatever the current thread writes to
+     * STDOUT can be captured, installing it (as STDOUT, over the current one)
+     * if need be.
+     * 
+     * @return the stream.
+     */
+
+    public static synchronized PerThreadOutputStream stdout() {
+        if (System.out != installedOut) {
+            out = new PerThreadOutputStream(System.out);
+            installedOut = new PrintStream(out, true);
+            System.setOut(installedOut);
+        }
+        return out;
+    }
+
+    /**
+     * Returns the stream through which whatever the current thread writes to
+     * STDERR can be captured, installing it (as STDERR, over the current one)
+     * if need be.
+     * 
+     * @return the stream.
+     */
+
+    public static synchronized PerThreadOutputStream stderr() {
+        if (System.err != installedErr) {
+            err = new PerThreadOutputStream(System.err);
+            installedErr = new PrintStream(err, true);
+            System.setErr(installedErr);
+        }
+        return err;
+    }
+
+    /**
+     * Sends whatever the current thread writes from now on to the specified
+     * stream; {@code null} restores the default stream.
+     * 
+     * @param target
+     *            the stream to write to, or {@code null}.
+     */
+
+    public void redirect(OutputStream target) {
+        stream.set(target);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void write(int b) throws IOException {
+        target().write(b);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void write(byte[] b, int off, int len) throws IOException {
+        target().write(b, off, len);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+
+    public void flush() throws IOException {
+        target().flush();
+    }
+
+    /**
+     * Returns the stream the current thread writes to.
+     * 
+     * @return the stream.
+     */
+
+    private OutputStream target() {
+        OutputStream target = stream.get();
+        return target == null ? defaultStream : target;
+    }
+
+}
+
+/**
+ * A thread with a stack deep enough for compiling deeply nested sources. The
+ * parser, analysis and code generation all recurse over the nesting of the
+ * source, so thousands of nested statements or parenthesized expressions
+ * overflow a thread's default stack; every compilation is therefore run on
+ * a CompilerThread (see {@link #run(Runnable)}).
+ */
+
+class CompilerThread extends Thread {
+
+    /** Default stack size of compiler threads, in MB. */
+    public final static int DEFAULT_STACK_SIZE = 512;
+
+    /** Stack size of compiler threads created from now on, in bytes. */
+    private static volatile long stackSize = DEFAULT_STACK_SIZE * 1024L * 1024;
+
+    /**
+     * Constructs a CompilerThread running the specified task.
+     * 
+     * @param task
+     *            the task.
+     * @param name
+     *            name of the thread.
+     */
+
+    public CompilerThread(Runnable task, String name) {
+        super(null, task, name, stackSize);
+    }
+
+    /**
+     * Sets the stack size of compiler threads created from now on.
+     * 
+     * @param megabytes
+     *            the stack size, in MB.
+     */
+
+    public static void setStackSize(int megabytes) {
+        stackSize = megabytes * 1024L * 1024;
+    }
+
+    /**
+     * Returns a factory of compiler threads, for executors.
+     * 
+     * @param name
+     *            prefix of the names of the threads.
+     * @return the factory.
+     */
+
+    public static ThreadFactory factory(final String name) {
+        return new ThreadFactory() {
+            private AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable task) {
+                Thread thread = new CompilerThread(task, name + "-"
+                        + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Runs the specified task on a compiler thread: on the current thread if
+     * it is one, and otherwise on a new one, which the current thread waits
+     * for. An unchecked exception or error thrown by the task is thrown again
+     * in the current thread.
+     * 
+     * @param task
+     *            the task.
+     */
+
+    public static void run(final Runnable task) {
+        if (Thread.currentThread() instanceof CompilerThread) {
+            task.run();
+            return;
+        }
+        final Throwable[] thrown = new Throwable[1];
+        Thread thread = new CompilerThread(new Runnable() {
+            public void run() {
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    thrown[0] = e;
+                }
+            }
+        }, "j-- compiler");
+        thread.start();
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                // Pass the interrupt on, and wait for the task to end
+                thread.interrupt();
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (thrown[0] instanceof RuntimeException) {
+            throw (RuntimeException) thrown[0];
+        } else if (thrown[0] instanceof Error) {
+            throw (Error) thrown[0];
+        }
+    }
+
+}
@@ -0,0 +1,30 @@
+// Copyright 2013 Bill Campbell, Swami Iyer and Bahar Akbal-Delibas
+
+package pass;
+
+import java.lang.StringBuffer;
+import java.lang.StringBuilder;
+import java.lang.System;
+
+public class StringBuffers {
+
+    public static String buffered(int n) {
+        StringBuffer b = new StringBuffer();
+        b.append("n = ").append(n).append("; ").reverse();
+        return b.reverse().toString();
+    }
+
+    public static StringBuilder built(String s) {
+        StringBuilder b = new StringBuilder(s);
+        b.append(s).append('!');
+        return b;
+    }
+
+    public static void main(String[] args) {
+        System.out.println(StringBuffers.buffered(42));
+        StringBuilder b = StringBuffers.built("j--");
+        System.out.println(b.length());
+        System.out.println(b.charAt(0));
+    }
+
+}